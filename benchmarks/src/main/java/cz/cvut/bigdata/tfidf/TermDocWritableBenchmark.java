@@ -0,0 +1,99 @@
+package cz.cvut.bigdata.tfidf;
+
+import cz.cvut.bigdata.tfidf.bench.Corpus;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and comparison of the <i>TermDocWritable</i>,
+ * with the terms drawn from the Zipfian vocabulary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermDocWritableBenchmark {
+
+	private static final int SIZE = 4096;
+
+	@Param({"100000"})
+	public int vocabulary;
+
+	@Param({"1.0"})
+	public double exponent;
+
+	@Param({"1000000"})
+	public int documents;
+
+	private final TermDocWritable[] termDocs = new TermDocWritable[SIZE];
+	private final byte[][] serialized = new byte[SIZE][];
+
+	private final DataOutputBuffer out = new DataOutputBuffer();
+	private final DataInputBuffer in = new DataInputBuffer();
+	private final TermDocWritable result = new TermDocWritable();
+
+	private WritableComparator comparator;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		final Corpus corpus = new Corpus(vocabulary, exponent, 42L);
+		final Random random = new Random(42L);
+		for (int i = 0; i < SIZE; i++) {
+			termDocs[i] = new TermDocWritable();
+			termDocs[i].set(corpus.nextWord(), random.nextInt(documents));
+
+			out.reset();
+			termDocs[i].write(out);
+			serialized[i] = new byte[out.getLength()];
+			System.arraycopy(out.getData(), 0, serialized[i], 0, out.getLength());
+		}
+		comparator = WritableComparator.get(TermDocWritable.class);
+	}
+
+	@Benchmark
+	public TermDocWritable roundTrip() throws IOException {
+		out.reset();
+		termDocs[nextIndex()].write(out);
+		in.reset(out.getData(), out.getLength());
+		result.readFields(in);
+		return result;
+	}
+
+	@Benchmark
+	public int compareTo() {
+		final int index = nextIndex();
+		return termDocs[index].compareTo(termDocs[(index + 1) % SIZE]);
+	}
+
+	@Benchmark
+	public int compareRaw() {
+		final int index = nextIndex();
+		final byte[] b1 = serialized[index];
+		final byte[] b2 = serialized[(index + 1) % SIZE];
+		return comparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+	}
+
+	private int nextIndex() {
+		next = (next + 1) % SIZE;
+		return next;
+	}
+}
@@ -0,0 +1,102 @@
+package cz.cvut.bigdata.tfidf.bench;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.Progress;
+
+import java.io.IOException;
+
+/**
+ * Local stubs of the mapper and reducer contexts, the emitted
+ * key-value pairs are consumed by the {@link Sink}.
+ */
+public final class Contexts {
+
+	private Contexts() {
+	}
+
+	/** Creates the mapper context writing into given sink. */
+	public static <KI, VI, KO, VO> Mapper<KI, VI, KO, VO>.Context mapContext(Configuration conf, Sink<KO, VO> sink) {
+		final MapContextImpl<KI, VI, KO, VO> context = new MapContextImpl<KI, VI, KO, VO>(
+				conf, new TaskAttemptID(), null, sink, null, new TaskAttemptContextImpl.DummyReporter(), null);
+		return new WrappedMapper<KI, VI, KO, VO>().getMapContext(context);
+	}
+
+	/** Creates the reducer context writing into given sink. */
+	@SuppressWarnings("unchecked")
+	public static <KI, VI, KO, VO> Reducer<KI, VI, KO, VO>.Context reduceContext(
+			Configuration conf, Class<? extends KI> keyClass, Class<VI> valueClass, Sink<KO, VO> sink) throws IOException, InterruptedException {
+		final WritableComparator comparator = WritableComparator.get((Class<? extends WritableComparable>) keyClass);
+		final ReduceContextImpl<KI, VI, KO, VO> context = new ReduceContextImpl<KI, VI, KO, VO>(
+				conf, new TaskAttemptID(), new EmptyIterator(), new GenericCounter(), new GenericCounter(), sink, null,
+				new TaskAttemptContextImpl.DummyReporter(), comparator, (Class<KI>) keyClass, valueClass);
+		return new WrappedReducer<KI, VI, KO, VO>().getReducerContext(context);
+	}
+
+	/** Record writer counting the emitted key-value pairs. */
+	public static class Sink<K, V> extends RecordWriter<K, V> {
+
+		private long records = 0L;
+		private int hash = 0;
+
+		@Override
+		public void write(K key, V value) {
+			records++;
+			hash += key.hashCode();
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {
+		}
+
+		public long getRecords() {
+			return records;
+		}
+
+		public int getHash() {
+			return hash;
+		}
+	}
+
+	/** Empty input of the reducer, the values are passed directly. */
+	private static class EmptyIterator implements RawKeyValueIterator {
+
+		@Override
+		public DataInputBuffer getKey() {
+			return null;
+		}
+
+		@Override
+		public DataInputBuffer getValue() {
+			return null;
+		}
+
+		@Override
+		public boolean next() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public Progress getProgress() {
+			return null;
+		}
+	}
+}
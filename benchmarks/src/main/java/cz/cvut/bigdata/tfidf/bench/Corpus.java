@@ -0,0 +1,89 @@
+package cz.cvut.bigdata.tfidf.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of synthetic Czech-like documents. The vocabulary consists
+ * of words built from Czech syllables and the words are drawn from the
+ * Zipfian distribution, i.e. the probability of the word of rank
+ * <i>r</i> is proportional to <i>1 / r^s</i>. The documents contain
+ * some HTML tags, punctuation and numbers as well.
+ */
+public class Corpus {
+
+	private static final String[] CONSONANTS = {
+			"b", "c", "č", "d", "ď", "f", "g", "h", "ch", "j", "k", "l", "m", "n", "ň",
+			"p", "r", "ř", "s", "š", "t", "ť", "v", "z", "ž", "st", "pr", "kr", "sk", "zn"
+	};
+	private static final String[] VOWELS = {"a", "á", "e", "é", "ě", "i", "í", "o", "u", "ú", "ů", "y", "ý"};
+	private static final String[] NOISE = {"<b>", "</b>", "<ref name=\"a\">", "</ref>", ".", ",", "!", "?", ":", "\"", "2014", "x1"};
+
+	private final Random random;
+	private final String[] vocabulary;
+	private final double[] cumulative;
+
+	public Corpus(int vocabularySize, double exponent, long seed) {
+		random = new Random(seed);
+		vocabulary = new String[vocabularySize];
+		cumulative = new double[vocabularySize];
+
+		double sum = 0.0;
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			vocabulary[rank] = word(rank);
+			sum += 1.0 / Math.pow(rank + 1, exponent);
+			cumulative[rank] = sum;
+		}
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			cumulative[rank] /= sum;
+		}
+	}
+
+	/** Returns a random word from the vocabulary. */
+	public String nextWord() {
+		return vocabulary[nextRank()];
+	}
+
+	/** Returns a random rank of the word from the Zipfian distribution. */
+	public int nextRank() {
+		final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min((index >= 0) ? index : -index - 1, cumulative.length - 1);
+	}
+
+	/** Returns a random document of given number of words. */
+	public String nextDocument(int length) {
+		final StringBuilder document = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				document.append(' ');
+			}
+			if (random.nextInt(20) == 0) {
+				document.append(NOISE[random.nextInt(NOISE.length)]).append(' ');
+			}
+			document.append(nextWord());
+		}
+		return document.toString();
+	}
+
+	/** Returns given number of random documents. */
+	public String[] nextDocuments(int count, int length) {
+		final String[] documents = new String[count];
+		for (int i = 0; i < count; i++) {
+			documents[i] = nextDocument(length);
+		}
+		return documents;
+	}
+
+	/** Builds the (unique) word of given rank. */
+	private static String word(int rank) {
+		final StringBuilder word = new StringBuilder();
+		int value = rank;
+		do {
+			word.append(CONSONANTS[value % CONSONANTS.length]);
+			value /= CONSONANTS.length;
+			word.append(VOWELS[value % VOWELS.length]);
+			value /= VOWELS.length;
+		} while (value > 0);
+		return word.toString();
+	}
+}
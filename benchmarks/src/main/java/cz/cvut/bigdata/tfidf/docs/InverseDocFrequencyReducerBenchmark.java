@@ -0,0 +1,112 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import cz.cvut.bigdata.tfidf.DocFreqWritable;
+import cz.cvut.bigdata.tfidf.bench.Contexts;
+import cz.cvut.bigdata.tfidf.bench.Corpus;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the <i>InverseDocFrequencyReducer</i> to process a posting
+ * list of given length. The values are iterated using a single reused
+ * instance, the same way as the Hadoop does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InverseDocFrequencyReducerBenchmark {
+
+	@Param({"1000", "100000"})
+	public int postings;
+
+	@Param({"10000000"})
+	public int documents;
+
+	@Param({"1.0"})
+	public double exponent;
+
+	private final Text term = new Text("lingvistik");
+
+	private int[] docs;
+	private int[] freqs;
+
+	private InverseDocFrequencyReducer reducer;
+	private InverseDocFrequencyReducer.Context context;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		// term frequencies from the Zipfian distribution, filtered as by the TermFrequencyReducer
+		final Corpus corpus = new Corpus(1000, exponent, 42L);
+		final Random random = new Random(42L);
+		docs = new int[postings];
+		freqs = new int[postings];
+		for (int i = 0; i < postings; i++) {
+			docs[i] = random.nextInt(documents) + 1;
+			freqs[i] = 3 + corpus.nextRank();
+		}
+
+		reducer = new InverseDocFrequencyReducer();
+		context = Contexts.<Writable, DocFreqWritable, Text, Writable>reduceContext(new Configuration(false), Text.class, DocFreqWritable.class, new Contexts.Sink<Text, Writable>());
+		reducer.setup(context);
+
+		// setup the number of documents
+		final DocFreqWritable numberOfDocuments = new DocFreqWritable();
+		numberOfDocuments.set(0, documents);
+		reducer.reduce(new Text("_0"), Collections.singletonList(numberOfDocuments), context);
+	}
+
+	@Benchmark
+	public void reduce() throws IOException, InterruptedException {
+		reducer.reduce(term, new Postings(), context);
+	}
+
+	/** Iterable over the postings, reusing a single value instance. */
+	private class Postings implements Iterable<DocFreqWritable>, Iterator<DocFreqWritable> {
+
+		private final DocFreqWritable value = new DocFreqWritable();
+		private int index = 0;
+
+		@Override
+		public Iterator<DocFreqWritable> iterator() {
+			return this;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < postings;
+		}
+
+		@Override
+		public DocFreqWritable next() {
+			value.set(docs[index], freqs[index]);
+			index++;
+			return value;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
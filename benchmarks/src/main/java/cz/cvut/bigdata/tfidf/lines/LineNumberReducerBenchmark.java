@@ -0,0 +1,77 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import cz.cvut.bigdata.tfidf.bench.Contexts;
+import cz.cvut.bigdata.tfidf.bench.Corpus;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the <i>LineNumberReducer</i> (documents per second).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineNumberReducerBenchmark {
+
+	private static final int DOCUMENTS = 1024;
+
+	@Param({"100", "1000"})
+	public int docLength;
+
+	@Param({"100000"})
+	public int vocabulary;
+
+	private LongWritable[] offsets;
+	private List<Text>[] values;
+
+	private LineNumberReducer reducer;
+	private LineNumberReducer.Context context;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException, InterruptedException {
+		final String[] documents = new Corpus(vocabulary, 1.0, 42L).nextDocuments(DOCUMENTS, docLength);
+		offsets = new LongWritable[DOCUMENTS];
+		values = new List[DOCUMENTS];
+		long offset = 1L;
+		for (int i = 0; i < DOCUMENTS; i++) {
+			offsets[i] = new LongWritable(offset);
+			values[i] = Collections.singletonList(new Text(documents[i]));
+			offset += documents[i].length() + 1;
+		}
+
+		reducer = new LineNumberReducer();
+		context = Contexts.reduceContext(new Configuration(false), LongWritable.class, Text.class, new Contexts.Sink<IntWritable, Text>());
+		reducer.setup(context);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DOCUMENTS)
+	public void reduce() throws IOException, InterruptedException {
+		for (int i = 0; i < DOCUMENTS; i++) {
+			reducer.reduce(offsets[i], values[i], context);
+		}
+	}
+}
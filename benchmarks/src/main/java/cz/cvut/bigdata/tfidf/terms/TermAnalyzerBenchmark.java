@@ -0,0 +1,106 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import cz.cvut.bigdata.tfidf.bench.Corpus;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.cz.CzechAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the tokenization (documents per second), i.e. the former
+ * regular expressions around the Lucene Czech analyzer compared with the
+ * <i>TermAnalyzer</i> chain, which strips the markup and filters the terms
+ * by the <i>MarkupCharFilter</i> and the <i>TermFilter</i>. Both count the
+ * characters of the terms, so they do the same work per term.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermAnalyzerBenchmark {
+
+	private static final int DOCUMENTS = 256;
+
+	@Param({"100", "400"})
+	public int docLength;
+
+	@Param({"100000"})
+	public int vocabulary;
+
+	@Param({"1.0"})
+	public double exponent;
+
+	private String[] documents;
+
+	private final CzechAnalyzer czechAnalyzer = new CzechAnalyzer(Version.LUCENE_47);
+	private final TermAnalyzer termAnalyzer = new TermAnalyzer(Version.LUCENE_47);
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		documents = new Corpus(vocabulary, exponent, 42L).nextDocuments(DOCUMENTS, docLength);
+	}
+
+	/** The parsing of terms before the <i>TermAnalyzer</i>. */
+	@Benchmark
+	public int regex() throws IOException {
+		// remove HTML tags and other special chars
+		final String text = documents[nextDocument()].replaceAll("<(.*?)>", " ").replaceAll("[.,!?:;_'\"]", " ");
+
+		int length = 0;
+		final TokenStream tokenStream = czechAnalyzer.tokenStream("word", text);
+		try {
+			tokenStream.reset();
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				final String term = termAttribute.toString();
+				// exclude single characters and numbers
+				if (term.length() > 1 && !term.matches("^(.*?)[0-9](.*?)$")) {
+					length += term.length();
+				}
+			}
+			tokenStream.end();
+		} finally {
+			tokenStream.close();
+		}
+		return length;
+	}
+
+	@Benchmark
+	public int analyzer() throws IOException {
+		int length = 0;
+		final TokenStream tokenStream = termAnalyzer.tokenStream("word", documents[nextDocument()]);
+		try {
+			tokenStream.reset();
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				length += termAttribute.length();
+			}
+			tokenStream.end();
+		} finally {
+			tokenStream.close();
+		}
+		return length;
+	}
+
+	private int nextDocument() {
+		next = (next + 1) % DOCUMENTS;
+		return next;
+	}
+}
@@ -0,0 +1,91 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import cz.cvut.bigdata.tfidf.bench.Contexts;
+import cz.cvut.bigdata.tfidf.bench.Corpus;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the <i>TermFrequencyMapper</i>, i.e. the parsing
+ * of terms and the whole map method (documents per second).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermFrequencyMapperBenchmark {
+
+	private static final int DOCUMENTS = 256;
+
+	@Param({"100", "1000"})
+	public int docLength;
+
+	@Param({"100000"})
+	public int vocabulary;
+
+	@Param({"1.0"})
+	public double exponent;
+
+	@Param({"false", "true"})
+	public boolean inMapper;
+
+	private String[] documents;
+	private Text[] values;
+	private IntWritable[] keys;
+
+	private TermFrequencyMapper mapper;
+	private TermFrequencyMapper.Context context;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		documents = new Corpus(vocabulary, exponent, 42L).nextDocuments(DOCUMENTS, docLength);
+		values = new Text[DOCUMENTS];
+		keys = new IntWritable[DOCUMENTS];
+		for (int i = 0; i < DOCUMENTS; i++) {
+			values[i] = new Text(documents[i]);
+			keys[i] = new IntWritable(i + 1);
+		}
+
+		final Configuration conf = new Configuration(false);
+		conf.setBoolean(TermFrequencyMapper.IN_MAPPER_COMBINING, inMapper);
+		mapper = new TermFrequencyMapper();
+		context = Contexts.mapContext(conf, new Contexts.Sink<Writable, IntWritable>());
+		mapper.setup(context);
+	}
+
+	@Benchmark
+	public List<String> parseTerms() throws IOException {
+		return mapper.parseTerms(documents[nextDocument()]);
+	}
+
+	@Benchmark
+	public void map() throws IOException, InterruptedException {
+		final int document = nextDocument();
+		mapper.map((Writable) keys[document], values[document], context);
+	}
+
+	private int nextDocument() {
+		next = (next + 1) % DOCUMENTS;
+		return next;
+	}
+}
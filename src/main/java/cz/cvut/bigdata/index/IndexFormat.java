@@ -0,0 +1,40 @@
+package cz.cvut.bigdata.index;
+
+/**
+ * Constants of the on-disk layout of the TF-IDF index. The index
+ * directory contains three files (all the numbers are big-endian):
+ * <ul>
+ *     <li><i>terms</i> - the header (magic, version, number of terms),
+ *     then the fixed-size entries sorted by the UTF-8 bytes of the terms
+ *     <b>(term offset, term length, postings offset, df)</b> and finally
+ *     the UTF-8 bytes of the terms</li>
+ *     <li><i>postings</i> - the posting lists, each one as the array of
+ *     its sorted documents (int32) followed by the array of the scores
+ *     (float32). The file is split into segments, which are mapped
+ *     separately, and no posting list spans two segments.</li>
+ *     <li><i>analyzer</i> - the properties of the analyzer of the
+ *     documents, which parses the queries too (missing in the indexes
+ *     of the default analyzer written before)</li>
+ * </ul>
+ */
+final class IndexFormat {
+
+	static final String TERMS_FILE = "terms";
+	static final String POSTINGS_FILE = "postings";
+	static final String ANALYZER_FILE = "analyzer";
+
+	// prefix of the analyzer properties
+	static final String ANALYZER_PREFIX = "tfidf.analyzer.";
+
+	static final int MAGIC = 0x54464958; // "TFIX"
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 12;
+	static final int ENTRY_SIZE = 20;
+
+	static final int SEGMENT_BITS = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	private IndexFormat() {
+	}
+}
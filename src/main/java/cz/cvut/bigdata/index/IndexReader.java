@@ -0,0 +1,275 @@
+package cz.cvut.bigdata.index;
+
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * Reader of the local TF-IDF index written by the <i>IndexWriter</i>.
+ * The index files are memory-mapped, the terms are binary searched and
+ * the postings are read directly from the mapped buffers. The reader is
+ * thread-safe, since it only uses absolute reads.
+ * <p/>
+ * The score of a document for a query is the sum of its TF-IDF scores
+ * of the query terms (weighted by their occurrences in the query). The
+ * posting lists of the query terms are merged document-at-a-time, thus
+ * only the best k documents are kept in memory. A textual query is
+ * parsed into the terms by the same analyzer as the documents, configured
+ * by the analyzer properties stored by the <i>IndexWriter</i>.
+ */
+public class IndexReader implements Closeable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Analyzer analyzer;
+
+	private final RandomAccessFile termsFile;
+	private final RandomAccessFile postingsFile;
+
+	private final MappedByteBuffer terms;
+	private final MappedByteBuffer[] segments;
+
+	private final int numberOfTerms;
+	private final int termsStart;
+
+	private IndexReader(Analyzer analyzer, RandomAccessFile termsFile, RandomAccessFile postingsFile) throws IOException {
+		this.analyzer = analyzer;
+		this.termsFile = termsFile;
+		this.postingsFile = postingsFile;
+
+		final FileChannel termsChannel = termsFile.getChannel();
+		terms = termsChannel.map(FileChannel.MapMode.READ_ONLY, 0L, termsChannel.size());
+		if (terms.getInt(0) != IndexFormat.MAGIC || terms.getInt(4) != IndexFormat.VERSION) {
+			throw new IOException("not a TF-IDF index");
+		}
+		numberOfTerms = terms.getInt(8);
+		termsStart = IndexFormat.HEADER_SIZE + IndexFormat.ENTRY_SIZE * numberOfTerms;
+
+		// map the postings by segments
+		final FileChannel postingsChannel = postingsFile.getChannel();
+		final long size = postingsChannel.size();
+		segments = new MappedByteBuffer[(int) ((size + IndexFormat.SEGMENT_SIZE - 1) >>> IndexFormat.SEGMENT_BITS)];
+		for (int i = 0; i < segments.length; i++) {
+			final long start = (long) i << IndexFormat.SEGMENT_BITS;
+			segments[i] = postingsChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(IndexFormat.SEGMENT_SIZE, size - start));
+		}
+	}
+
+	/** Opens the index in given directory. */
+	public static IndexReader open(File dir) throws IOException {
+		final Analyzer analyzer = TermAnalyzer.get(readAnalyzer(new File(dir, IndexFormat.ANALYZER_FILE)));
+		final RandomAccessFile termsFile = new RandomAccessFile(new File(dir, IndexFormat.TERMS_FILE), "r");
+		RandomAccessFile postingsFile = null;
+		try {
+			postingsFile = new RandomAccessFile(new File(dir, IndexFormat.POSTINGS_FILE), "r");
+			return new IndexReader(analyzer, termsFile, postingsFile);
+		} catch (IOException e) {
+			termsFile.close();
+			if (postingsFile != null) {
+				postingsFile.close();
+			}
+			throw e;
+		}
+	}
+
+	/** Reads the analyzer properties of the index, the default analyzer when missing. */
+	private static Configuration readAnalyzer(File file) throws IOException {
+		final Configuration conf = new Configuration(false);
+		if (!file.exists()) {
+			return conf;
+		}
+
+		final Properties properties = new Properties();
+		final Reader reader = new InputStreamReader(new FileInputStream(file), UTF8);
+		try {
+			properties.load(reader);
+		} finally {
+			reader.close();
+		}
+		for (String name : properties.stringPropertyNames()) {
+			conf.set(name, properties.getProperty(name));
+		}
+		return conf;
+	}
+
+	/** Returns the number of terms. */
+	public int size() {
+		return numberOfTerms;
+	}
+
+	/** Returns the document frequency of given term, or 0 for an unknown term. */
+	public int getDocFrequency(String term) {
+		final int index = find(term.getBytes(UTF8));
+		return (index >= 0) ? terms.getInt(entry(index) + 16) : 0;
+	}
+
+	/** Returns the posting list of given term, or null for an unknown term. */
+	public Postings getPostings(String term) {
+		final int index = find(term.getBytes(UTF8));
+		if (index < 0) {
+			return null;
+		}
+		final int entry = entry(index);
+		final long offset = terms.getLong(entry + 8);
+		final ByteBuffer segment = segments[(int) (offset >>> IndexFormat.SEGMENT_BITS)];
+		return new Postings(segment, (int) (offset & (IndexFormat.SEGMENT_SIZE - 1)), terms.getInt(entry + 16));
+	}
+
+	/** Returns the best k documents for the textual query, sorted by the descending score. */
+	public List<ScoredDocument> search(String query, int k) throws IOException {
+		final List<String> terms = new ArrayList<String>();
+		final TokenStream tokenStream = analyzer.tokenStream("word", query);
+		try {
+			tokenStream.reset();
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				terms.add(termAttribute.toString());
+			}
+			tokenStream.end();
+		} finally {
+			tokenStream.close();
+		}
+		return search(terms, k);
+	}
+
+	/** Returns the best k documents for the query terms, sorted by the descending score. */
+	public List<ScoredDocument> search(Collection<String> query, int k) {
+		// weight the query terms by their occurrences
+		final Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+		for (String term : query) {
+			final Integer weight = weights.get(term);
+			weights.put(term, (weight != null) ? weight + 1 : 1);
+		}
+
+		final List<Postings> lists = new ArrayList<Postings>();
+		final List<Integer> listWeights = new ArrayList<Integer>();
+		for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+			final Postings postings = getPostings(entry.getKey());
+			if (postings != null && postings.size() > 0) {
+				lists.add(postings);
+				listWeights.add(entry.getValue());
+			}
+		}
+		if (k <= 0 || lists.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		final int n = lists.size();
+		final Postings[] postings = lists.toArray(new Postings[n]);
+		final int[] cursors = new int[n];
+		final int[] docs = new int[n];
+		final float[] factors = new float[n];
+		for (int i = 0; i < n; i++) {
+			docs[i] = postings[i].getDoc(0);
+			factors[i] = listWeights.get(i);
+		}
+
+		// min-heap of the best k documents (the worst one on the top)
+		final PriorityQueue<ScoredDocument> best = new PriorityQueue<ScoredDocument>(k, Collections.<ScoredDocument>reverseOrder());
+		while (true) {
+			// the smallest current document of the lists
+			int doc = Integer.MAX_VALUE;
+			boolean finished = true;
+			for (int i = 0; i < n; i++) {
+				if (cursors[i] < postings[i].size()) {
+					finished = false;
+					doc = Math.min(doc, docs[i]);
+				}
+			}
+			if (finished) {
+				break;
+			}
+
+			// sum-up the scores of the document and advance the cursors
+			float score = 0f;
+			for (int i = 0; i < n; i++) {
+				if (cursors[i] < postings[i].size() && docs[i] == doc) {
+					score += factors[i] * postings[i].getScore(cursors[i]);
+					if (++cursors[i] < postings[i].size()) {
+						docs[i] = postings[i].getDoc(cursors[i]);
+					}
+				}
+			}
+
+			if (best.size() < k) {
+				best.add(new ScoredDocument(doc, score));
+			} else if (score > best.peek().getScore()) {
+				best.poll();
+				best.add(new ScoredDocument(doc, score));
+			}
+		}
+
+		final List<ScoredDocument> result = new ArrayList<ScoredDocument>(best);
+		Collections.sort(result);
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			termsFile.close();
+		} finally {
+			postingsFile.close();
+		}
+	}
+
+	/** Returns position of the i-th term entry. */
+	private static int entry(int index) {
+		return IndexFormat.HEADER_SIZE + IndexFormat.ENTRY_SIZE * index;
+	}
+
+	/** Binary search of the term bytes, returns the index of the term or -1. */
+	private int find(byte[] term) {
+		int low = 0;
+		int high = numberOfTerms - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int val = compareTerm(mid, term);
+			if (val < 0) {
+				low = mid + 1;
+			} else if (val > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/** Compares the i-th term with given bytes, directly in the mapped buffer. */
+	private int compareTerm(int index, byte[] term) {
+		final int entry = entry(index);
+		final int start = termsStart + terms.getInt(entry);
+		final int length = terms.getInt(entry + 4);
+		final int common = Math.min(length, term.length);
+		for (int i = 0; i < common; i++) {
+			final int val = (terms.get(start + i) & 0xFF) - (term[i] & 0xFF);
+			if (val != 0) {
+				return val;
+			}
+		}
+		return length - term.length;
+	}
+}
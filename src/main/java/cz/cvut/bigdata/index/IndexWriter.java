@@ -0,0 +1,257 @@
+package cz.cvut.bigdata.index;
+
+import cz.cvut.bigdata.cli.ArgumentParser;
+import cz.cvut.bigdata.tfidf.postings.PostingsIterator;
+import cz.cvut.bigdata.tfidf.postings.PostingsOutputFormat;
+import cz.cvut.bigdata.tfidf.postings.PostingsReader;
+import cz.cvut.bigdata.tfidf.postings.PostingsWritable;
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Converts the final TF-IDF output, either the text lines or the binary
+ * posting lists, into the local index read by the <i>IndexReader</i>, see
+ * the <i>IndexFormat</i> for the layout. The posting lists are streamed
+ * into the index, only the terms are kept in memory to be sorted.
+ * <p/>
+ * The analyzer properties of the configuration (the same ones as used
+ * for the documents) are stored along with the index, so the queries are
+ * parsed by the same analyzer.
+ */
+public class IndexWriter extends Configured implements Tool {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static void main(String[] arguments) throws Exception {
+		System.exit(ToolRunner.run(new IndexWriter(), arguments));
+	}
+
+	@Override
+	public int run(String[] arguments) throws Exception {
+		final ArgumentParser parser = new ArgumentParser("IndexWriter");
+
+		parser.addArgument("input", true, true, "specify the tf-idf output directory");
+		parser.addArgument("output", true, true, "specify the local index directory");
+		parser.parseAndCheck(arguments);
+
+		write(getConf(), new Path(parser.getString("input")), new File(parser.getString("output")));
+		return 0;
+	}
+
+	/** Writes the index of given TF-IDF output into the local directory. */
+	public static void write(Configuration conf, Path input, File output) throws IOException {
+		if (!output.isDirectory() && !output.mkdirs()) {
+			throw new IOException("cannot create the index directory " + output);
+		}
+
+		final List<Entry> entries = new ArrayList<Entry>();
+		final PostingsFileWriter postings = new PostingsFileWriter(new File(output, IndexFormat.POSTINGS_FILE));
+		try {
+			final FileSystem fs = input.getFileSystem(conf);
+			final FileStatus[] indexFiles = fs.globStatus(new Path(input, "part-*" + PostingsOutputFormat.INDEX_EXTENSION));
+			if (indexFiles != null && indexFiles.length > 0) {
+				writeBinaryPostings(conf, input, postings, entries);
+			} else {
+				writeTextPostings(fs, input, postings, entries);
+			}
+		} finally {
+			postings.close();
+		}
+
+		writeTerms(new File(output, IndexFormat.TERMS_FILE), entries);
+		writeAnalyzer(new File(output, IndexFormat.ANALYZER_FILE), conf);
+	}
+
+	/** Copies the binary posting lists into the index. */
+	private static void writeBinaryPostings(Configuration conf, Path input, PostingsFileWriter out, List<Entry> entries) throws IOException {
+		final PostingsWritable postings = new PostingsWritable();
+		final PostingsReader reader = PostingsReader.open(conf, input);
+		try {
+			for (String term : reader.getTerms()) {
+				final PostingsIterator iterator = reader.getPostings(term);
+				postings.clear();
+				while (iterator.next()) {
+					postings.add(iterator.doc(), iterator.score());
+				}
+				entries.add(out.write(term.getBytes(UTF8), postings));
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Parses the text lines <b>term \t doc:score doc:score ...</b> into the index. */
+	private static void writeTextPostings(FileSystem fs, Path input, PostingsFileWriter out, List<Entry> entries) throws IOException {
+		final FileStatus[] parts = fs.globStatus(new Path(input, "part-*"));
+		if (parts == null) {
+			throw new IOException("no tf-idf output in " + input);
+		}
+
+		final PostingsWritable postings = new PostingsWritable();
+		for (FileStatus part : parts) {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(part.getPath()), UTF8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					final int tab = line.indexOf('\t');
+					if (tab < 0) {
+						throw new IOException("invalid tf-idf line in " + part.getPath() + ": " + line);
+					}
+
+					postings.clear();
+					int start = tab + 1;
+					while (start < line.length()) {
+						int end = line.indexOf(' ', start);
+						if (end < 0) {
+							end = line.length();
+						}
+						final int colon = line.indexOf(':', start);
+						postings.add(Integer.parseInt(line.substring(start, colon)), Float.parseFloat(line.substring(colon + 1, end)));
+						start = end + 1;
+					}
+					postings.sort();
+					entries.add(out.write(line.substring(0, tab).getBytes(UTF8), postings));
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	/** Writes the sorted term entries followed by the term bytes. */
+	private static void writeTerms(File file, List<Entry> entries) throws IOException {
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return WritableComparator.compareBytes(e1.term, 0, e1.term.length, e2.term, 0, e2.term.length);
+			}
+		});
+
+		long size = IndexFormat.HEADER_SIZE + (long) IndexFormat.ENTRY_SIZE * entries.size();
+		for (Entry entry : entries) {
+			size += entry.term.length;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("too many terms " + entries.size());
+		}
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(IndexFormat.MAGIC);
+			out.writeInt(IndexFormat.VERSION);
+			out.writeInt(entries.size());
+
+			int termOffset = 0;
+			for (Entry entry : entries) {
+				out.writeInt(termOffset);
+				out.writeInt(entry.term.length);
+				out.writeLong(entry.offset);
+				out.writeInt(entry.size);
+				termOffset += entry.term.length;
+			}
+			for (Entry entry : entries) {
+				out.write(entry.term);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Writes the analyzer properties of the configuration. */
+	private static void writeAnalyzer(File file, Configuration conf) throws IOException {
+		// fail early on the invalid settings
+		TermAnalyzer.get(conf);
+
+		final Properties properties = new Properties();
+		for (Map.Entry<String, String> entry : conf) {
+			if (entry.getKey().startsWith(IndexFormat.ANALYZER_PREFIX)) {
+				properties.setProperty(entry.getKey(), entry.getValue());
+			}
+		}
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+		try {
+			properties.store(writer, "analyzer of the documents");
+		} finally {
+			writer.close();
+		}
+	}
+
+	/** Term with the offset and the size of its posting list. */
+	private static class Entry {
+
+		private final byte[] term;
+		private final long offset;
+		private final int size;
+
+		private Entry(byte[] term, long offset, int size) {
+			this.term = term;
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+
+	/** Writer of the posting lists, aligned to the segments. */
+	private static class PostingsFileWriter {
+
+		private final DataOutputStream out;
+		private long position = 0L;
+
+		private PostingsFileWriter(File file) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		}
+
+		private Entry write(byte[] term, PostingsWritable postings) throws IOException {
+			final long length = 8L * postings.size();
+			if (length > IndexFormat.SEGMENT_SIZE) {
+				throw new IOException("too long posting list " + postings.size());
+			}
+
+			// the posting list must not span two segments
+			final long remaining = IndexFormat.SEGMENT_SIZE - (position & (IndexFormat.SEGMENT_SIZE - 1));
+			if (length > remaining) {
+				for (long i = 0; i < remaining; i++) {
+					out.write(0);
+				}
+				position += remaining;
+			}
+
+			final Entry entry = new Entry(term, position, postings.size());
+			for (int i = 0; i < postings.size(); i++) {
+				out.writeInt(postings.getDoc(i));
+			}
+			for (int i = 0; i < postings.size(); i++) {
+				out.writeFloat(postings.getScore(i));
+			}
+			position += length;
+			return entry;
+		}
+
+		private void close() throws IOException {
+			out.close();
+		}
+	}
+}
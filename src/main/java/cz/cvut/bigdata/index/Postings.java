@@ -0,0 +1,35 @@
+package cz.cvut.bigdata.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Posting list of a term, read directly from the mapped index
+ * (without copying). The documents are sorted.
+ */
+public class Postings {
+
+	private final ByteBuffer buffer;
+	private final int position;
+	private final int size;
+
+	Postings(ByteBuffer buffer, int position, int size) {
+		this.buffer = buffer;
+		this.position = position;
+		this.size = size;
+	}
+
+	/** Returns the number of postings, i.e. the document frequency. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the document of the i-th posting. */
+	public int getDoc(int index) {
+		return buffer.getInt(position + 4 * index);
+	}
+
+	/** Returns the TF-IDF score of the i-th posting. */
+	public float getScore(int index) {
+		return buffer.getFloat(position + 4 * (size + index));
+	}
+}
@@ -0,0 +1,49 @@
+package cz.cvut.bigdata.index;
+
+/**
+ * Document with its score for a query, the documents are ordered
+ * by the descending score (and the ascending document).
+ */
+public class ScoredDocument implements Comparable<ScoredDocument> {
+
+	private final int document;
+	private final float score;
+
+	public ScoredDocument(int document, float score) {
+		this.document = document;
+		this.score = score;
+	}
+
+	public int getDoc() {
+		return document;
+	}
+
+	public float getScore() {
+		return score;
+	}
+
+	@Override
+	public int compareTo(ScoredDocument o) {
+		final int val = Float.compare(o.score, score);
+		return (val != 0) ? val : ((document < o.document) ? -1 : ((document == o.document) ? 0 : 1));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ScoredDocument)) return false;
+
+		final ScoredDocument that = (ScoredDocument) o;
+		return document == that.document && Float.compare(score, that.score) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * document + Float.floatToIntBits(score);
+	}
+
+	@Override
+	public String toString() {
+		return document + ":" + score;
+	}
+}
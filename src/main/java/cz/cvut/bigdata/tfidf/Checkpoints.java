@@ -0,0 +1,167 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checkpoints of the completed jobs, which allow to skip the jobs completed
+ * by a previous run. The checkpoint is a fingerprint of the job, stored in
+ * the <b>_CHECKPOINT</b> file of the job output, and it is computed from
+ * the job configuration and from the fingerprints of the job inputs.
+ * <p/>
+ * The input produced by a job of the same run is identified by the
+ * fingerprint of that job, thus the fingerprints are chained and known
+ * before any job is executed. The other inputs are identified by the
+ * checksums of their files, or by their modification times, when the file
+ * system does not provide the checksums (e.g. the local file system).
+ */
+public class Checkpoints {
+
+	/** Name of the checkpoint file in the job output. */
+	public static final String CHECKPOINT_FILE = "_CHECKPOINT";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final FileSystem fs;
+	private final boolean enabled;
+
+	private final Map<Path, String> fingerprints = new HashMap<Path, String>();
+	private final Map<Job, Path> pending = new IdentityHashMap<Job, Path>();
+
+	public Checkpoints(FileSystem fs, boolean enabled) {
+		this.fs = fs;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns true when the output of the job was completed by a previous
+	 * run with the same fingerprint, otherwise the job is registered to
+	 * write its checkpoint once it succeeds.
+	 */
+	public boolean isCompleted(Job job, Path output, Path... sideInputs) throws IOException {
+		if (!enabled) {
+			return false;
+		}
+
+		final String fingerprint = fingerprint(job, sideInputs);
+		fingerprints.put(fs.makeQualified(output), fingerprint);
+		if (fingerprint.equals(readCheckpoint(output)) && fs.exists(new Path(output, "_SUCCESS"))) {
+			return true;
+		}
+		pending.put(job, output);
+		return false;
+	}
+
+	/** Writes the checkpoints of the succeeded jobs (if not written yet). */
+	public void write(Collection<ControlledJob> succeeded) throws IOException {
+		for (ControlledJob controlledJob : succeeded) {
+			final Path output = pending.remove(controlledJob.getJob());
+			if (output != null) {
+				final FSDataOutputStream out = fs.create(new Path(output, CHECKPOINT_FILE), true);
+				try {
+					out.write(fingerprints.get(fs.makeQualified(output)).getBytes(UTF8));
+				} finally {
+					IOUtils.closeStream(out);
+				}
+			}
+		}
+	}
+
+	/** Computes the fingerprint of the job configuration and of its inputs. */
+	private String fingerprint(Job job, Path... sideInputs) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+
+		// the configuration, sorted by the keys
+		final Map<String, String> properties = new TreeMap<String, String>();
+		for (Map.Entry<String, String> entry : job.getConfiguration()) {
+			properties.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+			builder.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+		}
+
+		// the inputs
+		final List<Path> inputs = new ArrayList<Path>(Arrays.asList(FileInputFormat.getInputPaths(job)));
+		inputs.addAll(Arrays.asList(sideInputs));
+		for (Path input : inputs) {
+			builder.append(input).append(':').append(fingerprint(input)).append('\n');
+		}
+
+		return MD5Hash.digest(builder.toString().getBytes(UTF8)).toString();
+	}
+
+	/** Returns the fingerprint of the job output or of the input files. */
+	private String fingerprint(Path input) throws IOException {
+		final String fingerprint = fingerprints.get(fs.makeQualified(input));
+		if (fingerprint != null) {
+			return fingerprint;
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		final FileStatus[] statuses = fs.globStatus(input);
+		if (statuses != null) {
+			Arrays.sort(statuses);
+			for (FileStatus status : statuses) {
+				appendFiles(status, builder);
+			}
+		}
+		return MD5Hash.digest(builder.toString().getBytes(UTF8)).toString();
+	}
+
+	/** Appends the checksums of the (non-hidden) files. */
+	private void appendFiles(FileStatus status, StringBuilder builder) throws IOException {
+		final String name = status.getPath().getName();
+		if (name.startsWith("_") || name.startsWith(".")) {
+			return;
+		}
+		if (status.isDirectory()) {
+			final FileStatus[] statuses = fs.listStatus(status.getPath());
+			Arrays.sort(statuses);
+			for (FileStatus child : statuses) {
+				appendFiles(child, builder);
+			}
+			return;
+		}
+
+		final FileChecksum checksum = fs.getFileChecksum(status.getPath());
+		builder.append(status.getPath()).append(' ').append(status.getLen()).append(' ');
+		builder.append((checksum != null) ? checksum.toString() : String.valueOf(status.getModificationTime()));
+		builder.append('\n');
+	}
+
+	/** Reads the checkpoint of the output, returns null if missing. */
+	private String readCheckpoint(Path output) throws IOException {
+		final Path file = new Path(output, CHECKPOINT_FILE);
+		if (!fs.exists(file)) {
+			return null;
+		}
+		final FSDataInputStream in = fs.open(file);
+		try {
+			final byte[] bytes = new byte[(int) fs.getFileStatus(file).getLen()];
+			in.readFully(bytes);
+			return new String(bytes, UTF8);
+		} finally {
+			IOUtils.closeStream(in);
+		}
+	}
+}
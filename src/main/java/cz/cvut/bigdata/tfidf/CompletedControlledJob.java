@@ -0,0 +1,23 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+
+import java.io.IOException;
+
+/**
+ * Extension of the <i>ControlledJob</i> representing a job completed by
+ * a previous run, see the <i>Checkpoints</i>. Instead of the submission,
+ * the job just succeeds, so its depending jobs run on its previous output.
+ */
+public class CompletedControlledJob extends ControlledJob {
+
+	public CompletedControlledJob(Job job) throws IOException {
+		super(job, null);
+	}
+
+	@Override
+	protected synchronized void submit() {
+		setJobState(State.SUCCESS);
+	}
+}
@@ -0,0 +1,49 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing a pair
+ * <b>(document, frequency)</b>, i.e. one posting of a term. The term
+ * itself is given by the key, thus it is not repeated in the value.
+ */
+public class DocFreqWritable implements Writable {
+
+	private int document = 0;
+	private int frequency = 0;
+
+	public void set(int document, int frequency) {
+		this.document = document;
+		this.frequency = frequency;
+	}
+
+	public int getDoc() {
+		return document;
+	}
+
+	public int getFreq() {
+		return frequency;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, document);
+		WritableUtils.writeVInt(out, frequency);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		document = WritableUtils.readVInt(in);
+		frequency = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	public String toString() {
+		return document + ":" + frequency;
+	}
+}
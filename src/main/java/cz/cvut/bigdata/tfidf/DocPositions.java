@@ -0,0 +1,111 @@
+package cz.cvut.bigdata.tfidf;
+
+import java.util.Arrays;
+
+/**
+ * Positions of the documents in the primitive arrays of their values,
+ * e.g. the statistics or the norms of the documents.
+ * <p/>
+ * The documents are added in any order, the values are appended to the
+ * arrays at the positions returned by {@link #add(int)}. Once all the
+ * documents are added, {@link #index()} returns the new positions, where
+ * the values are moved. The documents numbered by the line numbers are
+ * dense, so their numbers are the positions. The sparse documents, e.g.
+ * numbered by the source ids, are positioned by a binary search of their
+ * sorted numbers instead, so the arrays are sized by the number of the
+ * documents, not by their greatest number.
+ */
+public class DocPositions {
+
+	// the documents are dense, when their greatest number is below twice their count (or small)
+	private static final int DENSE_RATIO = 2;
+	private static final int DENSE_MIN_SIZE = 1024;
+
+	// the documents in the order of addition, or sorted (null when dense)
+	private int[] docs = new int[1024];
+	private int size = 0;
+	private boolean indexed = false;
+
+	/** Adds the document, returns the position of its values until indexed. */
+	public int add(int doc) {
+		if (indexed) {
+			throw new IllegalStateException("the documents are already indexed");
+		}
+		if (size == docs.length) {
+			docs = Arrays.copyOf(docs, 2 * size);
+		}
+		docs[size] = doc;
+		return size++;
+	}
+
+	/** Returns true, if the documents are indexed. */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/** Returns true, if the indexed documents are positioned by their numbers. */
+	public boolean isDense() {
+		return indexed && docs == null;
+	}
+
+	/**
+	 * Sorts the documents by their numbers, or spreads them to the positions
+	 * of their numbers when they are dense. Returns the new positions of the
+	 * values of the added documents, in the order of addition.
+	 */
+	public int[] index() {
+		if (indexed) {
+			throw new IllegalStateException("the documents are already indexed");
+		}
+		indexed = true;
+
+		// sort the positions of the documents by their numbers
+		final long[] order = new long[size];
+		int maxDoc = 0;
+		for (int i = 0; i < size; i++) {
+			order[i] = ((long) docs[i] << 32) | i;
+			maxDoc = Math.max(maxDoc, docs[i]);
+		}
+		Arrays.sort(order);
+
+		final int[] positions = new int[size];
+		if (maxDoc < (long) DENSE_RATIO * size + DENSE_MIN_SIZE) {
+			for (int i = 0; i < size; i++) {
+				positions[i] = docs[i];
+			}
+			docs = null;
+			size = maxDoc + 1;
+		} else {
+			final int[] sortedDocs = new int[size];
+			for (int i = 0; i < size; i++) {
+				final int position = (int) order[i];
+				sortedDocs[i] = docs[position];
+				positions[position] = i;
+			}
+			docs = sortedDocs;
+		}
+		return positions;
+	}
+
+	/** Returns the number of the positions of the documents. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the position of the indexed document, or -1 for an unknown document. */
+	public int getIndex(int doc) {
+		if (!indexed) {
+			throw new IllegalStateException("the documents are not indexed");
+		}
+		if (docs == null) {
+			return (doc >= 0 && doc < size) ? doc : -1;
+		}
+		final int index = Arrays.binarySearch(docs, 0, size, doc);
+		return (index >= 0) ? index : -1;
+	}
+
+	/** Returns the document at given position. */
+	public int getDoc(int index) {
+		return (docs == null) ? index : docs[index];
+	}
+}
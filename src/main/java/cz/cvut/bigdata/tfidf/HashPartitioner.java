@@ -6,11 +6,12 @@ import org.apache.hadoop.mapreduce.Partitioner;
 /**
  * Simple partitioner based on the <i>hashCode()</i> method.
  */
-public class HashPartitioner<K extends WritableComparable<? super K>> extends Partitioner<K, Object> {
+public class HashPartitioner<K extends WritableComparable<?>> extends Partitioner<K, Object> {
 
 	@Override
 	public int getPartition(K key, Object value, int numPartitions) {
-		return Math.abs(key.hashCode()) % numPartitions;
+		// clear the sign bit, Math.abs(Integer.MIN_VALUE) is negative
+		return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
 	}
 
 }
@@ -1,33 +1,84 @@
 package cz.cvut.bigdata.tfidf;
 
 import cz.cvut.bigdata.cli.ArgumentParser;
+import cz.cvut.bigdata.tfidf.dictionary.TermDictionary;
+import cz.cvut.bigdata.tfidf.dictionary.TermDictionaryMapper;
+import cz.cvut.bigdata.tfidf.dictionary.TermDictionaryReducer;
+import cz.cvut.bigdata.tfidf.docs.DocFreqHistogram;
+import cz.cvut.bigdata.tfidf.docs.DocFreqHistogramReducer;
 import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyMapper;
 import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyPartitioner;
 import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencySampler;
+import cz.cvut.bigdata.tfidf.lines.LineCountMapper;
 import cz.cvut.bigdata.tfidf.lines.LineNumberMapper;
 import cz.cvut.bigdata.tfidf.lines.LineNumberPartitioner;
 import cz.cvut.bigdata.tfidf.lines.LineNumberReducer;
+import cz.cvut.bigdata.tfidf.lines.LineOffsets;
+import cz.cvut.bigdata.tfidf.lines.SourceIdMapper;
+import cz.cvut.bigdata.tfidf.lines.SourceIdReducer;
+import cz.cvut.bigdata.tfidf.lines.SplitLineNumberMapper;
+import cz.cvut.bigdata.tfidf.lines.SplitWritable;
+import cz.cvut.bigdata.tfidf.postings.PostingsOutputFormat;
+import cz.cvut.bigdata.tfidf.postings.PostingsWritable;
+import cz.cvut.bigdata.tfidf.scoring.DocStats;
+import cz.cvut.bigdata.tfidf.scoring.DocStatsWritable;
+import cz.cvut.bigdata.tfidf.scoring.Scorer;
+import cz.cvut.bigdata.tfidf.similarity.CandidateCombiner;
+import cz.cvut.bigdata.tfidf.similarity.CandidateMapper;
+import cz.cvut.bigdata.tfidf.similarity.CandidateReducer;
+import cz.cvut.bigdata.tfidf.similarity.SimilarityReducer;
+import cz.cvut.bigdata.tfidf.similarity.SimilarityWritable;
+import cz.cvut.bigdata.tfidf.similarity.TopSimilarReducer;
+import cz.cvut.bigdata.tfidf.similarity.VectorMapper;
+import cz.cvut.bigdata.tfidf.sketch.DocFreqSketch;
+import cz.cvut.bigdata.tfidf.sketch.DocFreqSketchMapper;
+import cz.cvut.bigdata.tfidf.sketch.DocFreqSketchReducer;
+import cz.cvut.bigdata.tfidf.terms.SplitTermFrequencyMapper;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyCombiner;
 import cz.cvut.bigdata.tfidf.terms.TermFrequencyMapper;
 import cz.cvut.bigdata.tfidf.terms.TermFrequencyReducer;
+import cz.cvut.bigdata.tfidf.update.CorpusState;
+import cz.cvut.bigdata.tfidf.update.DeltaTermFrequencyMapper;
+import cz.cvut.bigdata.tfidf.update.TermStateMapper;
+import cz.cvut.bigdata.tfidf.vectors.DocNormWritable;
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import cz.cvut.bigdata.tfidf.vectors.DocVectorMapper;
+import cz.cvut.bigdata.tfidf.vectors.DocVectorReducer;
+import cz.cvut.bigdata.tfidf.vectors.TermScoreWritable;
+import cz.cvut.bigdata.tfidf.wiki.WikiPageInputFormat;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
 import org.apache.hadoop.mapreduce.lib.jobcontrol.JobControl;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.reduce.IntSumReducer;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main entry-point of the TF-IDF application used for executing
@@ -40,17 +91,126 @@ import java.io.IOException;
  *     <li><i>TermFrequency</i> job - computation of term-document frequencies</li>
  *     <li><i>InverseDocFrequency</i> job - computation of inverse-document frequencies</li>
  * </ul>
+ * In the map-only numbering mode, the <i>LineNumber</i> job is replaced by
+ * the <i>LineCount</i> job counting lines of each input split, followed by
+ * a map-only numbering of the lines, thus the documents are not shuffled.
+ * <p/>
+ * In the fused mode, the <i>TermFrequency</i> job reads the input directly
+ * and numbers the documents the same way as the map-only numbering, thus
+ * the <i>lines</i> output is not materialized. Only the light-weight
+ * <i>LineCount</i> job precedes the <i>TermFrequency</i> job.
+ * <p/>
+ * The documents of each <i>TermFrequency</i> map task can be tokenized by
+ * several threads of the <i>MultithreadedMapper</i>, except for the fused
+ * and update modes, which number the documents by their order in the split.
+ * <p/>
+ * The input can be read directly from the Wikipedia XML dumps, even the
+ * bzip2-compressed ones, see the <i>WikiPageInputFormat</i>. Each article
+ * makes one document of its title and text, numbered by its article id
+ * instead of the byte offset.
+ * <p/>
+ * In the stable ids mode, the documents are numbered by their source ids,
+ * see the <i>SourceIdMapper</i>, instead of the line numbers, which depend
+ * on the partitioning. The ids are thus preserved by the reruns and by the
+ * changes of the number of reducers, and the titles are written next to
+ * the <i>lines</i> output.
+ * <p/>
+ * The postings are scored by the configured <i>Scorer</i>, the scorers
+ * weighting by the lengths of the documents (e.g. BM25) make the
+ * <i>TermFrequency</i> job write the statistics of the documents.
+ * <p/>
+ * The number of reducers can be set for each job, or sized automatically
+ * from the input size and the estimated shuffle volume of the job.
+ * <p/>
+ * In the dictionary mode, the <i>TermDictionary</i> job (running along
+ * with the numbering) assigns integer ids to the sorted terms, the
+ * <i>TermFrequency</i> and <i>InverseDocFrequency</i> jobs then shuffle
+ * the term ids instead of the terms, which are restored only in the final
+ * output. The dictionary mode implies the binary mode.
+ * <p/>
+ * In the sketch mode, the <i>DocFreqSketch</i> job (running along with the
+ * numbering) estimates the document frequencies of the terms, so that the
+ * <i>TermFrequency</i> mappers drop the terms certainly pruned for their
+ * low document frequency before the shuffle.
+ * <p/>
+ * The postings are pruned by the minimal term frequency, and the terms by
+ * the minimal and the maximal document frequency. The postings below the
+ * minimal term frequency are dropped by the in-mapper combining already,
+ * the rare terms by the dictionary or the sketch. When the vocabulary is
+ * limited, the <i>TermFrequency</i> reducers count the partial document
+ * frequencies of the terms, which are summed up into a histogram by the
+ * <i>DocFreqHistogram</i> job, and the <i>InverseDocFrequency</i> job keeps
+ * the terms of the highest document frequencies only.
+ * <p/>
+ * In the postings mode, the final <i>tf-idf</i> output is stored as binary
+ * posting lists with an index of the terms, see the <i>PostingsReader</i>.
+ * <p/>
+ * In the balanced mode, the input of the <i>InverseDocFrequency</i> job is
+ * sampled before its submission and the terms are partitioned into ranges
+ * of similar posting volume, instead of hashing them.
+ * <p/>
+ * In the similarity mode, the <i>DocVector</i> job transposes the final
+ * output into the L2-normalized document vectors, and the top-k similar
+ * documents of each document are computed by the <i>SimilarityCandidates</i>,
+ * <i>Similarity</i> and <i>TopSimilar</i> jobs. The candidate pairs are
+ * generated from the posting lists of the <i>tf-idf</i> output with the
+ * prefix filtering, see the <i>DocNorms</i>, and the pairs below the
+ * similarity threshold are pruned before their verification.
+ * <p/>
+ * In the binary mode, the intermediate <i>lines</i> and <i>terms</i> outputs
+ * are stored as block-compressed SequenceFiles, only the final <i>tf-idf</i>
+ * output is stored as a text.
+ * <p/>
+ * Each completed job writes a checkpoint into its output, i.e. the
+ * fingerprint of its configuration and inputs, see the <i>Checkpoints</i>.
+ * The jobs whose checkpoints match are skipped by the next run, unless
+ * all the jobs are recomputed, thus a rerun after a failure continues
+ * from the last completed job.
+ * <p/>
+ * In the update mode, the input contains only the changes of the corpus
+ * (see the <i>DeltaTermFrequencyMapper</i>) and the <i>terms</i> output
+ * of the previous run is updated instead of recomputed, i.e. only the
+ * changed documents are tokenized and shuffled. The <i>TermState</i> job
+ * merges the previous <i>terms</i> with the delta, dropping the removed
+ * documents, and the <i>InverseDocFrequency</i> job recomputes the final
+ * output, since the change of the number of documents affects all the
+ * inverse-document frequencies.
  */
 public class Main extends Configured implements Tool {
 
 	public static final int REDUCER_TASKS = 5;
 
+	// rough estimates of the shuffle volume relative to the input size
+	private static final double LINES_SHUFFLE_RATIO = 1.0;
+	private static final double TERMS_SHUFFLE_RATIO = 1.5;
+	private static final double TERMS_COMBINED_SHUFFLE_RATIO = 0.5;
+	private static final double TFIDF_SHUFFLE_RATIO = 0.25;
+
+	// interval of polling the job control (in ms)
+	private static final long JOB_CONTROL_INTERVAL = 1000L;
+
 	public static void main(String[] arguments) throws Exception {
 		System.exit(ToolRunner.run(new Main(), arguments));
 	}
 
 	private Configuration conf;
 	private FileSystem hdfs;
+	private boolean binary;
+	private boolean balanceIdf;
+	private boolean postings;
+	private boolean similarity;
+	private Path dictionary;
+	private Path sketch;
+	private Path histogram;
+	private Checkpoints checkpoints;
+	private int mapThreads;
+	private Class<? extends FileInputFormat<LongWritable, Text>> inputFormat;
+	private boolean stableIds;
+	private boolean docStats;
+
+	private int lineReducers;
+	private int termReducers;
+	private int idfReducers;
 
 	@Override
 	public int run(String[] arguments) throws Exception {
@@ -58,6 +218,33 @@ public class Main extends Configured implements Tool {
 
 		parser.addArgument("input", true, true, "specify input directory");
 		parser.addArgument("output", true, true, "specify output directory");
+		parser.addArgument("in-mapper", "enable in-mapper combining of term occurrences");
+		parser.addArgument("in-mapper-buffer", true, "16", false, "in-mapper combining buffer size (in MB) of a map task, divided among its map threads");
+		parser.addArgument("binary", "store intermediate outputs as compressed SequenceFiles");
+		parser.addArgument("map-only-numbering", "number the documents without the shuffle");
+		parser.addArgument("fused", "number and tokenize the documents in one job (implies map-only numbering)");
+		parser.addArgument("dictionary", "shuffle integer term ids of the term dictionary (implies binary)");
+		parser.addArgument("df-sketch", "prune the rare terms before the TermFrequency shuffle by a document frequency sketch");
+		parser.addArgument("min-tf", true, String.valueOf(TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY), false, "minimal term frequency of the term-document pairs");
+		parser.addArgument("min-df", true, String.valueOf(InverseDocFrequencyReducer.DEFAULT_MIN_DOC_FREQUENCY), false, "minimal document frequency of the terms");
+		parser.addArgument("max-df-ratio", true, String.valueOf(InverseDocFrequencyReducer.DEFAULT_MAX_DOC_FREQUENCY_RATIO), false, "maximal document frequency of the terms relative to the number of documents");
+		parser.addArgument("max-vocabulary", true, "0", false, "maximal number of the terms, the ones of the highest document frequencies (0 for no limit)");
+		parser.addArgument("postings", "store the tf-idf output as binary posting lists");
+		parser.addArgument("scorer", true, Scorer.DEFAULT_SCORER, false, "scorer of the postings, 'tfidf' or 'bm25'");
+		parser.addArgument("similarity", "compute the document vectors and the top-k similar documents");
+		parser.addArgument("similarity-threshold", true, String.valueOf(DocNorms.DEFAULT_THRESHOLD), false, "minimal cosine similarity of the similar documents");
+		parser.addArgument("top-k", true, String.valueOf(TopSimilarReducer.DEFAULT_TOP_K), false, "number of the similar documents of each document");
+		parser.addArgument("balance-idf", "partition the InverseDocFrequency input by sampled term ranges");
+		parser.addArgument("recompute", "recompute all the jobs, ignoring the checkpoints of the previous runs");
+		parser.addArgument("update", "update the output of the previous run by the changes of the corpus given as input");
+		parser.addArgument("wiki-xml", "read the input as Wikipedia XML dumps, plain or bzip2-compressed");
+		parser.addArgument("stable-ids", "number the documents by their source ids, i.e. the article ids or the first fields of the lines");
+		parser.addArgument("map-threads", true, "1", false, "number of tokenizing threads per TermFrequency map task");
+		parser.addArgument("line-reducers", true, String.valueOf(REDUCER_TASKS), false, "number of LineNumber reducers or 'auto'");
+		parser.addArgument("term-reducers", true, String.valueOf(REDUCER_TASKS), false, "number of TermFrequency reducers or 'auto'");
+		parser.addArgument("idf-reducers", true, String.valueOf(REDUCER_TASKS), false, "number of InverseDocFrequency reducers or 'auto'");
+		parser.addArgument("reducer-size", true, "1024", false, "estimated shuffle volume per reducer (in MB) for 'auto'");
+		parser.addArgument("max-reducers", true, "1000", false, "maximal number of reducers for 'auto'");
 		parser.parseAndCheck(arguments);
 
 		final Path wikiInput = new Path(parser.getString("input"));
@@ -65,36 +252,310 @@ public class Main extends Configured implements Tool {
 
 		conf = getConf();
 		hdfs = FileSystem.get(conf);
+		binary = parser.getBoolean("binary") || parser.getBoolean("dictionary");
+		balanceIdf = parser.getBoolean("balance-idf");
+		postings = parser.getBoolean("postings");
+		similarity = parser.getBoolean("similarity");
+		// the update mode replaces the previous outputs
+		checkpoints = new Checkpoints(hdfs, !parser.getBoolean("recompute") && !parser.getBoolean("update"));
+
+		// setup the TermFrequency in-mapper combining
+		conf.setBoolean(TermFrequencyMapper.IN_MAPPER_COMBINING, parser.getBoolean("in-mapper"));
+		conf.setLong(TermFrequencyMapper.IN_MAPPER_BUFFER_SIZE, parser.getLong("in-mapper-buffer") * 1024L * 1024L);
+
+		// setup the pruning of the postings and of the terms
+		final int minTermFrequency = parser.getInt("min-tf");
+		final int minDocFrequency = parser.getInt("min-df");
+		final float maxDocFrequencyRatio = Float.parseFloat(parser.getString("max-df-ratio"));
+		final int maxVocabulary = parser.getInt("max-vocabulary");
+		if (minTermFrequency < 1 || minDocFrequency < 1) {
+			throw new IllegalArgumentException("minimal term and document frequencies have to be positive");
+		}
+		if (maxDocFrequencyRatio <= 0.0f || maxDocFrequencyRatio > 1.0f) {
+			throw new IllegalArgumentException("invalid maximal document frequency ratio " + maxDocFrequencyRatio);
+		}
+		if (maxVocabulary < 0) {
+			throw new IllegalArgumentException("maximal vocabulary cannot be negative");
+		}
+		conf.setInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, minTermFrequency);
+		conf.setInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY, minDocFrequency);
+		conf.setFloat(InverseDocFrequencyReducer.MAX_DOC_FREQUENCY_RATIO, maxDocFrequencyRatio);
+		conf.setInt(InverseDocFrequencyReducer.MAX_VOCABULARY, maxVocabulary);
+
+		// setup the scorer, the length-dependent scorers need the statistics of the documents
+		conf.set(Scorer.SCORER, parser.getString("scorer"));
+		docStats = Scorer.create(conf).needsDocStats();
+		if (docStats && parser.getBoolean("update")) {
+			throw new IllegalArgumentException("update mode does not support the document statistics of the scorer");
+		}
+
+		// setup the similarity jobs
+		if (similarity && postings) {
+			throw new IllegalArgumentException("similarity requires the textual tf-idf output");
+		}
+		conf.setFloat(DocNorms.THRESHOLD, Float.parseFloat(parser.getString("similarity-threshold")));
+		conf.setInt(TopSimilarReducer.TOP_K, parser.getInt("top-k"));
+
+		// setup the input format of the documents
+		inputFormat = parser.getBoolean("wiki-xml") ? WikiPageInputFormat.class : TextInputFormat.class;
+		if (parser.getBoolean("wiki-xml") && parser.getBoolean("update")) {
+			throw new IllegalArgumentException("update mode does not support Wikipedia XML input");
+		}
+		stableIds = parser.getBoolean("stable-ids");
+		if (stableIds && (parser.getBoolean("fused") || parser.getBoolean("update"))) {
+			throw new IllegalArgumentException("fused and update modes do not support stable ids");
+		}
+		conf.setBoolean(SourceIdMapper.ID_FIELD, !parser.getBoolean("wiki-xml"));
+
+		// setup the TermFrequency mapper threads
+		mapThreads = parser.getInt("map-threads");
+		if (mapThreads < 1) {
+			throw new IllegalArgumentException("number of map threads has to be positive");
+		}
+		if (mapThreads > 1 && (parser.getBoolean("fused") || parser.getBoolean("update"))) {
+			throw new IllegalArgumentException("fused and update modes do not support multiple map threads");
+		}
+		if (mapThreads > 1 && docStats) {
+			throw new IllegalArgumentException("the document statistics of the scorer do not support multiple map threads");
+		}
+
+		// setup the number of reducers
+		final long inputSize = getInputSize(wikiInput);
+		final long reducerSize = parser.getLong("reducer-size") * 1024L * 1024L;
+		final int maxReducers = parser.getInt("max-reducers");
+		if (reducerSize <= 0L) {
+			throw new IllegalArgumentException("reducer size has to be positive");
+		}
+		final double termsRatio = conf.getBoolean(TermFrequencyMapper.IN_MAPPER_COMBINING, false)
+				? TERMS_COMBINED_SHUFFLE_RATIO : TERMS_SHUFFLE_RATIO;
+		lineReducers = getReducerTasks(parser.getString("line-reducers"), inputSize * LINES_SHUFFLE_RATIO, reducerSize, maxReducers);
+		termReducers = getReducerTasks(parser.getString("term-reducers"), inputSize * termsRatio, reducerSize, maxReducers);
 
 		// input/output dirs
+		final Path counts = new Path(outputDir, "counts");
 		final Path lines = new Path(outputDir, "lines");
 		final Path terms = new Path(outputDir, "terms");
 		final Path tfidf = new Path(outputDir, "tf-idf");
+		final Path partitions = new Path(outputDir, "tf-idf.partitions");
+		dictionary = parser.getBoolean("dictionary") ? new Path(outputDir, "dictionary") : null;
+		sketch = parser.getBoolean("df-sketch") ? new Path(outputDir, "sketch") : null;
+		histogram = (maxVocabulary > 0) ? new Path(outputDir, "terms.histogram") : null;
 
-		// create the TF-IDF jobs
-		final ControlledJob lineNumberJob = prepareLineNumberJob(wikiInput, lines);
-		final ControlledJob termFrequencyJob = prepareTermFrequencyJob(lines, terms);
-		final ControlledJob inverseDocFrequencyJob = prepareInverseDocFrequencyJob(terms, tfidf);
+		if (parser.getBoolean("update")) {
+			if (dictionary != null || sketch != null || parser.getBoolean("fused") || parser.getBoolean("map-only-numbering")) {
+				throw new IllegalArgumentException("update mode does not support dictionary, sketch, fused or map-only numbering");
+			}
+			if (histogram != null) {
+				throw new IllegalArgumentException("update mode does not support the vocabulary limit");
+			}
+			// the whole terms output is shuffled by the InverseDocFrequency job
+			idfReducers = getReducerTasks(parser.getString("idf-reducers"), getInputSize(terms), reducerSize, maxReducers);
+			return update(wikiInput, counts, terms, new Path(outputDir, "terms.delta"), new Path(outputDir, "terms.next"), tfidf, partitions,
+					new Path(outputDir, MetricsReport.REPORT_FILE));
+		}
+		idfReducers = getReducerTasks(parser.getString("idf-reducers"), inputSize * TFIDF_SHUFFLE_RATIO, reducerSize, maxReducers);
 
-		// chain the jobs together
+		// create the TF-IDF jobs, the side inputs of a job are prepared before it to chain their checkpoints
 		final JobControl control = new JobControl("TF-IDF");
-		control.addJob(lineNumberJob);
-		termFrequencyJob.addDependingJob(lineNumberJob);
+		final ControlledJob termDictionaryJob = (dictionary != null) ? prepareTermDictionaryJob(wikiInput, dictionary) : null;
+		final ControlledJob docFreqSketchJob = (sketch != null) ? prepareDocFreqSketchJob(wikiInput, sketch) : null;
+		final ControlledJob termFrequencyJob;
+		if (parser.getBoolean("fused")) {
+			final ControlledJob lineCountJob = prepareLineCountJob(wikiInput, counts);
+			termFrequencyJob = prepareTermFrequencyJob(wikiInput, terms, counts, SplitTermFrequencyMapper.class);
+			termFrequencyJob.addDependingJob(lineCountJob);
+			control.addJob(lineCountJob);
+		} else {
+			final ControlledJob lineNumberJob;
+			if (stableIds) {
+				lineNumberJob = prepareSourceIdJob(wikiInput, lines);
+			} else if (parser.getBoolean("map-only-numbering")) {
+				final ControlledJob lineCountJob = prepareLineCountJob(wikiInput, counts);
+				lineNumberJob = prepareSplitLineNumberJob(wikiInput, lines, counts);
+				lineNumberJob.addDependingJob(lineCountJob);
+				control.addJob(lineCountJob);
+			} else {
+				lineNumberJob = prepareLineNumberJob(wikiInput, lines);
+			}
+			termFrequencyJob = prepareTermFrequencyJob(lines, terms, null, TermFrequencyMapper.class);
+			termFrequencyJob.addDependingJob(lineNumberJob);
+			control.addJob(lineNumberJob);
+		}
+		if (termDictionaryJob != null) {
+			termFrequencyJob.addDependingJob(termDictionaryJob);
+			control.addJob(termDictionaryJob);
+		}
+		if (docFreqSketchJob != null) {
+			termFrequencyJob.addDependingJob(docFreqSketchJob);
+			control.addJob(docFreqSketchJob);
+		}
+		final ControlledJob docFreqHistogramJob = (histogram != null) ? prepareDocFreqHistogramJob(terms, histogram) : null;
+		final ControlledJob inverseDocFrequencyJob = prepareInverseDocFrequencyJob(terms, tfidf, partitions);
+
+		// chain the jobs together
 		control.addJob(termFrequencyJob);
-		inverseDocFrequencyJob.addDependingJob(lineNumberJob);
+		if (docFreqHistogramJob != null) {
+			docFreqHistogramJob.addDependingJob(termFrequencyJob);
+			control.addJob(docFreqHistogramJob);
+			inverseDocFrequencyJob.addDependingJob(docFreqHistogramJob);
+		}
 		inverseDocFrequencyJob.addDependingJob(termFrequencyJob);
 		control.addJob(inverseDocFrequencyJob);
+		if (similarity) {
+			addSimilarityJobs(control, inverseDocFrequencyJob, tfidf);
+		}
 
 		// execute the jobs
-		control.run();
-		return control.allFinished() ? 0 : 1;
+		return runJobs(control, new Path(outputDir, MetricsReport.REPORT_FILE)) ? 0 : 1;
+	}
+
+	/**
+	 * Updates the previous terms output by the changes of the corpus and
+	 * recomputes the final output, the previous terms are replaced by the
+	 * merged ones once all the jobs succeed.
+	 */
+	private int update(Path changes, Path counts, Path terms, Path delta, Path merged, Path tfidf, Path partitions,
+			Path report) throws Exception {
+		final CorpusState state = CorpusState.read(conf, terms);
+		if (state.isBinary() != binary) {
+			throw new IllegalArgumentException("the previous terms output is " + (state.isBinary() ? "binary" : "textual"));
+		}
+
+		// create the update jobs
+		final JobControl control = new JobControl("TF-IDF update");
+		final ControlledJob lineCountJob = prepareLineCountJob(changes, counts);
+		final ControlledJob deltaJob = prepareTermFrequencyJob(changes, delta, counts, DeltaTermFrequencyMapper.class);
+		deltaJob.getJob().setJobName("DeltaTermFrequency");
+		state.set(deltaJob.getJob().getConfiguration());
+		MultipleOutputs.addNamedOutput(deltaJob.getJob(), DeltaTermFrequencyMapper.REMOVED_OUTPUT,
+				SequenceFileOutputFormat.class, IntWritable.class, NullWritable.class);
+		MultipleOutputs.addNamedOutput(deltaJob.getJob(), DeltaTermFrequencyMapper.ADDED_OUTPUT,
+				SequenceFileOutputFormat.class, IntWritable.class, NullWritable.class);
+		final ControlledJob termStateJob = prepareTermStateJob(terms, delta, merged, counts, state);
+		final ControlledJob inverseDocFrequencyJob = prepareInverseDocFrequencyJob(merged, tfidf, partitions);
+
+		// chain the jobs together
+		control.addJob(lineCountJob);
+		deltaJob.addDependingJob(lineCountJob);
+		control.addJob(deltaJob);
+		termStateJob.addDependingJob(deltaJob);
+		control.addJob(termStateJob);
+		inverseDocFrequencyJob.addDependingJob(termStateJob);
+		control.addJob(inverseDocFrequencyJob);
+		if (similarity) {
+			addSimilarityJobs(control, inverseDocFrequencyJob, tfidf);
+		}
+
+		// execute the jobs
+		if (!runJobs(control, report)) {
+			return 1;
+		}
+
+		// replace the previous terms, along with the existing documents
+		updateState(termStateJob.getJob().getConfiguration(), state, delta).writeDocuments(conf, merged);
+		hdfs.delete(terms, true);
+		if (!hdfs.rename(merged, terms)) {
+			throw new IOException("failed to rename " + merged + " to " + terms);
+		}
+		hdfs.delete(delta, true);
+		return 0;
+	}
+
+	/**
+	 * Adds the similarity jobs, following the job producing the tf-idf output.
+	 * Their outputs are stored next to the tf-idf output.
+	 */
+	private void addSimilarityJobs(JobControl control, ControlledJob inverseDocFrequencyJob, Path tfidf) throws IOException {
+		final Path outputDir = tfidf.getParent();
+		final Path vectors = new Path(outputDir, "vectors");
+		final Path candidates = new Path(outputDir, "similarity.candidates");
+		final Path pairs = new Path(outputDir, "similarity.pairs");
+
+		final ControlledJob docVectorJob = prepareDocVectorJob(tfidf, vectors);
+		final ControlledJob candidateJob = prepareSimilarityCandidatesJob(tfidf, vectors, candidates);
+		final ControlledJob similarityJob = prepareSimilarityJob(candidates, vectors, pairs);
+		final ControlledJob topSimilarJob = prepareTopSimilarJob(pairs, new Path(outputDir, "similarity"));
+
+		docVectorJob.addDependingJob(inverseDocFrequencyJob);
+		control.addJob(docVectorJob);
+		candidateJob.addDependingJob(docVectorJob);
+		control.addJob(candidateJob);
+		similarityJob.addDependingJob(candidateJob);
+		control.addJob(similarityJob);
+		topSimilarJob.addDependingJob(similarityJob);
+		control.addJob(topSimilarJob);
+	}
+
+	/**
+	 * Runs the jobs and waits for them, returns true when all of them succeeded.
+	 * The checkpoints are written as soon as the jobs succeed, thus a rerun
+	 * after a failure continues from the last succeeded jobs. Finally, the
+	 * metrics of the jobs are reported.
+	 */
+	private boolean runJobs(JobControl control, Path report) throws InterruptedException, IOException {
+		final MetricsReport metrics = new MetricsReport();
+
+		// the job control runs until stopped
+		final Thread thread = new Thread(control, "JobControl");
+		thread.setDaemon(true);
+		thread.start();
+		try {
+			while (!control.allFinished()) {
+				checkpoints.write(control.getSuccessfulJobList());
+				metrics.track(control);
+				Thread.sleep(JOB_CONTROL_INTERVAL);
+			}
+		} finally {
+			control.stop();
+		}
+		checkpoints.write(control.getSuccessfulJobList());
+		metrics.track(control);
+
+		// report the metrics
+		metrics.addJobs(control.getSuccessfulJobList());
+		metrics.addJobs(control.getFailedJobList());
+		metrics.write(hdfs, report);
+		for (String line : metrics.getSummary()) {
+			System.out.println(line);
+		}
+		System.out.println("metrics written to " + report);
+		for (ControlledJob job : control.getFailedJobList()) {
+			if (job.getJobState() == ControlledJob.State.FAILED && job.getMessage() != null) {
+				System.err.println(job.getJobName() + " failed: " + job.getMessage());
+			}
+		}
+
+		return control.getFailedJobList().isEmpty();
+	}
+
+	/**
+	 * Returns true when the job was completed by a previous run with the same
+	 * configuration and inputs (including the side inputs), otherwise it
+	 * deletes the job output.
+	 */
+	private boolean isCompleted(Job job, Path output, Path... sideInputs) throws IOException {
+		final List<Path> inputs = new ArrayList<Path>();
+		for (Path sideInput : sideInputs) {
+			if (sideInput != null) {
+				inputs.add(sideInput);
+			}
+		}
+		if (checkpoints.isCompleted(job, output, inputs.toArray(new Path[inputs.size()]))) {
+			return true;
+		}
+
+		// delete output directory (if it exists)
+		if (hdfs.exists(output)) {
+			hdfs.delete(output, true);
+		}
+		return false;
 	}
 
 	/** Create and setup the LineNumber job. */
 	private ControlledJob prepareLineNumberJob(Path input, Path output) throws IOException {
 		final Job job = new Job(conf, "LineNumber");
 
-		job.setNumReduceTasks(REDUCER_TASKS);
+		job.setNumReduceTasks(lineReducers);
 
 		// set MarReduce classes
 		job.setJarByClass(LineNumberMapper.class);
@@ -110,55 +571,474 @@ public class Main extends Configured implements Tool {
 
 		// setup input and output
 		FileInputFormat.addInputPath(job, input);
-		job.setInputFormatClass(TextInputFormat.class);
+		job.setInputFormatClass(inputFormat);
+		setupIntermediateOutput(job, output);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/** Create and setup the LineCount job. */
+	private ControlledJob prepareLineCountJob(Path input, Path output) throws IOException {
+		final Job job = new Job(conf, "LineCount");
+
+		job.setNumReduceTasks(0);
+
+		// set MarReduce classes
+		job.setJarByClass(LineCountMapper.class);
+		job.setMapperClass(LineCountMapper.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(SplitWritable.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(inputFormat);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/** Create and setup the map-only LineNumber job. */
+	private ControlledJob prepareSplitLineNumberJob(Path input, Path output, Path counts) throws IOException {
+		final Job job = new Job(conf, "LineNumber");
+
+		job.setNumReduceTasks(0);
+		job.getConfiguration().set(LineOffsets.COUNTS_PATH, counts.toString());
+
+		// set MarReduce classes
+		job.setJarByClass(SplitLineNumberMapper.class);
+		job.setMapperClass(SplitLineNumberMapper.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(inputFormat);
+		setupIntermediateOutput(job, output);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output, counts)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the LineNumber job numbering the documents by their
+	 * source ids, only the ids are shuffled to count the documents.
+	 */
+	private ControlledJob prepareSourceIdJob(Path input, Path output) throws IOException {
+		final Job job = new Job(conf, "LineNumber");
+
+		// single reducer counts the distinct ids
+		job.setNumReduceTasks(1);
+
+		// set MarReduce classes
+		job.setJarByClass(SourceIdMapper.class);
+		job.setMapperClass(SourceIdMapper.class);
+		job.setReducerClass(SourceIdReducer.class);
+
+		// set the key-value classes
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(NullWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(inputFormat);
+		setupIntermediateOutput(job, output);
+		MultipleOutputs.addNamedOutput(job, SourceIdMapper.DOCUMENTS_OUTPUT, binary ? SequenceFileOutputFormat.class : TextOutputFormat.class,
+				IntWritable.class, Text.class);
+		MultipleOutputs.addNamedOutput(job, SourceIdMapper.TITLES_OUTPUT, TextOutputFormat.class, IntWritable.class, Text.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/** Create and setup the TermDictionary job. */
+	private ControlledJob prepareTermDictionaryJob(Path input, Path output) throws IOException {
+		final Job job = new Job(conf, "TermDictionary");
+
+		// single reducer assigns the term ids
+		job.setNumReduceTasks(1);
+
+		// set MarReduce classes
+		job.setJarByClass(TermDictionaryMapper.class);
+		job.setMapperClass(TermDictionaryMapper.class);
+		job.setCombinerClass(IntSumReducer.class);
+		job.setReducerClass(TermDictionaryReducer.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(IntWritable.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(inputFormat);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/** Create and setup the DocFreqSketch job. */
+	private ControlledJob prepareDocFreqSketchJob(Path input, Path output) throws IOException {
+		final Job job = new Job(conf, "DocFreqSketch");
+
+		// single reducer merges the sketches of the mappers
+		job.setNumReduceTasks(1);
+		job.getConfiguration().setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+
+		// set MarReduce classes
+		job.setJarByClass(DocFreqSketchMapper.class);
+		job.setMapperClass(DocFreqSketchMapper.class);
+		job.setReducerClass(DocFreqSketchReducer.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(DocFreqSketch.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(inputFormat);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the DocFreqHistogram job summing up the partial document
+	 * frequencies written by the TermFrequency reducers along with the terms.
+	 */
+	private ControlledJob prepareDocFreqHistogramJob(Path terms, Path output) throws IOException {
+		final Job job = new Job(conf, "DocFreqHistogram");
+
+		job.setNumReduceTasks(idfReducers);
+
+		// set MarReduce classes
+		job.setJarByClass(DocFreqHistogramReducer.class);
+		job.setMapperClass(Mapper.class);
+		job.setReducerClass(DocFreqHistogramReducer.class);
+
+		// set the key-value classes
+		job.setMapOutputKeyClass((dictionary != null) ? IntWritable.class : Text.class);
+		job.setMapOutputValueClass(IntWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(LongWritable.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, terms);
+		FileInputFormat.setInputPathFilter(job, TermFrequencyReducer.DocFrequenciesFilter.class);
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the DocVector job transposing the textual tf-idf output
+	 * into the normalized document vectors, along with their norms.
+	 */
+	private ControlledJob prepareDocVectorJob(Path tfidf, Path output) throws IOException {
+		final Job job = new Job(conf, "DocVector");
+
+		job.setNumReduceTasks(idfReducers);
+
+		// set MarReduce classes
+		job.setJarByClass(DocVectorMapper.class);
+		job.setMapperClass(DocVectorMapper.class);
+		job.setReducerClass(DocVectorReducer.class);
+
+		// set the key-value classes
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(TermScoreWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, tfidf);
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
 		FileOutputFormat.setOutputPath(job, output);
 		job.setOutputFormatClass(TextOutputFormat.class);
+		MultipleOutputs.addNamedOutput(job, DocNorms.NORMS_OUTPUT, SequenceFileOutputFormat.class,
+				IntWritable.class, DocNormWritable.class);
 
-		// delete output directory (if it exists)
-		if (hdfs.exists(output)) {
-			hdfs.delete(output, true);
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the SimilarityCandidates job generating the candidate
+	 * pairs from the posting lists of the tf-idf output, joined with the
+	 * prefixes of the document vectors.
+	 */
+	private ControlledJob prepareSimilarityCandidatesJob(Path tfidf, Path vectors, Path output) throws IOException {
+		final Job job = new Job(conf, "SimilarityCandidates");
+
+		job.setNumReduceTasks(idfReducers);
+		job.getConfiguration().set(DocNorms.NORMS_PATH, vectors.toString());
+		job.getConfiguration().setBoolean(VectorMapper.PREFIX_ONLY, true);
+
+		// set MarReduce classes
+		job.setJarByClass(CandidateMapper.class);
+		MultipleInputs.addInputPath(job, tfidf, KeyValueTextInputFormat.class, CandidateMapper.class);
+		MultipleInputs.addInputPath(job, new Path(vectors, "part-*"), KeyValueTextInputFormat.class, VectorMapper.class);
+		job.setCombinerClass(CandidateCombiner.class);
+		job.setReducerClass(CandidateReducer.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(SimilarityWritable.class);
+
+		// setup output
+		setupBinaryOutput(job, output);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output, tfidf, vectors)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the Similarity job verifying the candidate pairs,
+	 * joined with the document vectors.
+	 */
+	private ControlledJob prepareSimilarityJob(Path candidates, Path vectors, Path output) throws IOException {
+		final Job job = new Job(conf, "Similarity");
+
+		job.setNumReduceTasks(idfReducers);
+
+		// set MarReduce classes
+		job.setJarByClass(SimilarityReducer.class);
+		MultipleInputs.addInputPath(job, candidates, SequenceFileInputFormat.class, Mapper.class);
+		MultipleInputs.addInputPath(job, new Path(vectors, "part-*"), KeyValueTextInputFormat.class, VectorMapper.class);
+		job.setReducerClass(SimilarityReducer.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(SimilarityWritable.class);
+
+		// setup output
+		setupBinaryOutput(job, output);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output, candidates, vectors)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/** Create and setup the TopSimilar job selecting the top-k similar documents. */
+	private ControlledJob prepareTopSimilarJob(Path pairs, Path output) throws IOException {
+		final Job job = new Job(conf, "TopSimilar");
+
+		job.setNumReduceTasks(idfReducers);
+
+		// set MarReduce classes
+		job.setJarByClass(TopSimilarReducer.class);
+		job.setMapperClass(Mapper.class);
+		job.setReducerClass(TopSimilarReducer.class);
+
+		// set the key-value classes
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(SimilarityWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
+
+		// setup input and output
+		FileInputFormat.addInputPath(job, pairs);
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(TextOutputFormat.class);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output)) {
+			return new CompletedControlledJob(job);
 		}
 
 		return new ControlledJob(job, null);
 	}
 
-	/** Create and setup the TermFrequency job. */
-	private ControlledJob prepareTermFrequencyJob(Path input, Path output) throws IOException {
+	/**
+	 * Create and setup the TermFrequency job. When the counts are given,
+	 * the job reads the input documents directly (the fused mode).
+	 */
+	private ControlledJob prepareTermFrequencyJob(Path input, Path output, Path counts,
+			Class<? extends TermFrequencyMapper> mapperClass) throws IOException {
 		final Job job = new Job(conf, "TermFrequency");
 
-		job.setNumReduceTasks(REDUCER_TASKS);
+		job.setNumReduceTasks(termReducers);
 
 		// set MarReduce classes
 		job.setJarByClass(TermFrequencyMapper.class);
-		job.setMapperClass(TermFrequencyMapper.class);
+		if (mapThreads > 1) {
+			// tokenize the documents of the split by several threads
+			job.setMapperClass(MultithreadedMapper.class);
+			MultithreadedMapper.setMapperClass(job, mapperClass);
+			MultithreadedMapper.setNumberOfThreads(job, mapThreads);
+			// the threads share the in-mapper combining buffer size of the task
+			final Configuration jobConf = job.getConfiguration();
+			final long bufferSize = jobConf.getLong(TermFrequencyMapper.IN_MAPPER_BUFFER_SIZE, TermFrequencyMapper.DEFAULT_BUFFER_SIZE);
+			jobConf.setLong(TermFrequencyMapper.IN_MAPPER_BUFFER_SIZE, Math.max(1L, bufferSize / mapThreads));
+		} else {
+			job.setMapperClass(mapperClass);
+		}
+		if (counts != null) {
+			job.getConfiguration().set(LineOffsets.COUNTS_PATH, counts.toString());
+		}
+		if (!conf.getBoolean(TermFrequencyMapper.IN_MAPPER_COMBINING, false)) {
+			// sum-up the term occurrences on the map side
+			job.setCombinerClass(TermFrequencyCombiner.class);
+		}
 		job.setReducerClass(TermFrequencyReducer.class);
 		job.setPartitionerClass(HashPartitioner.class);
 
 		// set the key-value classes
-		job.setMapOutputKeyClass(TermDocWritable.class);
+		final Class<?> termDocClass = (dictionary != null) ? TermIdDocWritable.class : TermDocWritable.class;
+		job.setMapOutputKeyClass(termDocClass);
 		job.setMapOutputValueClass(IntWritable.class);
-		job.setOutputKeyClass(Text.class);
+		job.setOutputKeyClass(binary ? termDocClass : Text.class);
 		job.setOutputValueClass(IntWritable.class);
+		if (dictionary != null) {
+			TermDictionary.addCacheFile(job, getDictionaryFile());
+		}
+		if (sketch != null) {
+			DocFreqSketch.addCacheFile(job, new Path(sketch, "part-r-00000"));
+		}
+		if (docStats) {
+			job.getConfiguration().set(DocStats.STATS_PATH, output.toString());
+			MultipleOutputs.addNamedOutput(job, DocStats.STATS_OUTPUT, SequenceFileOutputFormat.class, IntWritable.class, DocStatsWritable.class);
+		}
+		if (histogram != null) {
+			MultipleOutputs.addNamedOutput(job, TermFrequencyReducer.DOC_FREQUENCIES_OUTPUT, SequenceFileOutputFormat.class,
+					(dictionary != null) ? IntWritable.class : Text.class, IntWritable.class);
+		}
 
 		// setup input and output
-		FileInputFormat.addInputPath(job, input);
-		job.setInputFormatClass(KeyValueTextInputFormat.class);
-		FileOutputFormat.setOutputPath(job, output);
-		job.setOutputFormatClass(TextOutputFormat.class);
+		if (counts != null) {
+			FileInputFormat.addInputPath(job, input);
+			job.setInputFormatClass(inputFormat);
+		} else {
+			setupIntermediateInput(job, input);
+			if (stableIds) {
+				// skip the titles written along with the documents
+				FileInputFormat.setInputPathFilter(job, SourceIdMapper.LinesFilter.class);
+			}
+		}
+		setupIntermediateOutput(job, output);
+
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output, counts, dictionary, sketch)) {
+			return new CompletedControlledJob(job);
+		}
+
+		return new ControlledJob(job, null);
+	}
+
+	/**
+	 * Create and setup the map-only TermState job merging the previous terms
+	 * with the delta. The updated corpus state is set once the delta job,
+	 * writing the changed documents, is completed.
+	 */
+	private ControlledJob prepareTermStateJob(Path terms, final Path delta, Path output, Path counts,
+			final CorpusState state) throws IOException {
+		final Job job = new Job(conf, "TermState");
+
+		job.setNumReduceTasks(0);
+		job.getConfiguration().set(TermStateMapper.DELTA_PATH, delta.toString());
+		job.getConfiguration().set(LineOffsets.COUNTS_PATH, counts.toString());
+
+		// set MarReduce classes
+		job.setJarByClass(TermStateMapper.class);
+		job.setMapperClass(TermStateMapper.class);
+
+		// set the key-value classes
+		job.setOutputKeyClass(binary ? TermDocWritable.class : Text.class);
+		job.setOutputValueClass(binary ? IntWritable.class : Text.class);
+
+		// setup input and output
+		setupIntermediateInput(job, terms);
+		FileInputFormat.addInputPath(job, new Path(delta, "part-*"));
+		FileInputFormat.setInputPathFilter(job, TermFrequencyReducer.TermsFilter.class);
+		setupIntermediateOutput(job, output);
 
 		// delete output directory (if it exists)
 		if (hdfs.exists(output)) {
 			hdfs.delete(output, true);
 		}
 
-		return new ControlledJob(job, null);
+		return new PreparedControlledJob(job) {
+			@Override
+			protected void prepare(Job job) throws IOException, InterruptedException {
+				updateState(job.getConfiguration(), state, delta).set(job.getConfiguration());
+			}
+		};
 	}
 
-	/** Create and setup the InverseDocFrequency job. */
-	private ControlledJob prepareInverseDocFrequencyJob(Path input, Path output) throws IOException {
+	/**
+	 * Returns the corpus state updated by the documents added and removed
+	 * by the delta TermFrequency job, the changes of the documents which do
+	 * not exist are rejected.
+	 */
+	private static CorpusState updateState(Configuration conf, CorpusState state, Path delta) throws IOException {
+		final int[] added = DeltaTermFrequencyMapper.readDocuments(conf, delta, DeltaTermFrequencyMapper.ADDED_OUTPUT);
+		final int[] removed = DeltaTermFrequencyMapper.readDocuments(conf, delta, DeltaTermFrequencyMapper.REMOVED_OUTPUT);
+		final int lines = LineOffsets.load(conf).getNumberOfLines();
+		return state.update(added, removed, lines);
+	}
+
+	/**
+	 * Create and setup the InverseDocFrequency job. In the balanced mode,
+	 * the partition file is written once the input is available.
+	 */
+	private ControlledJob prepareInverseDocFrequencyJob(Path input, Path output, final Path partitions) throws IOException {
 		final Job job = new Job(conf, "InverseDocFrequency");
 
-		job.setNumReduceTasks(REDUCER_TASKS);
+		job.setNumReduceTasks(idfReducers);
 
 		// set MarReduce classes
 		job.setJarByClass(InverseDocFrequencyMapper.class);
@@ -167,22 +1047,97 @@ public class Main extends Configured implements Tool {
 		job.setPartitionerClass(InverseDocFrequencyPartitioner.class);
 
 		// set the key-value classes
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(TermDocFreqWritable.class);
+		job.setMapOutputKeyClass((dictionary != null) ? IntWritable.class : Text.class);
+		job.setMapOutputValueClass(DocFreqWritable.class);
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(Text.class);
+		job.setOutputValueClass(postings ? PostingsWritable.class : Text.class);
+		if (dictionary != null) {
+			TermDictionary.addCacheFile(job, getDictionaryFile());
+		}
 
-		// setup input and output
-		FileInputFormat.addInputPath(job, input);
-		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		// setup input and output, the named outputs of the TermFrequency job are read by the reducers
+		setupIntermediateInput(job, input);
+		FileInputFormat.setInputPathFilter(job, TermFrequencyReducer.TermsFilter.class);
+		if (docStats) {
+			job.getConfiguration().set(DocStats.STATS_PATH, input.toString());
+		}
+		if (histogram != null) {
+			job.getConfiguration().set(DocFreqHistogram.HISTOGRAM_PATH, histogram.toString());
+		}
 		FileOutputFormat.setOutputPath(job, output);
-		job.setOutputFormatClass(TextOutputFormat.class);
+		job.setOutputFormatClass(postings ? PostingsOutputFormat.class : TextOutputFormat.class);
 
-		// delete output directory (if it exists)
-		if (hdfs.exists(output)) {
-			hdfs.delete(output, true);
+		// skip the job completed by a previous run, otherwise delete its output
+		if (isCompleted(job, output, dictionary, histogram)) {
+			return new CompletedControlledJob(job);
 		}
 
+		if (balanceIdf && idfReducers > 1) {
+			return new PreparedControlledJob(job) {
+				@Override
+				protected void prepare(Job job) throws IOException, InterruptedException {
+					InverseDocFrequencySampler.writePartitionFile(job, partitions);
+				}
+			};
+		}
 		return new ControlledJob(job, null);
 	}
+
+	/** Returns the file written by the single reducer of the TermDictionary job. */
+	private Path getDictionaryFile() {
+		return new Path(dictionary, "part-r-00000");
+	}
+
+	/** Returns the overall size (in bytes) of the input files. */
+	private long getInputSize(Path input) throws IOException {
+		final FileStatus[] statuses = hdfs.globStatus(input);
+		long size = 0L;
+		if (statuses != null) {
+			for (FileStatus status : statuses) {
+				size += hdfs.getContentSummary(status.getPath()).getLength();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of reducers, either given explicitly or for the
+	 * 'auto' value computed from the estimated shuffle volume of the job.
+	 */
+	private static int getReducerTasks(String value, double shuffleSize, long reducerSize, int maxReducers) {
+		final int reducers;
+		if ("auto".equals(value)) {
+			reducers = (int) Math.min(maxReducers, Math.ceil(shuffleSize / reducerSize));
+		} else {
+			reducers = Integer.parseInt(value);
+		}
+		if (reducers < 1) {
+			return 1;
+		}
+		return reducers;
+	}
+
+	/** Setup input of the job reading an intermediate output. */
+	private void setupIntermediateInput(Job job, Path input) throws IOException {
+		FileInputFormat.addInputPath(job, input);
+		job.setInputFormatClass(binary ? SequenceFileInputFormat.class : KeyValueTextInputFormat.class);
+	}
+
+	/** Setup output of the job producing an intermediate output. */
+	private void setupIntermediateOutput(Job job, Path output) {
+		if (binary) {
+			setupBinaryOutput(job, output);
+		} else {
+			FileOutputFormat.setOutputPath(job, output);
+			job.setOutputFormatClass(TextOutputFormat.class);
+		}
+	}
+
+	/** Setup output of the job as a block-compressed SequenceFile. */
+	private void setupBinaryOutput(Job job, Path output) {
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		SequenceFileOutputFormat.setCompressOutput(job, true);
+		SequenceFileOutputFormat.setOutputCompressionType(job, CompressionType.BLOCK);
+	}
 }
@@ -0,0 +1,176 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.JobControl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine-readable (JSON) report of the executed jobs, i.e. their state,
+ * wall time, shuffle volume, record counts and the custom counters of the
+ * TF-IDF classes. The jobs skipped thanks to their checkpoints have no
+ * counters.
+ * <p/>
+ * The wall time is taken from the job status, or from the tracking of the
+ * job control, when the status has no times (e.g. the local job runner).
+ */
+public class MetricsReport {
+
+	/** Name of the report file next to the outputs. */
+	public static final String REPORT_FILE = "metrics.json";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// prefix of the custom counter groups
+	private static final String COUNTERS_PREFIX = "cz.cvut.bigdata.";
+
+	private static final TaskCounter[] TASK_COUNTERS = {
+			TaskCounter.MAP_INPUT_RECORDS, TaskCounter.MAP_OUTPUT_RECORDS, TaskCounter.MAP_OUTPUT_BYTES,
+			TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES, TaskCounter.COMBINE_INPUT_RECORDS, TaskCounter.COMBINE_OUTPUT_RECORDS,
+			TaskCounter.REDUCE_SHUFFLE_BYTES, TaskCounter.REDUCE_INPUT_GROUPS, TaskCounter.REDUCE_INPUT_RECORDS,
+			TaskCounter.REDUCE_OUTPUT_RECORDS, TaskCounter.SPILLED_RECORDS, TaskCounter.GC_TIME_MILLIS
+	};
+
+	private final Map<ControlledJob, long[]> times = new IdentityHashMap<ControlledJob, long[]>();
+	private final List<String> jobs = new ArrayList<String>();
+	private final List<String> summary = new ArrayList<String>();
+
+	/** Tracks the submitted and finished jobs of the job control. */
+	public void track(JobControl control) {
+		final long now = System.currentTimeMillis();
+		for (ControlledJob job : control.getRunningJobList()) {
+			if (!times.containsKey(job)) {
+				times.put(job, new long[] {now, 0L});
+			}
+		}
+		final List<ControlledJob> finished = new ArrayList<ControlledJob>(control.getSuccessfulJobList());
+		finished.addAll(control.getFailedJobList());
+		for (ControlledJob job : finished) {
+			final long[] time = times.get(job);
+			if (time != null && time[1] == 0L) {
+				time[1] = now;
+			}
+		}
+	}
+
+	/** Adds the finished jobs. */
+	public void addJobs(Collection<ControlledJob> controlledJobs) throws IOException {
+		for (ControlledJob controlledJob : controlledJobs) {
+			final Job job = controlledJob.getJob();
+			final boolean skipped = controlledJob instanceof CompletedControlledJob;
+			final String state = skipped ? "SKIPPED" : controlledJob.getJobState().toString();
+			final Counters counters = skipped ? null : getCounters(job);
+			final long wallTime = (counters != null) ? getWallTime(controlledJob) : 0L;
+
+			final StringBuilder json = new StringBuilder();
+			json.append("{\"name\": ").append(quote(job.getJobName()));
+			json.append(", \"state\": ").append(quote(state));
+			json.append(", \"wallTimeMillis\": ").append(wallTime);
+			if (counters != null) {
+				json.append(", \"counters\": {");
+				for (int i = 0; i < TASK_COUNTERS.length; i++) {
+					json.append((i > 0) ? ", " : "").append(quote(TASK_COUNTERS[i].name())).append(": ");
+					json.append(counters.findCounter(TASK_COUNTERS[i]).getValue());
+				}
+				for (CounterGroup group : counters) {
+					if (group.getName().startsWith(COUNTERS_PREFIX)) {
+						appendGroup(group, json);
+					}
+				}
+				json.append('}');
+			}
+			json.append('}');
+
+			jobs.add(json.toString());
+			summary.add(String.format("%-24s %-8s %10.1f s", job.getJobName(), state, wallTime / 1000.0));
+		}
+	}
+
+	/** Returns the lines summarizing the jobs. */
+	public List<String> getSummary() {
+		return summary;
+	}
+
+	/** Writes the report in JSON. */
+	public void write(FileSystem fs, Path file) throws IOException {
+		final StringBuilder json = new StringBuilder("{\"jobs\": [\n");
+		for (int i = 0; i < jobs.size(); i++) {
+			json.append("  ").append(jobs.get(i)).append((i < jobs.size() - 1) ? ",\n" : "\n");
+		}
+		json.append("]}\n");
+
+		final FSDataOutputStream out = fs.create(file, true);
+		try {
+			out.write(json.toString().getBytes(UTF8));
+		} finally {
+			IOUtils.closeStream(out);
+		}
+	}
+
+	private static Counters getCounters(Job job) throws IOException {
+		try {
+			return job.getCounters();
+		} catch (IllegalStateException e) {
+			// the job was not submitted
+			return null;
+		}
+	}
+
+	private long getWallTime(ControlledJob controlledJob) throws IOException {
+		final Job job = controlledJob.getJob();
+		try {
+			if (job.getStartTime() > 0L && job.getFinishTime() > 0L) {
+				return job.getFinishTime() - job.getStartTime();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		final long[] time = times.get(controlledJob);
+		return (time != null && time[1] > 0L) ? time[1] - time[0] : 0L;
+	}
+
+	private static void appendGroup(CounterGroup group, StringBuilder json) {
+		json.append(", ").append(quote(shortName(group.getName()))).append(": {");
+		boolean first = true;
+		for (Counter counter : group) {
+			json.append(first ? "" : ", ").append(quote(counter.getName())).append(": ").append(counter.getValue());
+			first = false;
+		}
+		json.append('}');
+	}
+
+	/** Strips the package name of the counter group. */
+	private static String shortName(String name) {
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	private static String quote(String value) {
+		final StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < ' ') {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,75 @@
+package cz.cvut.bigdata.tfidf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length encoding of non-negative integers, which preserves
+ * the order, i.e. the lexicographical order of the encoded bytes is the
+ * same as the numerical order of the values. The number of leading one
+ * bits of the first byte determines the number of following bytes:
+ * <pre>
+ *     0xxxxxxx                                      [0, 2^7)
+ *     10xxxxxx xxxxxxxx                             [2^7, 2^14)
+ *     110xxxxx xxxxxxxx xxxxxxxx                    [2^14, 2^21)
+ *     1110xxxx xxxxxxxx xxxxxxxx xxxxxxxx           [2^21, 2^28)
+ *     11110000 xxxxxxxx xxxxxxxx xxxxxxxx xxxxxxxx  [2^28, 2^31)
+ * </pre>
+ */
+public final class OrderedVarInt {
+
+	private OrderedVarInt() {
+	}
+
+	/** Writes given non-negative value. */
+	public static void write(DataOutput out, int value) throws IOException {
+		if (value < 0) {
+			throw new IllegalArgumentException("negative value " + value);
+		} else if (value < (1 << 7)) {
+			out.writeByte(value);
+		} else if (value < (1 << 14)) {
+			out.writeByte(0x80 | (value >>> 8));
+			out.writeByte(value);
+		} else if (value < (1 << 21)) {
+			out.writeByte(0xC0 | (value >>> 16));
+			out.writeByte(value >>> 8);
+			out.writeByte(value);
+		} else if (value < (1 << 28)) {
+			out.writeByte(0xE0 | (value >>> 24));
+			out.writeByte(value >>> 16);
+			out.writeByte(value >>> 8);
+			out.writeByte(value);
+		} else {
+			out.writeByte(0xF0);
+			out.writeInt(value);
+		}
+	}
+
+	/** Reads a value written by the {@link #write(DataOutput, int)}. */
+	public static int read(DataInput in) throws IOException {
+		final int first = in.readUnsignedByte();
+		final int size = size(first);
+		int value = first & (0xFF >>> size);
+		for (int i = 1; i < size; i++) {
+			value = (value << 8) | in.readUnsignedByte();
+		}
+		return value;
+	}
+
+	/** Reads a value from the byte array. */
+	public static int read(byte[] bytes, int start) {
+		final int size = size(bytes[start]);
+		int value = bytes[start] & (0xFF >>> size);
+		for (int i = 1; i < size; i++) {
+			value = (value << 8) | (bytes[start + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/** Returns the encoded size (in bytes) determined by the first byte. */
+	public static int size(int firstByte) {
+		final int leadingOnes = Integer.numberOfLeadingZeros(~(firstByte << 24));
+		return (leadingOnes < 4) ? leadingOnes + 1 : 5;
+	}
+}
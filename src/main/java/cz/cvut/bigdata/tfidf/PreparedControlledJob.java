@@ -0,0 +1,35 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+import org.apache.hadoop.util.StringUtils;
+
+import java.io.IOException;
+
+/**
+ * Extension of the <i>ControlledJob</i> that prepares the job right
+ * before its submission, i.e. when all the depending jobs are completed
+ * and their outputs are available. When the preparation fails, the job
+ * fails as well.
+ */
+public abstract class PreparedControlledJob extends ControlledJob {
+
+	public PreparedControlledJob(Job job) throws IOException {
+		super(job, null);
+	}
+
+	/** Prepares the job before its submission. */
+	protected abstract void prepare(Job job) throws IOException, InterruptedException;
+
+	@Override
+	protected synchronized void submit() {
+		try {
+			prepare(getJob());
+		} catch (Exception e) {
+			setJobState(State.FAILED);
+			setMessage(StringUtils.stringifyException(e));
+			return;
+		}
+		super.submit();
+	}
+}
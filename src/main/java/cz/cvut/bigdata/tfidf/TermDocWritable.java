@@ -2,21 +2,38 @@ package cz.cvut.bigdata.tfidf;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * Implementation of a custom <i>WritableComparable</i> class.
  * It is used by the TF-IDF MapReduce methods for referencing
- * a pair <b>(term, document)</b>, where document is an integer.
+ * a pair <b>(term, document)</b>, where document is a non-negative
+ * integer.
+ * <p/>
+ * The term is serialized as UTF-8 bytes prefixed by their length
+ * (VInt), followed by the document encoded by the <i>OrderedVarInt</i>.
+ * Thus, the registered raw {@link Comparator} can compare the serialized
+ * bytes directly, without deserialization.
  */
 public class TermDocWritable implements WritableComparable<TermDocWritable> {
 
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static {
+		WritableComparator.define(TermDocWritable.class, new Comparator());
+	}
+
 	private String term = null;
 	private int document = 0;
 
+	private byte[] buffer = new byte[32];
+
 	public void set(String term, int document) {
 		this.term = term;
 		this.document = document;
@@ -48,14 +65,21 @@ public class TermDocWritable implements WritableComparable<TermDocWritable> {
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		out.writeUTF(term);
-		out.writeInt(document);
+		final byte[] bytes = term.getBytes(UTF8);
+		WritableUtils.writeVInt(out, bytes.length);
+		out.write(bytes);
+		OrderedVarInt.write(out, document);
 	}
 
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		term = in.readUTF();
-		document = in.readInt();
+		final int length = WritableUtils.readVInt(in);
+		if (buffer.length < length) {
+			buffer = new byte[Math.max(length, 2 * buffer.length)];
+		}
+		in.readFully(buffer, 0, length);
+		term = new String(buffer, 0, length, UTF8);
+		document = OrderedVarInt.read(in);
 	}
 
 	@Override
@@ -81,6 +105,44 @@ public class TermDocWritable implements WritableComparable<TermDocWritable> {
 
 	@Override
 	public String toString() {
-		return String.format("%s : %d", (term != null) ? term : "", document);
+		return ((term != null) ? term : "") + " : " + document;
+	}
+
+	/**
+	 * Raw comparator of the serialized <i>TermDocWritable</i> values.
+	 * The terms are compared as UTF-8 bytes, which is equal to the order
+	 * of the <i>compareTo</i> method except for the supplementary characters.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(TermDocWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				final int size1 = WritableUtils.decodeVIntSize(b1[s1]);
+				final int size2 = WritableUtils.decodeVIntSize(b2[s2]);
+				final int length1 = readVInt(b1, s1);
+				final int length2 = readVInt(b2, s2);
+				s1 += size1;
+				s2 += size2;
+
+				// the terms mostly differ already in the first byte
+				if (length1 > 0 && length2 > 0 && b1[s1] != b2[s2]) {
+					return (b1[s1] & 0xFF) - (b2[s2] & 0xFF);
+				}
+				final int val = compareBytes(b1, s1, length1, b2, s2, length2);
+				if (val != 0) return val;
+
+				// the encoded documents preserve the order
+				s1 += length1;
+				s2 += length2;
+				return compareBytes(b1, s1, OrderedVarInt.size(b1[s1]), b2, s2, OrderedVarInt.size(b2[s2]));
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
 	}
 }
@@ -0,0 +1,100 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>WritableComparable</i> class.
+ * It is used instead of the <i>TermDocWritable</i> when the terms
+ * are encoded by their ids from the <i>TermDictionary</i>, for
+ * referencing a pair <b>(termId, document)</b>. The term id -1 is
+ * reserved for the special record with the number of documents.
+ * <p/>
+ * Both the term id (shifted by one) and the document are encoded by
+ * the <i>OrderedVarInt</i>, thus the registered raw {@link Comparator}
+ * simply compares the serialized bytes.
+ */
+public class TermIdDocWritable implements WritableComparable<TermIdDocWritable> {
+
+	/** Term id of the record with the number of documents. */
+	public static final int NUMBER_OF_DOCUMENTS = -1;
+
+	static {
+		WritableComparator.define(TermIdDocWritable.class, new Comparator());
+	}
+
+	private int term = 0;
+	private int document = 0;
+
+	public void set(int term, int document) {
+		this.term = term;
+		this.document = document;
+	}
+
+	public int getTerm() {
+		return term;
+	}
+
+	public int getDoc() {
+		return document;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		OrderedVarInt.write(out, term + 1);
+		OrderedVarInt.write(out, document);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		term = OrderedVarInt.read(in) - 1;
+		document = OrderedVarInt.read(in);
+	}
+
+	@Override
+	public int compareTo(TermIdDocWritable o) {
+		if (o == null) return -1;
+		if (term != o.term) return (term < o.term) ? -1 : 1;
+		return (document < o.document) ? -1 : ((document == o.document) ? 0 : 1);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof TermIdDocWritable)) return false;
+
+		final TermIdDocWritable that = (TermIdDocWritable) o;
+		return term == that.term && document == that.document;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * term + document;
+	}
+
+	@Override
+	public String toString() {
+		return term + " : " + document;
+	}
+
+	/**
+	 * Raw comparator of the serialized <i>TermIdDocWritable</i> values.
+	 * The encoding preserves the order and it is prefix-free, thus the
+	 * bytes are compared directly.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(TermIdDocWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareBytes(b1, s1, l1, b2, s2, l2);
+		}
+	}
+}
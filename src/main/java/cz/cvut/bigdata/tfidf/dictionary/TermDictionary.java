@@ -0,0 +1,128 @@
+package cz.cvut.bigdata.tfidf.dictionary;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.lucene.analysis.util.CharArrayMap;
+import org.apache.lucene.util.Version;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dictionary of the terms, as written by the <i>TermDictionaryReducer</i>.
+ * The dictionary file contains sorted <b>(term, df)</b> pairs, the i-th
+ * term has the id i, thus the ids preserve the order of the terms.
+ * <p/>
+ * The file is shipped to the tasks through the distributed cache. The
+ * loaded dictionary is thread-safe, so the threads of a multithreaded
+ * mapper share it.
+ */
+public class TermDictionary {
+
+	/** Path of the dictionary file. */
+	public static final String DICTIONARY_PATH = "tfidf.dictionary.path";
+
+	// name of the distributed cache link
+	private static final String LINK_NAME = "tfidf.dictionary";
+
+	// the last loaded dictionary of the JVM and its path
+	private static TermDictionary shared = null;
+	private static String sharedPath = null;
+
+	private final String[] terms;
+	private volatile CharArrayMap<Integer> ids = null;
+
+	private TermDictionary(String[] terms) {
+		this.terms = terms;
+	}
+
+	/** Adds the dictionary file into the distributed cache of given job. */
+	public static void addCacheFile(Job job, Path dictionary) throws IOException {
+		final Path path = dictionary.getFileSystem(job.getConfiguration()).makeQualified(dictionary);
+		job.getConfiguration().set(DICTIONARY_PATH, path.toString());
+		try {
+			job.addCacheFile(new URI(path.toUri() + "#" + LINK_NAME));
+		} catch (URISyntaxException e) {
+			throw new IOException("invalid dictionary path " + path, e);
+		}
+	}
+
+	/** Returns true, if the terms are encoded by the dictionary. */
+	public static boolean isConfigured(Configuration conf) {
+		return conf.get(DICTIONARY_PATH) != null;
+	}
+
+	/** Returns the configured dictionary, shared by the mappers of the JVM. */
+	public static synchronized TermDictionary get(Configuration conf) throws IOException {
+		final String path = conf.get(DICTIONARY_PATH);
+		if (shared == null || !path.equals(sharedPath)) {
+			shared = load(conf);
+			sharedPath = path;
+		}
+		return shared;
+	}
+
+	/** Loads the dictionary, preferably from the local copy of the distributed cache. */
+	public static TermDictionary load(Configuration conf) throws IOException {
+		final File link = new File(LINK_NAME);
+		final Path path = link.exists()
+				? FileSystem.getLocal(conf).makeQualified(new Path(link.getAbsolutePath()))
+				: new Path(conf.get(DICTIONARY_PATH));
+
+		final List<String> terms = new ArrayList<String>();
+		final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+		try {
+			final Text term = new Text();
+			final IntWritable docFrequency = new IntWritable();
+			while (reader.next(term, docFrequency)) {
+				terms.add(term.toString());
+			}
+		} finally {
+			reader.close();
+		}
+		return new TermDictionary(terms.toArray(new String[terms.size()]));
+	}
+
+	/** Returns id of given term, or -1 for an unknown term. */
+	public int getId(char[] term, int length) {
+		final Integer id = getIds().get(term, 0, length);
+		return (id != null) ? id : -1;
+	}
+
+	/** Returns the lookup map of the ids, built on demand. */
+	private CharArrayMap<Integer> getIds() {
+		CharArrayMap<Integer> map = ids;
+		if (map == null) {
+			synchronized (this) {
+				map = ids;
+				if (map == null) {
+					map = new CharArrayMap<Integer>(Version.LUCENE_47, terms.length, false);
+					for (int i = 0; i < terms.length; i++) {
+						map.put(terms[i], i);
+					}
+					ids = map;
+				}
+			}
+		}
+		return map;
+	}
+
+	/** Returns the term of given id. */
+	public String getTerm(int id) {
+		return terms[id];
+	}
+
+	/** Returns the number of terms. */
+	public int size() {
+		return terms.length;
+	}
+}
@@ -0,0 +1,123 @@
+package cz.cvut.bigdata.tfidf.dictionary;
+
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyMapper;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyReducer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArrayMap;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Receives <b>(long, 'text')</b> pairs of a byte offsets and a texts,
+ * skipping the first line the same way as the <i>LineNumberMapper</i>.
+ * The mapper parses the documents into terms, using the same analyzer
+ * as the <i>TermFrequencyMapper</i>, and counts the number of documents
+ * containing each term at least the minimal term frequency times, i.e.
+ * the documents kept by the <i>TermFrequencyReducer</i>. The counts are
+ * emitted as <b>(term, df)</b> pairs at the end, or sooner when the
+ * estimated size of the counts exceeds the in-mapper combining buffer
+ * size.
+ */
+public class TermDictionaryMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+
+	// rough estimate of the hash map entry size (entry, key and value objects)
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private TermAnalyzer analyzer;
+
+	private final Text term = new Text();
+	private final IntWritable docFrequency = new IntWritable();
+
+	// term -> [document frequency, last document, term frequency in the last document]
+	private final CharArrayMap<int[]> docFrequencies = new CharArrayMap<int[]>(Version.LUCENE_47, 1024, false);
+
+	private int document = 0;
+	private int minTermFrequency = TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY;
+	private long bufferSize = TermFrequencyMapper.DEFAULT_BUFFER_SIZE;
+	private long bufferUsed = 0L;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		analyzer = TermAnalyzer.get(context.getConfiguration());
+		bufferSize = context.getConfiguration().getLong(TermFrequencyMapper.IN_MAPPER_BUFFER_SIZE, TermFrequencyMapper.DEFAULT_BUFFER_SIZE);
+		minTermFrequency = context.getConfiguration().getInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY);
+	}
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		if (key.get() == 0L) {
+			// skip the first line
+			return;
+		}
+		document++;
+
+		TokenStream tokenStream = null;
+		try {
+			tokenStream = analyzer.tokenStream("word", value.toString());
+			tokenStream.reset();
+
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				count(termAttribute.buffer(), termAttribute.length());
+			}
+		} finally {
+			if (tokenStream != null) {
+				try {
+					tokenStream.end();
+				} finally {
+					tokenStream.close();
+				}
+			}
+		}
+
+		if (bufferUsed >= bufferSize) {
+			flush(context);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		flush(context);
+	}
+
+	/** Counts the term, once per document when it reaches the minimal term frequency. */
+	private void count(char[] term, int length) {
+		int[] count = docFrequencies.get(term, 0, length);
+		if (count == null) {
+			count = new int[] {0, document, 1};
+			docFrequencies.put(Arrays.copyOf(term, length), count);
+			bufferUsed += ENTRY_OVERHEAD + 2 * length;
+		} else if (count[1] != document) {
+			count[1] = document;
+			count[2] = 1;
+		} else {
+			count[2]++;
+		}
+		if (count[2] == minTermFrequency) {
+			count[0]++;
+		}
+	}
+
+	/** Emits <b>(term, df)</b> pairs for all the counted terms. */
+	private void flush(Context context) throws IOException, InterruptedException {
+		final CharArrayMap<int[]>.EntryIterator entries = docFrequencies.entrySet().iterator();
+		while (entries.hasNext()) {
+			final char[] key = entries.nextKey();
+			if (entries.currentValue()[0] > 0) {
+				term.set(new String(key));
+				docFrequency.set(entries.currentValue()[0]);
+				context.write(term, docFrequency);
+			}
+		}
+		docFrequencies.clear();
+		bufferUsed = 0L;
+	}
+}
@@ -0,0 +1,43 @@
+package cz.cvut.bigdata.tfidf.dictionary;
+
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(term, list[df])</b> of partial document frequencies and
+ * emits the <b>(term, df)</b> pair, if the term occurs in at least the
+ * minimal number of documents of the <i>InverseDocFrequencyReducer</i>.
+ * Terms occurring in less documents are filtered out by the reducer
+ * anyway. The job has a single reducer, thus the terms are emitted in
+ * order and their ids are given by the position in the output, see the
+ * <i>TermDictionary</i>.
+ */
+public class TermDictionaryReducer extends Reducer<Text, IntWritable, Text, IntWritable> {
+
+	private final IntWritable docFrequency = new IntWritable();
+
+	private int minDocFrequency;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		minDocFrequency = context.getConfiguration().getInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY,
+				InverseDocFrequencyReducer.DEFAULT_MIN_DOC_FREQUENCY);
+	}
+
+	@Override
+	protected void reduce(Text key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
+		int sum = 0;
+		for (IntWritable value : values) {
+			sum += value.get();
+		}
+
+		if (sum >= minDocFrequency) {
+			docFrequency.set(sum);
+			context.write(key, docFrequency);
+		}
+	}
+}
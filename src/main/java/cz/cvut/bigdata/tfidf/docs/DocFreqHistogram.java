@@ -0,0 +1,101 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogram of the document frequencies of the terms, i.e. the number of
+ * terms of each document frequency, as written by the
+ * <i>DocFreqHistogramReducer</i>. The histogram gives the minimal document
+ * frequency of the terms kept by the vocabulary limit, without ranking
+ * the terms themselves.
+ */
+public class DocFreqHistogram {
+
+	/** Directory with the histogram output. */
+	public static final String HISTOGRAM_PATH = "tfidf.idf.histogram";
+
+	private static final PathFilter PART_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			return path.getName().startsWith("part-");
+		}
+	};
+
+	private long[] counts = new long[1024];
+
+	/** Returns true, if the histogram of the document frequencies is computed. */
+	public static boolean isConfigured(Configuration conf) {
+		return conf.get(HISTOGRAM_PATH) != null;
+	}
+
+	/** Loads the histogram from the configured directory, summing up the parts. */
+	public static DocFreqHistogram load(Configuration conf) throws IOException {
+		final Path histogramPath = new Path(conf.get(HISTOGRAM_PATH));
+		final FileSystem fs = histogramPath.getFileSystem(conf);
+
+		final DocFreqHistogram histogram = new DocFreqHistogram();
+		final IntWritable docFrequency = new IntWritable();
+		final LongWritable count = new LongWritable();
+		for (FileStatus status : fs.listStatus(histogramPath, PART_FILTER)) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				while (reader.next(docFrequency, count)) {
+					histogram.add(docFrequency.get(), count.get());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return histogram;
+	}
+
+	/** Adds the number of terms of given document frequency. */
+	public void add(int docFrequency, long count) {
+		if (docFrequency >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(docFrequency + 1, 2 * counts.length));
+		}
+		counts[docFrequency] += count;
+	}
+
+	/** Returns the greatest document frequency of the histogram plus one. */
+	public int size() {
+		int size = counts.length;
+		while (size > 0 && counts[size - 1] == 0L) {
+			size--;
+		}
+		return size;
+	}
+
+	/** Returns the number of terms of given document frequency. */
+	public long getCount(int docFrequency) {
+		return (docFrequency < counts.length) ? counts[docFrequency] : 0L;
+	}
+
+	/**
+	 * Returns the minimal document frequency of the terms kept by the
+	 * vocabulary limit, i.e. at most the given number of terms within the
+	 * document frequency bounds, those of the highest document frequencies.
+	 * The terms of the same document frequency are either all kept or all
+	 * pruned, thus fewer terms are kept when they tie at the limit.
+	 */
+	public int getMinDocFrequency(int minDocFrequency, int maxDocFrequency, int maxVocabulary) {
+		long terms = 0L;
+		for (int docFrequency = Math.min(maxDocFrequency, counts.length - 1); docFrequency >= minDocFrequency; docFrequency--) {
+			terms += counts[docFrequency];
+			if (terms > maxVocabulary) {
+				return docFrequency + 1;
+			}
+		}
+		return minDocFrequency;
+	}
+}
@@ -0,0 +1,44 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(term, list[df])</b> of the partial document frequencies
+ * written by the <i>TermFrequencyReducer</i> into the 'dfs' named output,
+ * either terms or term ids. The reducer sums up the document frequency
+ * of each term and counts the terms in the <i>DocFreqHistogram</i>, which
+ * is emitted as <b>(df, number of terms)</b> pairs at the end.
+ */
+public class DocFreqHistogramReducer extends Reducer<Writable, IntWritable, IntWritable, LongWritable> {
+
+	private final IntWritable docFrequency = new IntWritable();
+	private final LongWritable count = new LongWritable();
+
+	private final DocFreqHistogram histogram = new DocFreqHistogram();
+
+	@Override
+	protected void reduce(Writable key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
+		int sum = 0;
+		for (IntWritable value : values) {
+			sum += value.get();
+		}
+		histogram.add(sum, 1L);
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		final int size = histogram.size();
+		for (int i = 0; i < size; i++) {
+			if (histogram.getCount(i) > 0L) {
+				docFrequency.set(i);
+				count.set(histogram.getCount(i));
+				context.write(docFrequency, count);
+			}
+		}
+	}
+}
@@ -1,25 +1,36 @@
 package cz.cvut.bigdata.tfidf.docs;
 
-import cz.cvut.bigdata.tfidf.TermDocFreqWritable;
+import cz.cvut.bigdata.tfidf.DocFreqWritable;
 import cz.cvut.bigdata.tfidf.TermDocWritable;
+import cz.cvut.bigdata.tfidf.TermIdDocWritable;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
 
 /**
  * Receives <b>(termDoc, frequency)</b> that represent the
- * frequency of the term in the document. The mapper just
- * performs transformation to <b>(term, termDocFreq)</b>
+ * frequency of the term in the document, either as binary
+ * <b>(TermDocWritable, IntWritable)</b> pairs or in their
+ * textual form. The mapper just
+ * performs transformation to <b>(term, docFreq)</b>
  * pairs. When the '_' key value is received, indicating
  * the overall number of documents, the mapper will emit
  * special key-value pair for each reducer.
+ * <p/>
+ * When the terms are encoded by the <i>TermDictionary</i>, i.e. the
+ * mapper receives <b>(TermIdDocWritable, IntWritable)</b> pairs, it emits
+ * <b>(termId, docFreq)</b> pairs and the special key-value pairs have
+ * negative keys instead.
  */
-public class InverseDocFrequencyMapper extends Mapper<Text, Text, Text, TermDocFreqWritable> {
+public class InverseDocFrequencyMapper extends Mapper<Writable, Writable, Writable, DocFreqWritable> {
 
 	private final Text term = new Text();
+	private final IntWritable termId = new IntWritable();
 	private final TermDocWritable termDoc = new TermDocWritable();
-	private final TermDocFreqWritable termDocFreq = new TermDocFreqWritable();
+	private final DocFreqWritable docFreq = new DocFreqWritable();
 
 	private int reducersNum;
 
@@ -29,23 +40,53 @@ public class InverseDocFrequencyMapper extends Mapper<Text, Text, Text, TermDocF
 	}
 
 	@Override
-	protected void map(Text key, Text value, Context context) throws IOException, InterruptedException {
-		termDoc.parse(key.toString());
+	protected void map(Writable key, Writable value, Context context) throws IOException, InterruptedException {
+		if (key instanceof TermIdDocWritable) {
+			mapTermId((TermIdDocWritable) key, ((IntWritable) value).get(), context);
+			return;
+		}
+
+		final TermDocWritable termDoc;
+		final int frequency;
+		if (key instanceof TermDocWritable) {
+			termDoc = (TermDocWritable) key;
+			frequency = ((IntWritable) value).get();
+		} else {
+			termDoc = this.termDoc.parse(key.toString());
+			frequency = Integer.parseInt(value.toString());
+		}
+
 		if (termDoc.getTerm().equals("_")) {
 			// key '_' indicates the number of documents
 			for (int i = 0; i < reducersNum; i++) {
 				// send it to each reducer
 				term.set("_" + i);
-				termDocFreq.set("_", i, Integer.parseInt(value.toString()));
-				context.write(term, termDocFreq);
+				docFreq.set(i, frequency);
+				context.write(term, docFreq);
 			}
 			return;
 		}
 
 		// emit the result
 		term.set(termDoc.getTerm());
-		termDocFreq.copy(termDoc);
-		termDocFreq.setFreq(Integer.parseInt(value.toString()));
-		context.write(term, termDocFreq);
+		docFreq.set(termDoc.getDoc(), frequency);
+		context.write(term, docFreq);
+	}
+
+	/** Transformation of the term-document pair encoded by the dictionary. */
+	private void mapTermId(TermIdDocWritable termIdDoc, int frequency, Context context) throws IOException, InterruptedException {
+		if (termIdDoc.getTerm() == TermIdDocWritable.NUMBER_OF_DOCUMENTS) {
+			for (int i = 0; i < reducersNum; i++) {
+				// send it to each reducer, using key -(i + 1)
+				termId.set(-(i + 1));
+				docFreq.set(i, frequency);
+				context.write(termId, docFreq);
+			}
+			return;
+		}
+
+		termId.set(termIdDoc.getTerm());
+		docFreq.set(termIdDoc.getDoc(), frequency);
+		context.write(termId, docFreq);
 	}
 }
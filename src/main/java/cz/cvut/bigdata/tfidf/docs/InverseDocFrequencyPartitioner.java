@@ -1,23 +1,116 @@
 package cz.cvut.bigdata.tfidf.docs;
 
 import cz.cvut.bigdata.tfidf.HashPartitioner;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Extension of the <i>HashPartitioner</i> with special
- * treatment of key values starting with '_', they directly
- * indicate which reducer should receive given key-value pair.
+ * treatment of the keys '_' + i, they directly indicate which
+ * reducer should receive given key-value pair. The terms never
+ * contain digits, see the <i>TermFilter</i>, so they do not collide
+ * with the special keys, even when they start with '_'.
+ * When the terms are encoded by the <i>TermDictionary</i>, the
+ * keys are the term ids and the negative key -(i + 1) is sent
+ * to the i-th reducer.
+ * <p/>
+ * When the partition file is configured, the other keys are
+ * partitioned by the ranges given by the sorted boundary keys
+ * from the file, see the <i>InverseDocFrequencySampler</i>.
  */
-public class InverseDocFrequencyPartitioner extends HashPartitioner<Text> {
+public class InverseDocFrequencyPartitioner extends HashPartitioner<WritableComparable<?>> implements Configurable {
+
+	/** File with the boundary keys of the partitions. */
+	public static final String PARTITION_FILE = "tfidf.idf.partition.file";
+
+	private Configuration conf;
+	private WritableComparable<?>[] boundaries = null;
 
 	@Override
-	public int getPartition(Text key, Object value, int numPartitions) {
-		final String text = key.toString();
-		if (text.startsWith("_")) {
-			// send a key to a particular reducer
-			return Integer.parseInt(text.substring(1));
+	public int getPartition(WritableComparable<?> key, Object value, int numPartitions) {
+		if (key instanceof IntWritable) {
+			final int termId = ((IntWritable) key).get();
+			if (termId < 0) {
+				// send a key to a particular reducer
+				return -termId - 1;
+			}
+		} else {
+			final int reducer = getReducer(key.toString());
+			if (reducer >= 0) {
+				// send a key to a particular reducer
+				return reducer;
+			}
+		}
+		if (boundaries != null) {
+			// find the range of the key
+			final int index = Arrays.binarySearch(boundaries, key);
+			final int partition = (index >= 0) ? index + 1 : -index - 1;
+			return Math.min(partition, numPartitions - 1);
 		}
 		return super.getPartition(key, value, numPartitions);
 	}
 
+	/** Returns the reducer i of the special key '_' + i, or -1 for a term. */
+	static int getReducer(String text) {
+		if (text.length() < 2 || text.charAt(0) != '_') {
+			return -1;
+		}
+		int reducer = 0;
+		for (int i = 1; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			reducer = 10 * reducer + (c - '0');
+		}
+		return reducer;
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		final String partitionFile = conf.get(PARTITION_FILE);
+		if (partitionFile == null) {
+			boundaries = null;
+			return;
+		}
+
+		try {
+			boundaries = readBoundaries(new Path(partitionFile), conf);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot read the partition file " + partitionFile, e);
+		}
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	/** Reads the sorted boundary keys from the partition file. */
+	private static WritableComparable<?>[] readBoundaries(Path partitionFile, Configuration conf) throws IOException {
+		final List<WritableComparable<?>> boundaries = new ArrayList<WritableComparable<?>>();
+		final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(partitionFile));
+		try {
+			WritableComparable<?> boundary = (WritableComparable<?>) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+			while (reader.next(boundary, NullWritable.get())) {
+				boundaries.add(boundary);
+				boundary = (WritableComparable<?>) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+			}
+		} finally {
+			reader.close();
+		}
+		return boundaries.toArray(new WritableComparable<?>[boundaries.size()]);
+	}
 }
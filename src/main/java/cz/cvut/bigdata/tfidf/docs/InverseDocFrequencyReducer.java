@@ -1,71 +1,236 @@
 package cz.cvut.bigdata.tfidf.docs;
 
-import cz.cvut.bigdata.tfidf.TermDocFreqWritable;
+import cz.cvut.bigdata.tfidf.DocFreqWritable;
+import cz.cvut.bigdata.tfidf.dictionary.TermDictionary;
+import cz.cvut.bigdata.tfidf.postings.PostingsWritable;
+import cz.cvut.bigdata.tfidf.scoring.DocStats;
+import cz.cvut.bigdata.tfidf.scoring.Scorer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Reducer;
 
 import java.io.IOException;
-import java.util.LinkedList;
 
 /**
- * Receives <b>(term, list[termDocFreq])</b> where the list
+ * Receives <b>(term, list[docFreq])</b> where the list
  * corresponds to the document frequencies for given term.
  * <p/>
  * First, the reducer will receive a pair with the key value
- * starting '_', that indicate the overall number of documents.
+ * '_' + reducer, that indicate the overall number of documents.
  * Then, the reducer will compute the TF-IDF score for each
- * term-document from the received list. It filters out terms
- * occurring less then 3 times or more than N/2 times. Finally,
- * it emits the TF-IDF matrix in sparse representation.
+ * term-document from the received list, which is buffered in
+ * parallel primitive arrays of documents and frequencies, i.e.
+ * without an object per posting. The scores of the list are
+ * computed at once by the configured <i>Scorer</i>. It filters out terms
+ * occurring in less than the minimal number of documents (3 by default)
+ * or in more than the maximal ratio of the documents (N/2 by default).
+ * Finally, it emits the TF-IDF matrix in sparse representation.
  * <p/>
- * The TF-IDF is computed as follows:
+ * When the vocabulary is limited, only the terms of the highest document
+ * frequencies are emitted. Their minimal document frequency is given by
+ * the <i>DocFreqHistogram</i> of all the terms, computed before the job.
+ * <p/>
+ * When the terms are encoded by the <i>TermDictionary</i>, the reducer
+ * receives <b>(termId, list[docFreq])</b> instead, the negative keys
+ * indicate the number of documents. The terms are restored from the
+ * dictionary in the output.
+ * <p/>
+ * When the job output value class is the <i>PostingsWritable</i>, the
+ * reducer emits the <b>(term, postings)</b> pairs with the float32 scores
+ * sorted by the documents, instead of the textual lines.
+ * <p/>
+ * The TF-IDF is computed by default as follows:
  * <pre>
  *     tfidf = log(tf + 1) * log(idf)
  *     idf = N / df
  * </pre>
+ * The scorers weighting by the lengths of the documents load the
+ * statistics of the documents, see the <i>DocStats</i>.
  */
-public class InverseDocFrequencyReducer extends Reducer<Text, TermDocFreqWritable, Text, Text> {
+public class InverseDocFrequencyReducer extends Reducer<Writable, DocFreqWritable, Text, Writable> {
+
+	/** Minimal document frequency of the emitted terms. */
+	public static final String MIN_DOC_FREQUENCY = "tfidf.idf.min-df";
+	/** Maximal document frequency of the emitted terms, relative to the number of documents. */
+	public static final String MAX_DOC_FREQUENCY_RATIO = "tfidf.idf.max-df-ratio";
+	/** Maximal number of the emitted terms, zero for no limit. */
+	public static final String MAX_VOCABULARY = "tfidf.idf.max-vocabulary";
+
+	public static final int DEFAULT_MIN_DOC_FREQUENCY = 3;
+	public static final float DEFAULT_MAX_DOC_FREQUENCY_RATIO = 0.5f;
 
+	/** Counters of the terms. */
+	public static enum Terms {
+		PRUNED_RARE, PRUNED_FREQUENT, PRUNED_VOCABULARY, EMITTED
+	}
+
+	/**
+	 * Group of the counters of the posting list sizes, rounded down to
+	 * the powers of two. The counters are summed over all the reducers,
+	 * so the largest posting list is given by the largest counter name.
+	 */
+	public static final String POSTING_LIST_SIZES = InverseDocFrequencyReducer.class.getName() + "$PostingListSizes";
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Text term = new Text();
 	private final Text tfidf = new Text();
+	private final StringBuilder tfidfLine = new StringBuilder();
+
+	private int[] documents = new int[INITIAL_CAPACITY];
+	private int[] frequencies = new int[INITIAL_CAPACITY];
+	private double[] scores = new double[INITIAL_CAPACITY];
 
 	private int numberOfDocuments = 0;
 
+	// bounds of the document frequency of the emitted terms
+	private int minDocFrequency;
+	private float maxDocFrequencyRatio;
+	private int maxDocFrequency = 0;
+	private int maxVocabulary;
+	private int vocabularyDocFrequency = 0;
+	private DocFreqHistogram histogram = null;
+
+	private Scorer scorer;
+	private TermDictionary dictionary = null;
+	private PostingsWritable postings = null;
+
+	// counted locally, reported on clean-up
+	private final long[] terms = new long[Terms.values().length];
+	private final long[] postingListSizes = new long[Integer.SIZE];
+
 	@Override
-	protected void reduce(Text key, Iterable<TermDocFreqWritable> values, Context context) throws IOException, InterruptedException {
-		if (key.toString().startsWith("_")) {
-			// '_' indicates the number of documents
-			numberOfDocuments = values.iterator().next().getFreq();
-			return;
+	protected void setup(Context context) throws IOException, InterruptedException {
+		final Configuration conf = context.getConfiguration();
+		scorer = Scorer.create(conf);
+		minDocFrequency = conf.getInt(MIN_DOC_FREQUENCY, DEFAULT_MIN_DOC_FREQUENCY);
+		maxDocFrequencyRatio = conf.getFloat(MAX_DOC_FREQUENCY_RATIO, DEFAULT_MAX_DOC_FREQUENCY_RATIO);
+		maxVocabulary = conf.getInt(MAX_VOCABULARY, 0);
+		if (maxVocabulary > 0 && DocFreqHistogram.isConfigured(conf)) {
+			histogram = DocFreqHistogram.load(conf);
+		}
+		if (scorer.needsDocStats()) {
+			scorer.setDocStats(DocStats.load(conf));
+		}
+		if (TermDictionary.isConfigured(conf)) {
+			dictionary = TermDictionary.load(conf);
+		}
+		if (PostingsWritable.class.equals(context.getOutputValueClass())) {
+			postings = new PostingsWritable();
+		}
+	}
+
+	@Override
+	protected void reduce(Writable key, Iterable<DocFreqWritable> values, Context context) throws IOException, InterruptedException {
+		final Text term;
+		if (key instanceof IntWritable) {
+			final int termId = ((IntWritable) key).get();
+			if (termId < 0) {
+				// negative key indicates the number of documents
+				setNumberOfDocuments(values.iterator().next().getFreq());
+				return;
+			}
+			term = this.term;
+			term.set(dictionary.getTerm(termId));
+		} else {
+			term = (Text) key;
+			if (InverseDocFrequencyPartitioner.getReducer(term.toString()) >= 0) {
+				// '_' + reducer indicates the number of documents
+				setNumberOfDocuments(values.iterator().next().getFreq());
+				return;
+			}
 		}
 
 		// copy all term-document-frequency values
-		final LinkedList<TermDocFreqWritable> termDocFreq = new LinkedList<TermDocFreqWritable>();
-		for (TermDocFreqWritable value : values) {
-			termDocFreq.add(new TermDocFreqWritable(value));
+		int docFrequency = 0;
+		for (DocFreqWritable value : values) {
+			if (docFrequency == documents.length) {
+				grow();
+			}
+			documents[docFrequency] = value.getDoc();
+			frequencies[docFrequency] = value.getFreq();
+			docFrequency++;
 		}
 
-		final int docFrequency = termDocFreq.size();
 		// filter out un-frequent and too-frequent terms
-		if (docFrequency < 3 || docFrequency > numberOfDocuments / 2) {
+		if (docFrequency < minDocFrequency) {
+			terms[Terms.PRUNED_RARE.ordinal()]++;
+			return;
+		} else if (docFrequency > maxDocFrequency) {
+			terms[Terms.PRUNED_FREQUENT.ordinal()]++;
+			return;
+		} else if (docFrequency < vocabularyDocFrequency) {
+			terms[Terms.PRUNED_VOCABULARY.ordinal()]++;
 			return;
 		}
+		terms[Terms.EMITTED.ordinal()]++;
+		postingListSizes[31 - Integer.numberOfLeadingZeros(docFrequency)]++;
+
+		// compute the scores of the posting list
+		scorer.score(documents, frequencies, docFrequency, numberOfDocuments, scores);
 
-		// compute the TF-IDF score for all term-documents
-		final StringBuilder tfidfLine = new StringBuilder();
-		for (TermDocFreqWritable value : termDocFreq) {
-			tfidfLine.append(value.getDoc()).append(':');
-			tfidfLine.append(computeTFIDF(value, docFrequency));
+		if (postings != null) {
+			// emit the posting list sorted by the documents
+			postings.clear();
+			for (int i = 0; i < docFrequency; i++) {
+				postings.add(documents[i], (float) scores[i]);
+			}
+			postings.sort();
+			context.write(term, postings);
+			return;
+		}
+
+		// format the TF-IDF scores of all term-documents
+		tfidfLine.setLength(0);
+		for (int i = 0; i < docFrequency; i++) {
+			tfidfLine.append(documents[i]).append(':');
+			tfidfLine.append(scores[i]);
 			tfidfLine.append(' ');
 		}
-		tfidfLine.delete(tfidfLine.length() - 1, tfidfLine.length());
+		tfidfLine.setLength(tfidfLine.length() - 1);
 
 		// emit one sparse line of the TF-IDF matrix
 		tfidf.set(tfidfLine.toString());
-		context.write(key, tfidf);
+		context.write(term, tfidf);
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		for (Terms counter : Terms.values()) {
+			context.getCounter(counter).increment(terms[counter.ordinal()]);
+		}
+		for (int i = 0; i < postingListSizes.length; i++) {
+			if (postingListSizes[i] > 0L) {
+				context.getCounter(POSTING_LIST_SIZES, postingListSize(i)).increment(postingListSizes[i]);
+			}
+		}
+	}
+
+	/** Sets the number of documents and the document frequency bounds depending on it. */
+	private void setNumberOfDocuments(int numberOfDocuments) {
+		this.numberOfDocuments = numberOfDocuments;
+		maxDocFrequency = (int) (numberOfDocuments * (double) maxDocFrequencyRatio);
+		if (histogram != null) {
+			vocabularyDocFrequency = histogram.getMinDocFrequency(minDocFrequency, maxDocFrequency, maxVocabulary);
+		}
+	}
+
+	/** Returns the name of the posting list size counter, i.e. the zero-padded power of two. */
+	public static String postingListSize(int exponent) {
+		return String.format("%010d", 1L << exponent);
 	}
 
-	/** Computes the TF-IDF score for given term-document-frequency. */
-	protected double computeTFIDF(TermDocFreqWritable termDocFreq, int docFrequency) {
-		return Math.log((double) termDocFreq.getFreq() + 1.0) * Math.log((double) numberOfDocuments / docFrequency);
+	/** Doubles the capacity of the document, frequency and score buffers. */
+	private void grow() {
+		final int capacity = 2 * documents.length;
+		final int[] newDocuments = new int[capacity];
+		final int[] newFrequencies = new int[capacity];
+		System.arraycopy(documents, 0, newDocuments, 0, documents.length);
+		System.arraycopy(frequencies, 0, newFrequencies, 0, frequencies.length);
+		documents = newDocuments;
+		frequencies = newFrequencies;
+		scores = new double[capacity];
 	}
 }
@@ -0,0 +1,188 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import cz.cvut.bigdata.tfidf.TermDocWritable;
+import cz.cvut.bigdata.tfidf.TermIdDocWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Sampler of the <i>InverseDocFrequency</i> job input, that computes
+ * the boundary keys for the <i>InverseDocFrequencyPartitioner</i>.
+ * <p/>
+ * The input records (term-document pairs) are sampled from small chunks
+ * at random positions of the input files, one chunk in each of the equal
+ * parts of the input, thus the sampled terms are weighted by their posting
+ * volume. The records of a chunk are sampled uniformly, since the
+ * consecutive records usually share the term. Then, the sorted terms are greedily
+ * split into ranges of (approximately) equal posting volume. A very
+ * frequent term gets a range on its own. The boundaries are either
+ * terms or term ids, when the terms are encoded by the dictionary.
+ */
+public class InverseDocFrequencySampler {
+
+	/** Number of sampled records. */
+	public static final String SAMPLE_SIZE = "tfidf.idf.sample.size";
+	/** Number of sampled input chunks. */
+	public static final String SAMPLE_CHUNKS = "tfidf.idf.sample.chunks";
+
+	public static final int DEFAULT_SAMPLE_SIZE = 100000;
+	public static final int DEFAULT_SAMPLE_CHUNKS = 1000;
+
+	private static final long CHUNK_LENGTH = 64 * 1024;
+
+	/** Samples the job input and writes the partition file for given job. */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static void writePartitionFile(Job job, Path partitionFile) throws IOException, InterruptedException {
+		final Configuration conf = job.getConfiguration();
+		final int sampleSize = conf.getInt(SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE);
+		final int sampleChunks = conf.getInt(SAMPLE_CHUNKS, DEFAULT_SAMPLE_CHUNKS);
+
+		final InputFormat<Object, Object> inputFormat;
+		try {
+			inputFormat = (InputFormat<Object, Object>) ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("unknown input format", e);
+		}
+		// the empty splits are skipped, they contain no chunks
+		final List<FileSplit> splits = new ArrayList<FileSplit>();
+		for (InputSplit split : inputFormat.getSplits(job)) {
+			if (split.getLength() > 0L) {
+				splits.add((FileSplit) split);
+			}
+		}
+		final long[] ends = new long[splits.size()];
+		long length = 0L;
+		for (int i = 0; i < ends.length; i++) {
+			length += splits.get(i).getLength();
+			ends[i] = length;
+		}
+
+		// sample the terms from a chunk at a random position of each of the equal strata of the input
+		final TreeMap<WritableComparable, int[]> samples = new TreeMap<WritableComparable, int[]>();
+		final TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+		final Random random = new Random(length);
+		final int chunkSize = Math.max(1, sampleSize / sampleChunks);
+		final WritableComparable[] chunkSamples = new WritableComparable[chunkSize];
+		for (int i = 0; i < sampleChunks && length > 0L; i++) {
+			final long position = Math.min((long) ((i + random.nextDouble()) * length / sampleChunks), length - 1);
+			int index = Arrays.binarySearch(ends, position);
+			index = (index >= 0) ? index + 1 : -index - 1;
+
+			final FileSplit split = splits.get(index);
+			final long start = split.getStart() + split.getLength() - (ends[index] - position);
+			final FileSplit chunk = new FileSplit(split.getPath(), start, Math.min(CHUNK_LENGTH, ends[index] - position), null);
+
+			// the records of the input are sorted, so the sampled records are spread over the whole chunk
+			// (reservoir sampling) rather than taken as the consecutive run of the same terms
+			int records = 0;
+			final RecordReader<Object, Object> reader = inputFormat.createRecordReader(chunk, context);
+			try {
+				reader.initialize(chunk, context);
+				while (reader.nextKeyValue()) {
+					final int sample = (records < chunkSize) ? records : random.nextInt(records + 1);
+					records++;
+					if (sample < chunkSize) {
+						chunkSamples[sample] = getTerm(reader.getCurrentKey());
+					}
+				}
+			} finally {
+				reader.close();
+			}
+
+			for (int j = 0; j < Math.min(records, chunkSize); j++) {
+				final WritableComparable key = chunkSamples[j];
+				if (key != null) {
+					final int[] count = samples.get(key);
+					if (count != null) {
+						count[0]++;
+					} else {
+						samples.put(key, new int[] {1});
+					}
+				}
+			}
+		}
+
+		writeBoundaries(computeBoundaries(samples, job.getNumReduceTasks()), partitionFile, conf);
+		conf.set(InverseDocFrequencyPartitioner.PARTITION_FILE, partitionFile.toString());
+	}
+
+	/** Splits the sorted sampled terms into ranges of equal volume. */
+	static <K> List<K> computeBoundaries(TreeMap<K, int[]> samples, int numPartitions) {
+		long remaining = 0L;
+		for (int[] count : samples.values()) {
+			remaining += count[0];
+		}
+
+		final List<K> boundaries = new ArrayList<K>();
+		final List<Map.Entry<K, int[]>> entries = new ArrayList<Map.Entry<K, int[]>>(samples.entrySet());
+		int i = 0;
+		for (int partitions = numPartitions; partitions > 1 && i < entries.size(); partitions--) {
+			final double target = (double) remaining / partitions;
+
+			// take at least one term, then while it gets closer to the target
+			long volume = entries.get(i++).getValue()[0];
+			while (i < entries.size() && volume + entries.get(i).getValue()[0] / 2.0 <= target) {
+				volume += entries.get(i++).getValue()[0];
+			}
+			if (i < entries.size()) {
+				boundaries.add(entries.get(i).getKey());
+			}
+			remaining -= volume;
+		}
+		return boundaries;
+	}
+
+	/** Returns the term (or term id) of the sampled key, or null for the special keys. */
+	private static WritableComparable<?> getTerm(Object key) {
+		if (key instanceof TermIdDocWritable) {
+			final int termId = ((TermIdDocWritable) key).getTerm();
+			return (termId != TermIdDocWritable.NUMBER_OF_DOCUMENTS) ? new IntWritable(termId) : null;
+		}
+		final String term = (key instanceof TermDocWritable)
+				? ((TermDocWritable) key).getTerm()
+				: new TermDocWritable().parse(key.toString()).getTerm();
+		return !term.equals("_") ? new Text(term) : null;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void writeBoundaries(List<WritableComparable> boundaries, Path partitionFile, Configuration conf) throws IOException {
+		final FileSystem fs = partitionFile.getFileSystem(conf);
+		if (fs.exists(partitionFile)) {
+			fs.delete(partitionFile, false);
+		}
+
+		final SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(partitionFile),
+				SequenceFile.Writer.keyClass(boundaries.isEmpty() ? Text.class : boundaries.get(0).getClass()),
+				SequenceFile.Writer.valueClass(NullWritable.class));
+		try {
+			for (WritableComparable boundary : boundaries) {
+				writer.append(boundary, NullWritable.get());
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
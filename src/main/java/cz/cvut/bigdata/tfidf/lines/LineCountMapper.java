@@ -0,0 +1,37 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(long, 'text')</b> pairs of a byte offsets and a texts
+ * and counts the lines of the input split, skipping the first line of
+ * the file the same way as the <i>LineNumberMapper</i>. When finished,
+ * it emits the split together with the number of its lines.
+ */
+public class LineCountMapper extends Mapper<LongWritable, Text, NullWritable, SplitWritable> {
+
+	private long lineCounter = 0L;
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		if (key.get() == 0L) {
+			// skip the first line
+			return;
+		}
+		lineCounter++;
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		final FileSplit fileSplit = (FileSplit) context.getInputSplit();
+		final SplitWritable split = new SplitWritable();
+		split.set(fileSplit.getPath().toString(), fileSplit.getStart(), lineCounter);
+		context.write(NullWritable.get(), split);
+	}
+}
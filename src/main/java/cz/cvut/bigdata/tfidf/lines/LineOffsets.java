@@ -0,0 +1,97 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line number offsets of the input splits, computed as a cumulative
+ * sum of the line counters emitted by the <i>LineCountMapper</i>. The
+ * splits are ordered by their position, thus the documents are numbered
+ * in the order of the input files.
+ */
+public class LineOffsets {
+
+	/** Directory with the output of the LineCount job. */
+	public static final String COUNTS_PATH = "tfidf.lines.counts";
+
+	private static final PathFilter PART_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			return path.getName().startsWith("part-");
+		}
+	};
+
+	private final List<SplitWritable> splits;
+	private final int[] offsets;
+	private final int numberOfLines;
+
+	private LineOffsets(List<SplitWritable> splits) {
+		Collections.sort(splits);
+		this.splits = splits;
+
+		// compute cumulative sum of line counters
+		offsets = new int[splits.size()];
+		long cumSum = 0L;
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = (int) cumSum;
+			cumSum += splits.get(i).getLines();
+		}
+		if (cumSum > Integer.MAX_VALUE) {
+			throw new IllegalStateException("too many lines " + cumSum);
+		}
+		numberOfLines = (int) cumSum;
+	}
+
+	/** Loads the line counters of the splits from the configured directory. */
+	public static LineOffsets load(Configuration conf) throws IOException {
+		final Path countsPath = new Path(conf.get(COUNTS_PATH));
+		final FileSystem fs = countsPath.getFileSystem(conf);
+
+		final List<SplitWritable> splits = new ArrayList<SplitWritable>();
+		for (FileStatus status : fs.listStatus(countsPath, PART_FILTER)) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				SplitWritable split = new SplitWritable();
+				while (reader.next(NullWritable.get(), split)) {
+					splits.add(split);
+					split = new SplitWritable();
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return new LineOffsets(splits);
+	}
+
+	/** Returns index of given split (in the order of splits). */
+	public int getIndex(FileSplit fileSplit) throws IOException {
+		final SplitWritable split = new SplitWritable();
+		split.set(fileSplit.getPath().toString(), fileSplit.getStart(), 0L);
+		final int index = Collections.binarySearch(splits, split);
+		if (index < 0) {
+			throw new IOException("unknown input split " + split);
+		}
+		return index;
+	}
+
+	/** Returns number of lines preceding given split. */
+	public int getOffset(FileSplit fileSplit) throws IOException {
+		return offsets[getIndex(fileSplit)];
+	}
+
+	/** Returns the overall number of lines. */
+	public int getNumberOfLines() {
+		return numberOfLines;
+	}
+}
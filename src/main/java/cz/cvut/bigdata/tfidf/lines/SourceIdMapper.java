@@ -0,0 +1,109 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(long, 'text')</b> pairs and writes <b>(id, 'title\ttext')</b>
+ * pairs numbered by the source ids of the documents into the 'documents'
+ * named output, without shuffling the documents. Unlike the line numbers,
+ * the ids depend neither on the partitioning nor on the other documents,
+ * thus they are stable across the runs.
+ * <p/>
+ * The source id is either the key, i.e. the article id read by the
+ * <i>WikiPageInputFormat</i>, or the first field of the text line of the
+ * form 'id\ttitle\ttext'. The ids have to be positive and unique, the lines
+ * without a valid id are skipped. The titles are written into the 'titles'
+ * named output.
+ * <p/>
+ * Only the valid ids are emitted as <b>(id, null)</b> pairs, so the single
+ * <i>SourceIdReducer</i> counts the documents and checks the ids are unique.
+ */
+public class SourceIdMapper extends Mapper<LongWritable, Text, IntWritable, NullWritable> {
+
+	/** Named output of the numbered documents. */
+	public static final String DOCUMENTS_OUTPUT = "documents";
+	/** Named output of the document titles. */
+	public static final String TITLES_OUTPUT = "titles";
+	/** If true, the id is the first field of the line, otherwise the key. */
+	public static final String ID_FIELD = "tfidf.lines.id-field";
+
+	/** Counters of the documents. */
+	public static enum Documents {
+		INVALID_ID, DUPLICATE_ID
+	}
+
+	/** Filter of the numbered documents, skipping the titles output. */
+	public static class LinesFilter implements PathFilter {
+		@Override
+		public boolean accept(Path path) {
+			return !path.getName().startsWith(TITLES_OUTPUT + "-");
+		}
+	}
+
+	private final IntWritable id = new IntWritable();
+	private final Text document = new Text();
+	private final Text title = new Text();
+
+	private MultipleOutputs<IntWritable, NullWritable> outputs;
+	private boolean idField;
+	private long invalidIds = 0L;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		idField = context.getConfiguration().getBoolean(ID_FIELD, true);
+		outputs = new MultipleOutputs<IntWritable, NullWritable>(context);
+	}
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		if (key.get() == 0L) {
+			// skip the first line
+			return;
+		}
+
+		final String text = value.toString();
+		final String titleText;
+		try {
+			if (idField) {
+				final int tab = text.indexOf('\t');
+				id.set(Integer.parseInt((tab < 0) ? text.trim() : text.substring(0, tab).trim()));
+				titleText = (tab < 0) ? "" : text.substring(tab + 1);
+			} else {
+				id.set((int) key.get());
+				titleText = (key.get() <= Integer.MAX_VALUE) ? text : null;
+			}
+		} catch (NumberFormatException e) {
+			invalidIds++;
+			return;
+		}
+		if (titleText == null || id.get() <= 0) {
+			invalidIds++;
+			return;
+		}
+
+		// write the document and its title, emit the id
+		document.set(titleText);
+		outputs.write(DOCUMENTS_OUTPUT, id, document);
+		context.write(id, NullWritable.get());
+		final int tab = titleText.indexOf('\t');
+		if (tab > 0) {
+			title.set(titleText.substring(0, tab));
+			outputs.write(TITLES_OUTPUT, id, title);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(Documents.INVALID_ID).increment(invalidIds);
+		outputs.close();
+	}
+}
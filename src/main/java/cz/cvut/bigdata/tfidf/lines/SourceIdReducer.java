@@ -0,0 +1,48 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(id, list[null])</b> of the valid source ids, sorted, and
+ * emits the overall number of documents using the zero key value once all
+ * the ids are received. The job has a single reducer, thus the number of
+ * documents is the number of the distinct ids.
+ * <p/>
+ * An id received more than once would merge the term frequencies of
+ * several documents into one, so the duplicates are counted by the
+ * {@link SourceIdMapper.Documents#DUPLICATE_ID} counter and the job fails.
+ */
+public class SourceIdReducer extends Reducer<IntWritable, NullWritable, IntWritable, Text> {
+
+	private int numberOfDocuments = 0;
+	private long duplicates = 0L;
+	private int firstDuplicate = 0;
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<NullWritable> values, Context context) throws IOException, InterruptedException {
+		long count = 0L;
+		for (NullWritable value : values) {
+			count++;
+		}
+		if (count > 1L && duplicates++ == 0L) {
+			firstDuplicate = key.get();
+		}
+		numberOfDocuments++;
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(SourceIdMapper.Documents.DUPLICATE_ID).increment(duplicates);
+		if (duplicates > 0L) {
+			throw new IOException(duplicates + " source ids are not unique, e.g. " + firstDuplicate);
+		}
+
+		// zero key value indicates the overall number of documents
+		context.write(new IntWritable(0), new Text(String.valueOf(numberOfDocuments)));
+	}
+}
@@ -0,0 +1,51 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(long, 'text')</b> pairs of a byte offsets and a texts and
+ * emits <b>(line, 'text')</b> pairs without any shuffle. The line numbers
+ * continue from the line number offset of the input split, computed from
+ * the output of the LineCount job. The mapper of the first split emits the
+ * overall number of lines using the zero key value.
+ */
+public class SplitLineNumberMapper extends Mapper<LongWritable, Text, IntWritable, Text> {
+
+	private final IntWritable line = new IntWritable();
+
+	private int lineCounter;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		final LineOffsets offsets = LineOffsets.load(context.getConfiguration());
+		final FileSplit split = (FileSplit) context.getInputSplit();
+		lineCounter = offsets.getOffset(split) + 1;
+
+		if (offsets.getIndex(split) == 0) {
+			// zero key value indicates the overall number of lines
+			line.set(0);
+			context.write(line, new Text(String.valueOf(offsets.getNumberOfLines())));
+		}
+	}
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		if (key.get() == 0L) {
+			// skip the first line
+			return;
+		}
+
+		// emit the result
+		line.set(lineCounter);
+		context.write(line, value);
+
+		// increment line counter
+		lineCounter++;
+	}
+}
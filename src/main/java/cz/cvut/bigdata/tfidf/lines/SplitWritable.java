@@ -0,0 +1,79 @@
+package cz.cvut.bigdata.tfidf.lines;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>WritableComparable</i> class
+ * describing an input split <b>(path, start)</b> and the number
+ * of lines (documents) it contains. The splits are ordered by
+ * the path and the start offset, i.e. by their position.
+ */
+public class SplitWritable implements WritableComparable<SplitWritable> {
+
+	private String path = null;
+	private long start = 0L;
+	private long lines = 0L;
+
+	public void set(String path, long start, long lines) {
+		this.path = path;
+		this.start = start;
+		this.lines = lines;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getLines() {
+		return lines;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(path);
+		WritableUtils.writeVLong(out, start);
+		WritableUtils.writeVLong(out, lines);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		path = in.readUTF();
+		start = WritableUtils.readVLong(in);
+		lines = WritableUtils.readVLong(in);
+	}
+
+	@Override
+	public int compareTo(SplitWritable o) {
+		if (o == null) return -1;
+		final int val = (path == null) ? 0 : path.compareTo(o.path);
+		return (val != 0) ? val : ((start < o.start) ? -1 : ((start == o.start) ? 0 : 1));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof SplitWritable)) return false;
+
+		final SplitWritable that = (SplitWritable) o;
+		return start == that.start && ((path != null) ? path.equals(that.path) : that.path == null);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * ((path != null) ? path.hashCode() : 0) + (int) (start ^ (start >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return path + " : " + start + " : " + lines;
+	}
+}
@@ -0,0 +1,441 @@
+package cz.cvut.bigdata.tfidf.local;
+
+import cz.cvut.bigdata.cli.ArgumentParser;
+import cz.cvut.bigdata.tfidf.docs.DocFreqHistogram;
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import cz.cvut.bigdata.tfidf.scoring.DocStats;
+import cz.cvut.bigdata.tfidf.scoring.Scorer;
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyMapper;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local multi-threaded engine computing the same TF-IDF index as the
+ * MapReduce jobs with the map-only numbering, but in a single process
+ * and without the job overhead.
+ * <p/>
+ * It is intended for small corpora only, since all the postings are kept
+ * in memory, there is no spill to the disk. Each posting kept by the
+ * minimal term frequency takes 8 bytes (up to twice as much before its
+ * list is merged), and each distinct term about 100 bytes per thread,
+ * so the heap has to hold all of them.
+ * <p/>
+ * The input files are read in the order of their paths, skipping the
+ * first line of each file, and the documents are numbered the same way
+ * as by the map-only numbering (<i>--map-only-numbering</i>), i.e. by
+ * their order in the input files. The default numbering by the shuffle
+ * may number the documents of multiple input files differently, and the
+ * stable ids are not supported. The batches of the documents are
+ * parsed by a pool of threads, using the <i>TermFrequencyMapper</i>, into
+ * the per-thread posting lists, which are merged at the end. Finally, the
+ * TF-IDF scores are computed by the configured <i>Scorer</i>, using the
+ * statistics of the documents gathered by the parsing (if needed by the
+ * scorer), and written into the single
+ * <i>tf-idf/part-r-00000</i> file, sorted by the terms and the documents.
+ * <p/>
+ * The postings and the terms are filtered by the same thresholds as by
+ * the MapReduce jobs, including the vocabulary limit.
+ */
+public class LocalEngine extends Configured implements Tool {
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final PathFilter HIDDEN_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			final String name = path.getName();
+			return !name.startsWith("_") && !name.startsWith(".");
+		}
+	};
+
+	public static void main(String[] arguments) throws Exception {
+		System.exit(ToolRunner.run(new LocalEngine(), arguments));
+	}
+
+	// the analyzer shared by the threads
+	private TermAnalyzer analyzer;
+	private int minTermFrequency;
+
+	// per-thread postings, registered when the thread processes its first batch
+	private final List<Map<String, PostingList>> threadPostings = new ArrayList<Map<String, PostingList>>();
+	private final List<DocStats> threadStats = new ArrayList<DocStats>();
+	private final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>() {
+		@Override
+		protected Parser initialValue() {
+			final Parser parser = new Parser(analyzer, minTermFrequency);
+			synchronized (threadPostings) {
+				threadPostings.add(parser.postings);
+				threadStats.add(parser.stats);
+			}
+			return parser;
+		}
+	};
+
+	@Override
+	public int run(String[] arguments) throws Exception {
+		final ArgumentParser parser = new ArgumentParser("TF-IDF-local");
+
+		parser.addArgument("input", true, true, "specify input directory");
+		parser.addArgument("output", true, true, "specify output directory");
+		parser.addArgument("threads", true, String.valueOf(Runtime.getRuntime().availableProcessors()), false, "number of threads");
+		parser.parseAndCheck(arguments);
+
+		final int threads = parser.getInt("threads");
+		if (threads < 1) {
+			throw new IllegalArgumentException("number of threads has to be positive");
+		}
+
+		analyzer = TermAnalyzer.get(getConf());
+		minTermFrequency = getConf().getInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY);
+		final Scorer scorer = Scorer.create(getConf());
+
+		final ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			final int numberOfDocuments = parseDocuments(new Path(parser.getString("input")), executor);
+			final Map<String, PostingList> postings = mergePostings();
+			if (scorer.needsDocStats()) {
+				scorer.setDocStats(mergeStats());
+			}
+			writeTFIDF(postings, scorer, numberOfDocuments, new Path(new Path(parser.getString("output")), "tf-idf"), executor);
+		} finally {
+			executor.shutdownNow();
+		}
+		return 0;
+	}
+
+	/** Reads and parses all the documents, returns the number of documents. */
+	private int parseDocuments(Path input, ExecutorService executor) throws IOException {
+		final Configuration conf = getConf();
+		final FileSystem fs = input.getFileSystem(conf);
+		final CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		int document = 0;
+		for (Path file : listFiles(fs, input)) {
+			final CompressionCodec codec = codecs.getCodec(file);
+			final InputStream in = (codec != null) ? codec.createInputStream(fs.open(file)) : fs.open(file);
+			final LineReader reader = new LineReader(in, conf);
+			try {
+				// skip the first line
+				final Text line = new Text();
+				reader.readLine(line);
+
+				List<String> batch = new ArrayList<String>(BATCH_SIZE);
+				while (reader.readLine(line) > 0) {
+					batch.add(line.toString());
+					if (batch.size() == BATCH_SIZE) {
+						futures.add(executor.submit(new ParseTask(document + 1, batch)));
+						document += batch.size();
+						batch = new ArrayList<String>(BATCH_SIZE);
+					}
+				}
+				if (!batch.isEmpty()) {
+					futures.add(executor.submit(new ParseTask(document + 1, batch)));
+					document += batch.size();
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		for (Future<?> future : futures) {
+			get(future);
+		}
+		return document;
+	}
+
+	/** Lists the input files (not recursively), sorted by their paths. */
+	private static List<Path> listFiles(FileSystem fs, Path input) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		final FileStatus[] statuses = fs.globStatus(input, HIDDEN_FILTER);
+		if (statuses == null || statuses.length == 0) {
+			throw new IOException("input path does not exist: " + input);
+		}
+		for (FileStatus status : statuses) {
+			if (status.isDirectory()) {
+				for (FileStatus child : fs.listStatus(status.getPath(), HIDDEN_FILTER)) {
+					if (!child.isDirectory()) {
+						files.add(child.getPath());
+					}
+				}
+			} else {
+				files.add(status.getPath());
+			}
+		}
+		Collections.sort(files, new Comparator<Path>() {
+			@Override
+			public int compare(Path p1, Path p2) {
+				return p1.toString().compareTo(p2.toString());
+			}
+		});
+		return files;
+	}
+
+	/** Merges the per-thread postings. */
+	private Map<String, PostingList> mergePostings() {
+		final Map<String, PostingList> merged = new HashMap<String, PostingList>();
+		for (Map<String, PostingList> postings : threadPostings) {
+			for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+				final PostingList list = merged.get(entry.getKey());
+				if (list == null) {
+					merged.put(entry.getKey(), entry.getValue());
+				} else {
+					list.addAll(entry.getValue());
+				}
+			}
+		}
+		return merged;
+	}
+
+	/** Merges the per-thread statistics of the documents. */
+	private DocStats mergeStats() {
+		final DocStats merged = new DocStats();
+		for (DocStats stats : threadStats) {
+			merged.addAll(stats);
+		}
+		return merged;
+	}
+
+	/** Computes the TF-IDF scores and writes the sparse TF-IDF matrix. */
+	private void writeTFIDF(Map<String, PostingList> postings, Scorer scorer, int numberOfDocuments, Path output,
+			ExecutorService executor) throws IOException {
+		final List<String> terms = new ArrayList<String>(postings.keySet());
+		Collections.sort(terms);
+
+		// the document frequency bounds of the InverseDocFrequencyReducer
+		final Configuration conf = getConf();
+		int minDocFrequency = conf.getInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY, InverseDocFrequencyReducer.DEFAULT_MIN_DOC_FREQUENCY);
+		final int maxDocFrequency = (int) (numberOfDocuments * (double) conf.getFloat(InverseDocFrequencyReducer.MAX_DOC_FREQUENCY_RATIO,
+				InverseDocFrequencyReducer.DEFAULT_MAX_DOC_FREQUENCY_RATIO));
+		final int maxVocabulary = conf.getInt(InverseDocFrequencyReducer.MAX_VOCABULARY, 0);
+		if (maxVocabulary > 0) {
+			final DocFreqHistogram histogram = new DocFreqHistogram();
+			for (PostingList list : postings.values()) {
+				histogram.add(list.size, 1L);
+			}
+			minDocFrequency = histogram.getMinDocFrequency(minDocFrequency, maxDocFrequency, maxVocabulary);
+		}
+
+		// format the lines by batches of terms in parallel
+		final List<Future<String>> futures = new ArrayList<Future<String>>();
+		for (int i = 0; i < terms.size(); i += BATCH_SIZE) {
+			futures.add(executor.submit(new FormatTask(terms.subList(i, Math.min(i + BATCH_SIZE, terms.size())), postings, scorer,
+					numberOfDocuments, minDocFrequency, maxDocFrequency)));
+		}
+
+		final FileSystem fs = output.getFileSystem(getConf());
+		if (fs.exists(output)) {
+			fs.delete(output, true);
+		}
+		final Writer writer = new OutputStreamWriter(fs.create(new Path(output, "part-r-00000")), "UTF-8");
+		try {
+			for (Future<String> future : futures) {
+				writer.write(get(future));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IOException("interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("task failed", e.getCause());
+		}
+	}
+
+	/** Parses a batch of documents using the per-thread parser. */
+	private class ParseTask implements Callable<Void> {
+
+		private final int firstDocument;
+		private final List<String> documents;
+
+		private ParseTask(int firstDocument, List<String> documents) {
+			this.firstDocument = firstDocument;
+			this.documents = documents;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			final Parser parser = parsers.get();
+			for (int i = 0; i < documents.size(); i++) {
+				parser.parse(firstDocument + i, documents.get(i));
+			}
+			return null;
+		}
+	}
+
+	/** Parser of the documents into the term postings of one thread. */
+	private static class Parser {
+
+		private final TermFrequencyMapper mapper;
+		private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+		private final Map<String, int[]> termCounts = new HashMap<String, int[]>();
+		private final DocStats stats = new DocStats();
+		private final int minTermFrequency;
+
+		private Parser(TermAnalyzer analyzer, int minTermFrequency) {
+			mapper = new TermFrequencyMapper(analyzer);
+			this.minTermFrequency = minTermFrequency;
+		}
+
+		private void parse(int document, String text) throws IOException {
+			final List<String> terms = mapper.parseTerms(text);
+			int maxFrequency = 0;
+			for (String term : terms) {
+				int[] count = termCounts.get(term);
+				if (count != null) {
+					count[0]++;
+				} else {
+					count = new int[] {1};
+					termCounts.put(term, count);
+				}
+				maxFrequency = Math.max(maxFrequency, count[0]);
+			}
+			stats.set(document, terms.size(), maxFrequency);
+
+			for (Map.Entry<String, int[]> entry : termCounts.entrySet()) {
+				// filter the term document frequency as the TermFrequencyReducer
+				if (entry.getValue()[0] >= minTermFrequency) {
+					PostingList list = postings.get(entry.getKey());
+					if (list == null) {
+						list = new PostingList();
+						postings.put(entry.getKey(), list);
+					}
+					list.add(document, entry.getValue()[0]);
+				}
+			}
+			termCounts.clear();
+		}
+	}
+
+	/** Computes and formats the TF-IDF lines of a batch of terms. */
+	private static class FormatTask implements Callable<String> {
+
+		private final List<String> terms;
+		private final Map<String, PostingList> postings;
+		private final Scorer scorer;
+		private final int numberOfDocuments;
+		private final int minDocFrequency;
+		private final int maxDocFrequency;
+
+		private FormatTask(List<String> terms, Map<String, PostingList> postings, Scorer scorer, int numberOfDocuments,
+				int minDocFrequency, int maxDocFrequency) {
+			this.terms = terms;
+			this.postings = postings;
+			this.scorer = scorer;
+			this.numberOfDocuments = numberOfDocuments;
+			this.minDocFrequency = minDocFrequency;
+			this.maxDocFrequency = maxDocFrequency;
+		}
+
+		@Override
+		public String call() {
+			final StringBuilder lines = new StringBuilder();
+			double[] scores = new double[BATCH_SIZE];
+			for (String term : terms) {
+				final PostingList list = postings.get(term);
+				final int docFrequency = list.size;
+
+				// filter out un-frequent and too-frequent terms as the InverseDocFrequencyReducer
+				if (docFrequency < minDocFrequency || docFrequency > maxDocFrequency) {
+					continue;
+				}
+
+				list.sort();
+				if (scores.length < docFrequency) {
+					scores = new double[Math.max(docFrequency, 2 * scores.length)];
+				}
+				scorer.score(list.documents, list.frequencies, docFrequency, numberOfDocuments, scores);
+				lines.append(term).append('\t');
+				for (int i = 0; i < docFrequency; i++) {
+					lines.append(list.documents[i]).append(':');
+					lines.append(scores[i]);
+					lines.append(' ');
+				}
+				lines.setLength(lines.length() - 1);
+				lines.append('\n');
+			}
+			return lines.toString();
+		}
+	}
+
+	/** Postings of a term in parallel primitive arrays. */
+	private static class PostingList {
+
+		private int[] documents = new int[4];
+		private int[] frequencies = new int[4];
+		private int size = 0;
+
+		private void add(int document, int frequency) {
+			if (size == documents.length) {
+				grow(2 * size);
+			}
+			documents[size] = document;
+			frequencies[size] = frequency;
+			size++;
+		}
+
+		private void addAll(PostingList list) {
+			if (size + list.size > documents.length) {
+				grow(Math.max(2 * documents.length, size + list.size));
+			}
+			System.arraycopy(list.documents, 0, documents, size, list.size);
+			System.arraycopy(list.frequencies, 0, frequencies, size, list.size);
+			size += list.size;
+		}
+
+		/** Sorts the postings by the documents. */
+		private void sort() {
+			final long[] postings = new long[size];
+			for (int i = 0; i < size; i++) {
+				postings[i] = ((long) documents[i] << 32) | (frequencies[i] & 0xFFFFFFFFL);
+			}
+			Arrays.sort(postings);
+			for (int i = 0; i < size; i++) {
+				documents[i] = (int) (postings[i] >>> 32);
+				frequencies[i] = (int) postings[i];
+			}
+		}
+
+		private void grow(int capacity) {
+			documents = Arrays.copyOf(documents, capacity);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+		}
+	}
+}
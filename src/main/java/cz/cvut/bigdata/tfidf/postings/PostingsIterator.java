@@ -0,0 +1,52 @@
+package cz.cvut.bigdata.tfidf.postings;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.IOException;
+
+/**
+ * Iterator over a serialized posting list, see the <i>PostingsWritable</i>.
+ * The postings are decoded one by one, while iterated.
+ */
+public class PostingsIterator {
+
+	private final DataInputBuffer in = new DataInputBuffer();
+	private final int size;
+
+	private int remaining;
+	private int document = 0;
+	private float score = 0f;
+
+	public PostingsIterator(byte[] bytes) throws IOException {
+		in.reset(bytes, bytes.length);
+		size = WritableUtils.readVInt(in);
+		remaining = size;
+	}
+
+	/** Moves to the next posting, returns false at the end of the list. */
+	public boolean next() throws IOException {
+		if (remaining == 0) {
+			return false;
+		}
+		document += WritableUtils.readVInt(in);
+		score = in.readFloat();
+		remaining--;
+		return true;
+	}
+
+	/** Returns the document of the current posting. */
+	public int doc() {
+		return document;
+	}
+
+	/** Returns the TF-IDF score of the current posting. */
+	public float score() {
+		return score;
+	}
+
+	/** Returns the number of postings, i.e. the document frequency. */
+	public int size() {
+		return size;
+	}
+}
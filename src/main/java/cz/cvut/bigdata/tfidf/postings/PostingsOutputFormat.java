@@ -0,0 +1,74 @@
+package cz.cvut.bigdata.tfidf.postings;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Output format of the TF-IDF matrix as binary posting lists. Each task
+ * writes two files:
+ * <ul>
+ *     <li><i>part-r-NNNNN.postings</i> - the serialized <i>PostingsWritable</i> lists</li>
+ *     <li><i>part-r-NNNNN.index</i> - the <b>(term, offset, length, df)</b> entries
+ *     of the posting lists, in the order of the terms</li>
+ * </ul>
+ * Both files start with the {@link #MAGIC} bytes. The files are read by
+ * the <i>PostingsReader</i>.
+ */
+public class PostingsOutputFormat extends FileOutputFormat<Text, PostingsWritable> {
+
+	public static final String POSTINGS_EXTENSION = ".postings";
+	public static final String INDEX_EXTENSION = ".index";
+
+	/** Magic bytes of the files (including the version). */
+	public static final byte[] MAGIC = {'T', 'F', 'P', 1};
+
+	@Override
+	public RecordWriter<Text, PostingsWritable> getRecordWriter(TaskAttemptContext context) throws IOException, InterruptedException {
+		final Path postingsFile = getDefaultWorkFile(context, POSTINGS_EXTENSION);
+		final Path indexFile = getDefaultWorkFile(context, INDEX_EXTENSION);
+		final FSDataOutputStream postings = postingsFile.getFileSystem(context.getConfiguration()).create(postingsFile, false);
+		final FSDataOutputStream index = indexFile.getFileSystem(context.getConfiguration()).create(indexFile, false);
+		postings.write(MAGIC);
+		index.write(MAGIC);
+		return new PostingsRecordWriter(postings, index);
+	}
+
+	/** Writer of the posting lists and their index entries. */
+	protected static class PostingsRecordWriter extends RecordWriter<Text, PostingsWritable> {
+
+		private final FSDataOutputStream postings;
+		private final FSDataOutputStream index;
+
+		public PostingsRecordWriter(FSDataOutputStream postings, FSDataOutputStream index) {
+			this.postings = postings;
+			this.index = index;
+		}
+
+		@Override
+		public void write(Text term, PostingsWritable value) throws IOException {
+			final long offset = postings.getPos();
+			value.write(postings);
+
+			term.write(index);
+			WritableUtils.writeVLong(index, offset);
+			WritableUtils.writeVInt(index, (int) (postings.getPos() - offset));
+			WritableUtils.writeVInt(index, value.size());
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) throws IOException {
+			try {
+				postings.close();
+			} finally {
+				index.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package cz.cvut.bigdata.tfidf.postings;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reader of the posting lists written by the <i>PostingsOutputFormat</i>.
+ * Only the indexes of the parts are loaded into memory, the posting list
+ * of a term is read on demand and its postings are decoded while iterated.
+ */
+public class PostingsReader implements Closeable {
+
+	private final Part[] parts;
+
+	private PostingsReader(Part[] parts) {
+		this.parts = parts;
+	}
+
+	/**
+	 * Opens the posting lists of given output directory, throws
+	 * <i>FileNotFoundException</i> when it contains no posting lists.
+	 */
+	public static PostingsReader open(Configuration conf, Path dir) throws IOException {
+		final FileSystem fs = dir.getFileSystem(conf);
+		final FileStatus[] indexFiles = fs.globStatus(new Path(dir, "part-*" + PostingsOutputFormat.INDEX_EXTENSION));
+		if (indexFiles == null || indexFiles.length == 0) {
+			throw new FileNotFoundException("no posting lists in " + dir);
+		}
+
+		final Part[] parts = new Part[indexFiles.length];
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				final Path indexFile = indexFiles[i].getPath();
+				final String name = indexFile.getName();
+				final Path postingsFile = new Path(indexFile.getParent(),
+						name.substring(0, name.length() - PostingsOutputFormat.INDEX_EXTENSION.length()) + PostingsOutputFormat.POSTINGS_EXTENSION);
+				parts[i] = new Part(fs, indexFile, postingsFile);
+			}
+		} catch (IOException e) {
+			for (Part part : parts) {
+				if (part != null) {
+					part.postings.close();
+				}
+			}
+			throw e;
+		}
+		return new PostingsReader(parts);
+	}
+
+	/** Returns the posting list of given term, or null for an unknown term. */
+	public PostingsIterator getPostings(String term) throws IOException {
+		final Text key = new Text(term);
+		for (Part part : parts) {
+			final int index = Arrays.binarySearch(part.terms, key);
+			if (index >= 0) {
+				final byte[] bytes = new byte[part.lengths[index]];
+				part.postings.readFully(part.offsets[index], bytes);
+				return new PostingsIterator(bytes);
+			}
+		}
+		return null;
+	}
+
+	/** Returns the document frequency of given term, or 0 for an unknown term. */
+	public int getDocFrequency(String term) {
+		final Text key = new Text(term);
+		for (Part part : parts) {
+			final int index = Arrays.binarySearch(part.terms, key);
+			if (index >= 0) {
+				return part.frequencies[index];
+			}
+		}
+		return 0;
+	}
+
+	/** Returns all the terms, sorted within each part. */
+	public List<String> getTerms() {
+		final List<String> terms = new ArrayList<String>();
+		for (Part part : parts) {
+			for (Text term : part.terms) {
+				terms.add(term.toString());
+			}
+		}
+		return terms;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (Part part : parts) {
+			try {
+				part.postings.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/** Checks the magic bytes at the beginning of the file. */
+	private static void checkMagic(DataInputStream in, Path file) throws IOException {
+		final byte[] magic = new byte[PostingsOutputFormat.MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, PostingsOutputFormat.MAGIC)) {
+			throw new IOException("not a posting lists file " + file);
+		}
+	}
+
+	/** Index of one part and its open postings file. */
+	private static class Part {
+
+		private final Text[] terms;
+		private final long[] offsets;
+		private final int[] lengths;
+		private final int[] frequencies;
+
+		private final FSDataInputStream postings;
+
+		private Part(FileSystem fs, Path indexFile, Path postingsFile) throws IOException {
+			final List<Text> terms = new ArrayList<Text>();
+			long[] offsets = new long[1024];
+			int[] lengths = new int[1024];
+			int[] frequencies = new int[1024];
+
+			final FSDataInputStream index = fs.open(indexFile);
+			try {
+				checkMagic(index, indexFile);
+				final long length = fs.getFileStatus(indexFile).getLen();
+				while (index.getPos() < length) {
+					final int i = terms.size();
+					if (i == offsets.length) {
+						offsets = Arrays.copyOf(offsets, 2 * i);
+						lengths = Arrays.copyOf(lengths, 2 * i);
+						frequencies = Arrays.copyOf(frequencies, 2 * i);
+					}
+					final Text term = new Text();
+					term.readFields(index);
+					terms.add(term);
+					offsets[i] = WritableUtils.readVLong(index);
+					lengths[i] = WritableUtils.readVInt(index);
+					frequencies[i] = WritableUtils.readVInt(index);
+				}
+			} catch (EOFException e) {
+				throw new IOException("truncated index file " + indexFile, e);
+			} finally {
+				index.close();
+			}
+
+			this.terms = terms.toArray(new Text[terms.size()]);
+			this.offsets = Arrays.copyOf(offsets, terms.size());
+			this.lengths = Arrays.copyOf(lengths, terms.size());
+			this.frequencies = Arrays.copyOf(frequencies, terms.size());
+
+			postings = fs.open(postingsFile);
+			try {
+				checkMagic(postings, postingsFile);
+			} catch (IOException e) {
+				postings.close();
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package cz.cvut.bigdata.tfidf.postings;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing a posting
+ * list of a term, i.e. the <b>(document, score)</b> pairs sorted by
+ * the documents.
+ * <p/>
+ * The list is serialized as the number of postings (VInt) followed by
+ * the postings, each one as a difference from the previous document
+ * (VInt) and a float32 score.
+ */
+public class PostingsWritable implements Writable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int[] documents = new int[INITIAL_CAPACITY];
+	private float[] scores = new float[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/** Removes all the postings. */
+	public void clear() {
+		size = 0;
+	}
+
+	/** Appends the posting, the documents have to be sorted before the serialization. */
+	public void add(int document, float score) {
+		if (size == documents.length) {
+			documents = Arrays.copyOf(documents, 2 * size);
+			scores = Arrays.copyOf(scores, 2 * size);
+		}
+		documents[size] = document;
+		scores[size] = score;
+		size++;
+	}
+
+	/** Sorts the postings by the documents. */
+	public void sort() {
+		// pack the (document, score) pairs into longs ordered by the document
+		final long[] postings = new long[size];
+		for (int i = 0; i < size; i++) {
+			postings[i] = ((long) documents[i] << 32) | (Float.floatToIntBits(scores[i]) & 0xFFFFFFFFL);
+		}
+		Arrays.sort(postings);
+		for (int i = 0; i < size; i++) {
+			documents[i] = (int) (postings[i] >>> 32);
+			scores[i] = Float.intBitsToFloat((int) postings[i]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getDoc(int index) {
+		return documents[index];
+	}
+
+	public float getScore(int index) {
+		return scores[index];
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, size);
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			WritableUtils.writeVInt(out, documents[i] - previous);
+			out.writeFloat(scores[i]);
+			previous = documents[i];
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		clear();
+		final int length = WritableUtils.readVInt(in);
+		int document = 0;
+		for (int i = 0; i < length; i++) {
+			document += WritableUtils.readVInt(in);
+			add(document, in.readFloat());
+		}
+	}
+}
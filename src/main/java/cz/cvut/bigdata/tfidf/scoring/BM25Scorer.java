@@ -0,0 +1,64 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * The Okapi BM25 scorer:
+ * <pre>
+ *     bm25 = idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / average length))
+ *     idf = log(1 + (N - df + 0.5) / (df + 0.5))
+ * </pre>
+ * The term frequency saturates with the parameter k1, and the parameter
+ * b controls the document length normalization. The denominator factors
+ * of the documents are computed once, from the statistics of the documents.
+ */
+public class BM25Scorer extends Scorer {
+
+	/** Saturation of the term frequency. */
+	public static final String K1 = "tfidf.scorer.bm25.k1";
+	/** Strength of the document length normalization. */
+	public static final String B = "tfidf.scorer.bm25.b";
+
+	public static final float DEFAULT_K1 = 1.2f;
+	public static final float DEFAULT_B = 0.75f;
+
+	private final double k1;
+	private final double b;
+
+	// k1 * (1 - b + b * length / average length) of the documents, by their positions in the statistics
+	private DocStats docStats = new DocStats();
+	private double[] lengthFactors = new double[0];
+
+	public BM25Scorer(Configuration conf) {
+		k1 = conf.getFloat(K1, DEFAULT_K1);
+		b = conf.getFloat(B, DEFAULT_B);
+		if (k1 < 0.0 || b < 0.0 || b > 1.0) {
+			throw new IllegalArgumentException("invalid BM25 parameters k1=" + k1 + ", b=" + b);
+		}
+	}
+
+	@Override
+	public boolean needsDocStats() {
+		return true;
+	}
+
+	@Override
+	public void setDocStats(DocStats docStats) {
+		this.docStats = docStats;
+		final double averageLength = docStats.getAverageLength();
+		lengthFactors = new double[docStats.size()];
+		for (int index = 0; index < lengthFactors.length; index++) {
+			lengthFactors[index] = k1 * (1.0 - b + b * docStats.getLength(index) / averageLength);
+		}
+	}
+
+	@Override
+	public void score(int[] documents, int[] frequencies, int docFrequency, int numberOfDocuments, double[] scores) {
+		final double idf = Math.log(1.0 + (numberOfDocuments - docFrequency + 0.5) / (docFrequency + 0.5));
+		final double numerator = idf * (k1 + 1.0);
+		for (int i = 0; i < docFrequency; i++) {
+			final int frequency = frequencies[i];
+			scores[i] = numerator * frequency / (frequency + lengthFactors[docStats.getIndex(documents[i])]);
+		}
+	}
+}
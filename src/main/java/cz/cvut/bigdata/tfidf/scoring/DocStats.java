@@ -0,0 +1,148 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import cz.cvut.bigdata.tfidf.DocPositions;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Statistics of the documents, i.e. their lengths (numbers of tokens) and
+ * the maximal frequencies of their terms, as written by the
+ * <i>TermFrequencyMapper</i> into the 'docs' named output of the
+ * <i>TermFrequency</i> job. The statistics are kept in primitive arrays
+ * indexed by the positions of the documents, see {@link #getIndex(int)}
+ * and the <i>DocPositions</i>, thus sized by the number of the documents,
+ * not by their greatest number.
+ */
+public class DocStats {
+
+	/** Named output of the statistics. */
+	public static final String STATS_OUTPUT = "docs";
+	/** Directory with the statistics output. */
+	public static final String STATS_PATH = "tfidf.scorer.docs";
+
+	private static final PathFilter STATS_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			return path.getName().startsWith(STATS_OUTPUT + "-");
+		}
+	};
+
+	private final DocPositions positions = new DocPositions();
+	private int[] lengths;
+	private int[] maxFrequencies;
+	private long totalLength = 0L;
+	private int numberOfDocuments = 0;
+
+	public DocStats() {
+		lengths = new int[1024];
+		maxFrequencies = new int[1024];
+	}
+
+	/** Returns true, if the statistics of the documents are gathered. */
+	public static boolean isConfigured(Configuration conf) {
+		return conf.get(STATS_PATH) != null;
+	}
+
+	/** Loads the statistics from the configured directory. */
+	public static DocStats load(Configuration conf) throws IOException {
+		final Path statsPath = new Path(conf.get(STATS_PATH));
+		final FileSystem fs = statsPath.getFileSystem(conf);
+
+		final DocStats docStats = new DocStats();
+		final IntWritable doc = new IntWritable();
+		final DocStatsWritable stats = new DocStatsWritable();
+		for (FileStatus status : fs.listStatus(statsPath, STATS_FILTER)) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				while (reader.next(doc, stats)) {
+					docStats.set(doc.get(), stats.getLength(), stats.getMaxFrequency());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return docStats;
+	}
+
+	/** Sets the statistics of the (new) document. */
+	public void set(int doc, int length, int maxFrequency) {
+		append(doc, length, maxFrequency);
+		totalLength += length;
+		numberOfDocuments++;
+	}
+
+	/** Adds the statistics of the other (disjoint) documents. */
+	public void addAll(DocStats other) {
+		for (int i = 0; i < other.positions.size(); i++) {
+			// the dense positions without a document are empty
+			if (!other.positions.isDense() || other.lengths[i] > 0) {
+				append(other.positions.getDoc(i), other.lengths[i], other.maxFrequencies[i]);
+			}
+		}
+		totalLength += other.totalLength;
+		numberOfDocuments += other.numberOfDocuments;
+	}
+
+	private void append(int doc, int length, int maxFrequency) {
+		final int index = positions.add(doc);
+		if (index == lengths.length) {
+			lengths = Arrays.copyOf(lengths, 2 * index);
+			maxFrequencies = Arrays.copyOf(maxFrequencies, 2 * index);
+		}
+		lengths[index] = length;
+		maxFrequencies[index] = maxFrequency;
+	}
+
+	/** Moves the statistics to the positions of the indexed documents. */
+	private void ensureIndexed() {
+		if (positions.isIndexed()) {
+			return;
+		}
+		final int[] indexes = positions.index();
+		final int[] indexedLengths = new int[positions.size()];
+		final int[] indexedMaxFrequencies = new int[positions.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexedLengths[indexes[i]] = lengths[i];
+			indexedMaxFrequencies[indexes[i]] = maxFrequencies[i];
+		}
+		lengths = indexedLengths;
+		maxFrequencies = indexedMaxFrequencies;
+	}
+
+	/** Returns the number of the positions of the documents. */
+	public int size() {
+		ensureIndexed();
+		return positions.size();
+	}
+
+	/** Returns the position of the document, or -1 for an unknown document. */
+	public int getIndex(int doc) {
+		ensureIndexed();
+		return positions.getIndex(doc);
+	}
+
+	/** Returns the number of tokens of the document at given position. */
+	public int getLength(int index) {
+		ensureIndexed();
+		return lengths[index];
+	}
+
+	/** Returns the maximal frequency of the terms of the document at given position. */
+	public int getMaxFrequency(int index) {
+		ensureIndexed();
+		return maxFrequencies[index];
+	}
+
+	/** Returns the average number of tokens of the documents. */
+	public double getAverageLength() {
+		return (numberOfDocuments > 0) ? Math.max((double) totalLength / numberOfDocuments, 1.0) : 1.0;
+	}
+}
@@ -0,0 +1,50 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing the statistics
+ * <b>(length, maxFrequency)</b> of a document, i.e. the number of its
+ * tokens and the maximal frequency of its terms. The document itself is
+ * given by the key.
+ */
+public class DocStatsWritable implements Writable {
+
+	private int length = 0;
+	private int maxFrequency = 0;
+
+	public void set(int length, int maxFrequency) {
+		this.length = length;
+		this.maxFrequency = maxFrequency;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getMaxFrequency() {
+		return maxFrequency;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, length);
+		WritableUtils.writeVInt(out, maxFrequency);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		length = WritableUtils.readVInt(in);
+		maxFrequency = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	public String toString() {
+		return length + ":" + maxFrequency;
+	}
+}
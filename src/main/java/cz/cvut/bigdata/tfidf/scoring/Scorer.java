@@ -0,0 +1,51 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Weighting scheme of the postings of the TF-IDF matrix. The scorer
+ * computes the scores of all the postings of a term at once, thus the
+ * factors of the term (e.g. its inverse document frequency) are computed
+ * once per term, and the factors of the documents once per task, in
+ * {@link #setDocStats(DocStats)}. The postings are then scored by a
+ * loop over the primitive arrays.
+ * <p/>
+ * The scorer is selected by its name:
+ * <ul>
+ *     <li><i>tfidf</i> - the TF-IDF variants, see the <i>TfIdfScorer</i> (default)</li>
+ *     <li><i>bm25</i> - the Okapi BM25, see the <i>BM25Scorer</i></li>
+ * </ul>
+ */
+public abstract class Scorer {
+
+	/** Name of the scorer. */
+	public static final String SCORER = "tfidf.scorer";
+
+	public static final String DEFAULT_SCORER = "tfidf";
+
+	/** Creates the configured scorer. */
+	public static Scorer create(Configuration conf) {
+		final String name = conf.get(SCORER, DEFAULT_SCORER);
+		if (name.equals("tfidf")) {
+			return new TfIdfScorer(conf);
+		} else if (name.equals("bm25")) {
+			return new BM25Scorer(conf);
+		}
+		throw new IllegalArgumentException("unknown scorer " + name);
+	}
+
+	/** Returns true, if the scorer needs the statistics of the documents. */
+	public boolean needsDocStats() {
+		return false;
+	}
+
+	/** Sets the statistics of the documents, computing the factors of the documents. */
+	public void setDocStats(DocStats docStats) {
+	}
+
+	/**
+	 * Computes the scores of the postings of one term, given by the first
+	 * <i>docFrequency</i> documents and their term frequencies.
+	 */
+	public abstract void score(int[] documents, int[] frequencies, int docFrequency, int numberOfDocuments, double[] scores);
+}
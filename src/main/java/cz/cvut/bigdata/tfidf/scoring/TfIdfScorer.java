@@ -0,0 +1,132 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Locale;
+
+/**
+ * The TF-IDF scorer, i.e. the product of the term frequency weight and the
+ * inverse document frequency weight, by default:
+ * <pre>
+ *     tfidf = log(tf + 1) * log(N / df)
+ * </pre>
+ * The term frequency weight is either <i>log</i>, <i>raw</i>, i.e. tf, or
+ * <i>augmented</i>, i.e. 0.5 + 0.5 * tf / max tf of the document. The inverse
+ * document frequency weight is either <i>log</i> or <i>smooth</i>, i.e.
+ * log(1 + N / df), which is positive even for the terms of all documents.
+ * <p/>
+ * With the length normalization, the scores are divided by the pivoted
+ * length of the document, (1 - slope) + slope * length / average length,
+ * so the long documents do not get higher scores just for their length.
+ * <p/>
+ * The logarithms of the common (small) term frequencies are tabulated.
+ */
+public class TfIdfScorer extends Scorer {
+
+	/** Term frequency weight: log, raw or augmented. */
+	public static final String TF = "tfidf.scorer.tf";
+	/** Inverse document frequency weight: log or smooth. */
+	public static final String IDF = "tfidf.scorer.idf";
+	/** Enables the pivoted document length normalization. */
+	public static final String LENGTH_NORMALIZATION = "tfidf.scorer.length-norm";
+	/** Slope of the pivoted document length normalization. */
+	public static final String PIVOT_SLOPE = "tfidf.scorer.pivot-slope";
+
+	public static final float DEFAULT_PIVOT_SLOPE = 0.2f;
+
+	/** Weights of the term frequency. */
+	public static enum TfWeight {
+		LOG, RAW, AUGMENTED
+	}
+
+	/** Weights of the inverse document frequency. */
+	public static enum IdfWeight {
+		LOG, SMOOTH
+	}
+
+	// log(tf + 1) of the small term frequencies
+	private static final double[] LOG_TABLE = new double[256];
+
+	static {
+		for (int i = 0; i < LOG_TABLE.length; i++) {
+			LOG_TABLE[i] = Math.log((double) i + 1.0);
+		}
+	}
+
+	private final TfWeight tf;
+	private final IdfWeight idf;
+	private final boolean lengthNormalization;
+	private final double slope;
+
+	// factors of the documents, by their positions in the statistics
+	private DocStats docStats = null;
+	private double[] inverseMaxFrequencies = null;
+	private double[] lengthFactors = null;
+
+	public TfIdfScorer(Configuration conf) {
+		tf = TfWeight.valueOf(conf.get(TF, "log").toUpperCase(Locale.ROOT));
+		idf = IdfWeight.valueOf(conf.get(IDF, "log").toUpperCase(Locale.ROOT));
+		lengthNormalization = conf.getBoolean(LENGTH_NORMALIZATION, false);
+		slope = conf.getFloat(PIVOT_SLOPE, DEFAULT_PIVOT_SLOPE);
+		if (slope < 0.0 || slope > 1.0) {
+			throw new IllegalArgumentException("invalid pivot slope " + slope);
+		}
+	}
+
+	@Override
+	public boolean needsDocStats() {
+		return tf == TfWeight.AUGMENTED || lengthNormalization;
+	}
+
+	@Override
+	public void setDocStats(DocStats docStats) {
+		this.docStats = docStats;
+		final int size = docStats.size();
+		if (tf == TfWeight.AUGMENTED) {
+			inverseMaxFrequencies = new double[size];
+			for (int index = 0; index < size; index++) {
+				final int maxFrequency = docStats.getMaxFrequency(index);
+				inverseMaxFrequencies[index] = (maxFrequency > 0) ? 1.0 / maxFrequency : 0.0;
+			}
+		}
+		if (lengthNormalization) {
+			final double averageLength = docStats.getAverageLength();
+			lengthFactors = new double[size];
+			for (int index = 0; index < size; index++) {
+				final double pivotedLength = (1.0 - slope) + slope * docStats.getLength(index) / averageLength;
+				lengthFactors[index] = (pivotedLength > 0.0) ? 1.0 / pivotedLength : 0.0;
+			}
+		}
+	}
+
+	@Override
+	public void score(int[] documents, int[] frequencies, int docFrequency, int numberOfDocuments, double[] scores) {
+		final double idfWeight = (idf == IdfWeight.SMOOTH)
+				? Math.log(1.0 + (double) numberOfDocuments / docFrequency) : Math.log((double) numberOfDocuments / docFrequency);
+
+		switch (tf) {
+			case LOG:
+				for (int i = 0; i < docFrequency; i++) {
+					final int frequency = frequencies[i];
+					scores[i] = ((frequency < LOG_TABLE.length) ? LOG_TABLE[frequency] : Math.log((double) frequency + 1.0)) * idfWeight;
+				}
+				break;
+			case RAW:
+				for (int i = 0; i < docFrequency; i++) {
+					scores[i] = frequencies[i] * idfWeight;
+				}
+				break;
+			case AUGMENTED:
+				for (int i = 0; i < docFrequency; i++) {
+					scores[i] = (0.5 + 0.5 * frequencies[i] * inverseMaxFrequencies[docStats.getIndex(documents[i])]) * idfWeight;
+				}
+				break;
+		}
+
+		if (lengthFactors != null) {
+			for (int i = 0; i < docFrequency; i++) {
+				scores[i] *= lengthFactors[docStats.getIndex(documents[i])];
+			}
+		}
+	}
+}
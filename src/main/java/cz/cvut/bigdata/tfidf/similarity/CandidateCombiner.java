@@ -0,0 +1,51 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives <b>(doc1, list[candidate])</b> on the map side and sums up the
+ * partial scores of each candidate doc2, the vector of doc1 (if any) is
+ * passed through.
+ */
+public class CandidateCombiner extends Reducer<IntWritable, SimilarityWritable, IntWritable, SimilarityWritable> {
+
+	protected final SimilarityWritable candidate = new SimilarityWritable();
+	protected final Map<Integer, double[]> scores = new HashMap<Integer, double[]>();
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<SimilarityWritable> values, Context context) throws IOException, InterruptedException {
+		final String vector = sumScores(values);
+		if (vector != null) {
+			candidate.setVector(vector);
+			context.write(key, candidate);
+		}
+		for (Map.Entry<Integer, double[]> entry : scores.entrySet()) {
+			candidate.setCandidate(entry.getKey(), entry.getValue()[0], "");
+			context.write(key, candidate);
+		}
+	}
+
+	/** Sums up the partial scores by the candidates, returns the vector or null. */
+	protected String sumScores(Iterable<SimilarityWritable> values) {
+		scores.clear();
+		String vector = null;
+		for (SimilarityWritable value : values) {
+			if (value.isVector()) {
+				vector = value.getTerms();
+				continue;
+			}
+			final double[] score = scores.get(value.getDoc());
+			if (score != null) {
+				score[0] += value.getScore();
+			} else {
+				scores.put(value.getDoc(), new double[] {value.getScore()});
+			}
+		}
+		return vector;
+	}
+}
@@ -0,0 +1,78 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Receives <b>(term, 'doc:tfidf doc:tfidf ...')</b>, i.e. the posting list
+ * of the term in the textual TF-IDF matrix, and emits the partial scores
+ * of the candidate pairs of the similar documents.
+ * <p/>
+ * The scores are normalized by the norms of the documents, and the pairs
+ * <b>(doc1, (doc2, weight1 * weight2))</b> are emitted only for the
+ * documents doc1 &lt; doc2, where the term is indexed for doc1, i.e. it
+ * is not in the prefix of doc1 (see the <i>DocNorms</i>). Summed up over
+ * all the terms, the partial score is the dot product of doc2 with the
+ * indexed part of doc1.
+ */
+public class CandidateMapper extends Mapper<Text, Text, IntWritable, SimilarityWritable> {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final IntWritable doc = new IntWritable();
+	private final SimilarityWritable candidate = new SimilarityWritable();
+
+	private int[] documents = new int[INITIAL_CAPACITY];
+	private double[] weights = new double[INITIAL_CAPACITY];
+
+	private DocNorms norms;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		norms = DocNorms.load(context.getConfiguration());
+	}
+
+	@Override
+	protected void map(Text key, Text value, Context context) throws IOException, InterruptedException {
+		final String postings = value.toString();
+
+		// parse the postings and normalize their scores
+		int docFrequency = 0;
+		int start = 0;
+		while (start < postings.length()) {
+			int end = postings.indexOf(' ', start);
+			if (end < 0) {
+				end = postings.length();
+			}
+			final int colon = postings.indexOf(':', start);
+			if (docFrequency == documents.length) {
+				documents = Arrays.copyOf(documents, 2 * docFrequency);
+				weights = Arrays.copyOf(weights, 2 * docFrequency);
+			}
+			documents[docFrequency] = Integer.parseInt(postings.substring(start, colon));
+			weights[docFrequency] = Double.parseDouble(postings.substring(colon + 1, end)) / norms.getNorm(documents[docFrequency]);
+			docFrequency++;
+			start = end + 1;
+		}
+		final long order = DocNorms.order(docFrequency, key.toString());
+
+		// emit the pairs of the documents indexing the term
+		for (int i = 0; i < docFrequency; i++) {
+			if (!norms.isIndexed(documents[i], order)) {
+				continue;
+			}
+			doc.set(documents[i]);
+			for (int j = 0; j < docFrequency; j++) {
+				if (documents[j] > documents[i]) {
+					candidate.setCandidate(documents[j], weights[i] * weights[j], "");
+					context.write(doc, candidate);
+				}
+			}
+		}
+	}
+}
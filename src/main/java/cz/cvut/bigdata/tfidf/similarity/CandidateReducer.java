@@ -0,0 +1,83 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import org.apache.hadoop.io.IntWritable;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives <b>(doc1, list[candidate])</b>, i.e. the partial scores of the
+ * candidates doc2 and the prefix of the doc1 vector, see the
+ * <i>CandidateMapper</i>. The missing part of the cosine similarity, i.e.
+ * the dot product of the prefix with doc2, is at most the norm of the
+ * prefix, thus the candidates whose partial score with the prefix norm
+ * is below the similarity threshold are pruned.
+ * <p/>
+ * The remaining candidates are emitted as <b>(doc2, (doc1, partial, prefix))</b>
+ * pairs, to be verified with the doc2 vector.
+ */
+public class CandidateReducer extends CandidateCombiner {
+
+	/** Counters of the candidate pairs. */
+	public static enum Pairs {
+		CANDIDATES, PRUNED_BY_BOUND
+	}
+
+	// tolerance of the rounding errors of the bound
+	private static final double EPSILON = 1e-9;
+
+	private final IntWritable doc = new IntWritable();
+
+	private double threshold;
+
+	// counted locally, reported on clean-up
+	private long candidates = 0L;
+	private long pruned = 0L;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		threshold = DocNorms.getThreshold(context.getConfiguration());
+	}
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<SimilarityWritable> values, Context context) throws IOException, InterruptedException {
+		final String vector = sumScores(values);
+		final String prefix = (vector != null) ? vector : "";
+		final double prefixNorm = norm(prefix);
+
+		candidates += scores.size();
+		for (Map.Entry<Integer, double[]> entry : scores.entrySet()) {
+			final double score = entry.getValue()[0];
+			if (score + prefixNorm + EPSILON < threshold) {
+				pruned++;
+				continue;
+			}
+			doc.set(entry.getKey());
+			candidate.setCandidate(key.get(), score, prefix);
+			context.write(doc, candidate);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(Pairs.CANDIDATES).increment(candidates);
+		context.getCounter(Pairs.PRUNED_BY_BOUND).increment(pruned);
+	}
+
+	/** Returns the L2 norm of the 'term:weight term:weight ...' vector. */
+	private static double norm(String terms) {
+		double sum = 0.0;
+		int start = 0;
+		while (start < terms.length()) {
+			int end = terms.indexOf(' ', start);
+			if (end < 0) {
+				end = terms.length();
+			}
+			final double weight = Double.parseDouble(terms.substring(terms.lastIndexOf(':', end - 1) + 1, end));
+			sum += weight * weight;
+			start = end + 1;
+		}
+		return Math.sqrt(sum);
+	}
+}
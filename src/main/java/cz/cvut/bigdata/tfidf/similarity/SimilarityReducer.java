@@ -0,0 +1,115 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives <b>(doc2, list[candidate])</b>, i.e. the vector of doc2 and
+ * the candidates doc1 with their partial scores and prefixes, see the
+ * <i>CandidateReducer</i>. The cosine similarity is the partial score
+ * plus the dot product of the doc1 prefix with the doc2 vector.
+ * <p/>
+ * The pairs of the similarity at least the threshold are emitted in both
+ * directions, i.e. as <b>(doc1, (doc2, similarity))</b> and
+ * <b>(doc2, (doc1, similarity))</b> pairs.
+ */
+public class SimilarityReducer extends Reducer<IntWritable, SimilarityWritable, IntWritable, SimilarityWritable> {
+
+	/** Counters of the verified pairs. */
+	public static enum Pairs {
+		VERIFIED, SIMILAR
+	}
+
+	private final IntWritable doc = new IntWritable();
+	private final SimilarityWritable similar = new SimilarityWritable();
+	private final List<SimilarityWritable> candidates = new ArrayList<SimilarityWritable>();
+	private final Map<String, Double> weights = new HashMap<String, Double>();
+
+	private double threshold;
+
+	// counted locally, reported on clean-up
+	private long verified = 0L;
+	private long similarPairs = 0L;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		threshold = DocNorms.getThreshold(context.getConfiguration());
+	}
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<SimilarityWritable> values, Context context) throws IOException, InterruptedException {
+		// copy the candidates, index the vector by its terms
+		candidates.clear();
+		weights.clear();
+		for (SimilarityWritable value : values) {
+			if (value.isVector()) {
+				parse(value.getTerms());
+			} else {
+				candidates.add(new SimilarityWritable(value));
+			}
+		}
+
+		final int doc2 = key.get();
+		for (SimilarityWritable candidate : candidates) {
+			final double similarity = candidate.getScore() + dot(candidate.getTerms());
+			verified++;
+			if (similarity < threshold) {
+				continue;
+			}
+			similarPairs++;
+
+			doc.set(doc2);
+			similar.setCandidate(candidate.getDoc(), similarity, "");
+			context.write(doc, similar);
+			doc.set(candidate.getDoc());
+			similar.setCandidate(doc2, similarity, "");
+			context.write(doc, similar);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(Pairs.VERIFIED).increment(verified);
+		context.getCounter(Pairs.SIMILAR).increment(similarPairs);
+	}
+
+	/** Parses the 'term:weight term:weight ...' vector into the weights. */
+	private void parse(String terms) {
+		int start = 0;
+		while (start < terms.length()) {
+			int end = terms.indexOf(' ', start);
+			if (end < 0) {
+				end = terms.length();
+			}
+			final int colon = terms.lastIndexOf(':', end - 1);
+			weights.put(terms.substring(start, colon), Double.parseDouble(terms.substring(colon + 1, end)));
+			start = end + 1;
+		}
+	}
+
+	/** Returns the dot product of the 'term:weight term:weight ...' prefix with the vector. */
+	private double dot(String prefix) {
+		double sum = 0.0;
+		int start = 0;
+		while (start < prefix.length()) {
+			int end = prefix.indexOf(' ', start);
+			if (end < 0) {
+				end = prefix.length();
+			}
+			final int colon = prefix.lastIndexOf(':', end - 1);
+			final Double weight = weights.get(prefix.substring(start, colon));
+			if (weight != null) {
+				sum += weight * Double.parseDouble(prefix.substring(colon + 1, end));
+			}
+			start = end + 1;
+		}
+		return sum;
+	}
+}
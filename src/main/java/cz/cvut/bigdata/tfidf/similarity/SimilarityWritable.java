@@ -0,0 +1,95 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing either the
+ * (sparse, textual) vector of the document given by the key, or a pair
+ * <b>(document, score)</b> of the similar document, optionally with the
+ * prefix of its vector. The similarity jobs join the vectors with the
+ * candidate pairs, thus their values are of the same class.
+ */
+public class SimilarityWritable implements Writable {
+
+	private boolean vector = false;
+	private int document = 0;
+	private double score = 0.0;
+	private String terms = "";
+
+	public SimilarityWritable() {
+	}
+
+	public SimilarityWritable(SimilarityWritable other) {
+		this.vector = other.vector;
+		this.document = other.document;
+		this.score = other.score;
+		this.terms = other.terms;
+	}
+
+	/** Sets the vector of the document given by the key. */
+	public void setVector(String terms) {
+		this.vector = true;
+		this.document = 0;
+		this.score = 0.0;
+		this.terms = terms;
+	}
+
+	/** Sets the similar document and its (partial) score, with the prefix of its vector. */
+	public void setCandidate(int document, double score, String prefix) {
+		this.vector = false;
+		this.document = document;
+		this.score = score;
+		this.terms = prefix;
+	}
+
+	public boolean isVector() {
+		return vector;
+	}
+
+	public int getDoc() {
+		return document;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	/** Returns the 'term:weight term:weight ...' vector or prefix. */
+	public String getTerms() {
+		return terms;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeBoolean(vector);
+		if (!vector) {
+			WritableUtils.writeVInt(out, document);
+			out.writeDouble(score);
+		}
+		Text.writeString(out, terms);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		vector = in.readBoolean();
+		if (vector) {
+			document = 0;
+			score = 0.0;
+		} else {
+			document = WritableUtils.readVInt(in);
+			score = in.readDouble();
+		}
+		terms = Text.readString(in);
+	}
+
+	@Override
+	public String toString() {
+		return vector ? terms : document + ":" + score;
+	}
+}
@@ -0,0 +1,74 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Receives <b>(doc, list[similar])</b>, i.e. all the documents similar to
+ * the document, and emits the k most similar ones as a sparse line
+ * <b>(doc, 'doc:similarity doc:similarity ...')</b>, ordered by the
+ * decreasing similarity.
+ */
+public class TopSimilarReducer extends Reducer<IntWritable, SimilarityWritable, IntWritable, Text> {
+
+	/** Number of the similar documents emitted for each document. */
+	public static final String TOP_K = "tfidf.similarity.top-k";
+
+	public static final int DEFAULT_TOP_K = 10;
+
+	// ascending similarity, the greater documents first for the same similarity
+	private static final Comparator<SimilarityWritable> ASCENDING = new Comparator<SimilarityWritable>() {
+		@Override
+		public int compare(SimilarityWritable o1, SimilarityWritable o2) {
+			final int val = Double.compare(o1.getScore(), o2.getScore());
+			return (val != 0) ? val : ((o1.getDoc() > o2.getDoc()) ? -1 : ((o1.getDoc() == o2.getDoc()) ? 0 : 1));
+		}
+	};
+
+	private final Text similar = new Text();
+	private final StringBuilder similarLine = new StringBuilder();
+
+	private PriorityQueue<SimilarityWritable> top;
+	private int topK;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		topK = context.getConfiguration().getInt(TOP_K, DEFAULT_TOP_K);
+		if (topK < 1) {
+			throw new IllegalArgumentException("invalid number of similar documents " + topK);
+		}
+		top = new PriorityQueue<SimilarityWritable>(topK + 1, ASCENDING);
+	}
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<SimilarityWritable> values, Context context) throws IOException, InterruptedException {
+		// keep the k most similar documents
+		top.clear();
+		for (SimilarityWritable value : values) {
+			if (top.size() < topK || ASCENDING.compare(value, top.peek()) > 0) {
+				top.add(new SimilarityWritable(value));
+				if (top.size() > topK) {
+					top.poll();
+				}
+			}
+		}
+
+		final List<SimilarityWritable> sorted = new ArrayList<SimilarityWritable>(top);
+		Collections.sort(sorted, Collections.reverseOrder(ASCENDING));
+		similarLine.setLength(0);
+		for (SimilarityWritable document : sorted) {
+			similarLine.append(document.getDoc()).append(':').append(document.getScore()).append(' ');
+		}
+		similarLine.setLength(similarLine.length() - 1);
+		similar.set(similarLine.toString());
+		context.write(key, similar);
+	}
+}
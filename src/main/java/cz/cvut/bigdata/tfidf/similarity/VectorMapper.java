@@ -0,0 +1,60 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(doc, 'term:weight term:weight ...')</b> lines of the
+ * document vectors and emits them as <b>(doc, vector)</b> pairs, to be
+ * joined with the candidate pairs of the document.
+ * <p/>
+ * When only the prefixes are emitted, the vectors are cut to their
+ * prefixes given by the <i>DocNorms</i>, and the documents of the empty
+ * prefixes are skipped.
+ */
+public class VectorMapper extends Mapper<Text, Text, IntWritable, SimilarityWritable> {
+
+	/** Emits only the prefixes of the vectors. */
+	public static final String PREFIX_ONLY = "tfidf.similarity.prefix-only";
+
+	private final IntWritable doc = new IntWritable();
+	private final SimilarityWritable vector = new SimilarityWritable();
+
+	private DocNorms norms = null;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		if (context.getConfiguration().getBoolean(PREFIX_ONLY, false)) {
+			norms = DocNorms.load(context.getConfiguration());
+		}
+	}
+
+	@Override
+	protected void map(Text key, Text value, Context context) throws IOException, InterruptedException {
+		doc.set(Integer.parseInt(key.toString()));
+		if (norms == null) {
+			vector.setVector(value.toString());
+			context.write(doc, vector);
+			return;
+		}
+
+		final int prefixLength = norms.getPrefixLength(doc.get());
+		if (prefixLength == 0) {
+			return;
+		}
+		final String terms = value.toString();
+		int end = -1;
+		for (int i = 0; i < prefixLength && end < terms.length(); i++) {
+			end = terms.indexOf(' ', end + 1);
+			if (end < 0) {
+				end = terms.length();
+			}
+		}
+		vector.setVector(terms.substring(0, end));
+		context.write(doc, vector);
+	}
+}
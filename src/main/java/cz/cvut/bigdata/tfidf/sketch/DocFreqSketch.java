@@ -0,0 +1,243 @@
+package cz.cvut.bigdata.tfidf.sketch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Count-Min sketch of the document frequencies of the terms, used for
+ * pruning the rare terms before the shuffle. The sketch consists of
+ * <i>depth</i> rows of <i>width</i> two-bit counters, saturating at the
+ * minimal document frequency (3), and it is updated conservatively, i.e.
+ * only the minimal counters of the term are incremented.
+ * <p/>
+ * The estimate never underestimates the document frequency, even for the
+ * merged sketches, thus a term with the estimate below the minimal document
+ * frequency is certainly pruned by the <i>InverseDocFrequencyReducer</i>.
+ * The saturated estimate is not below any higher minimal document frequency,
+ * so only the terms of the estimate below 3 are pruned then.
+ * <p/>
+ * The sketch file is shipped to the tasks through the distributed cache.
+ * The loaded sketch is only read, so the threads of a multithreaded mapper
+ * share it.
+ */
+public class DocFreqSketch implements Writable {
+
+	/** Path of the sketch file. */
+	public static final String SKETCH_PATH = "tfidf.sketch.path";
+	/** Number of counters of each row (power of two). */
+	public static final String WIDTH = "tfidf.sketch.width";
+	/** Number of rows. */
+	public static final String DEPTH = "tfidf.sketch.depth";
+
+	public static final int DEFAULT_WIDTH = 1 << 24;
+	public static final int DEFAULT_DEPTH = 3;
+
+	/** Default minimal document frequency of the InverseDocFrequency job, the counters saturate at. */
+	public static final int MIN_DOC_FREQUENCY = 3;
+
+	// name of the distributed cache link
+	private static final String LINK_NAME = "tfidf.sketch";
+
+	// the two-bit counters, 32 counters per long
+	private static final int COUNTERS_PER_LONG = 32;
+	private static final long LOW_BITS = 0x5555555555555555L;
+
+	// the last loaded sketch of the JVM and its path
+	private static DocFreqSketch shared = null;
+	private static String sharedPath = null;
+
+	private int depth;
+	private int width;
+	private long[] counters;
+
+	/** Creates an empty sketch, to be read by {@link #readFields(DataInput)}. */
+	public DocFreqSketch() {
+		this(1, COUNTERS_PER_LONG);
+	}
+
+	public DocFreqSketch(int depth, int width) {
+		if (depth < 1 || width < COUNTERS_PER_LONG || Integer.bitCount(width) != 1) {
+			throw new IllegalArgumentException("invalid sketch size " + depth + "x" + width);
+		}
+		this.depth = depth;
+		this.width = width;
+		this.counters = new long[(int) ((long) depth * width / COUNTERS_PER_LONG)];
+	}
+
+	/** Creates an empty sketch of the configured size. */
+	public static DocFreqSketch create(Configuration conf) {
+		return new DocFreqSketch(conf.getInt(DEPTH, DEFAULT_DEPTH), conf.getInt(WIDTH, DEFAULT_WIDTH));
+	}
+
+	/** Adds the sketch file into the distributed cache of given job. */
+	public static void addCacheFile(Job job, Path sketch) throws IOException {
+		final Path path = sketch.getFileSystem(job.getConfiguration()).makeQualified(sketch);
+		job.getConfiguration().set(SKETCH_PATH, path.toString());
+		try {
+			job.addCacheFile(new URI(path.toUri() + "#" + LINK_NAME));
+		} catch (URISyntaxException e) {
+			throw new IOException("invalid sketch path " + path, e);
+		}
+	}
+
+	/** Returns true, if the rare terms are pruned by the sketch. */
+	public static boolean isConfigured(Configuration conf) {
+		return conf.get(SKETCH_PATH) != null;
+	}
+
+	/** Returns the configured sketch, shared by the mappers of the JVM. */
+	public static synchronized DocFreqSketch get(Configuration conf) throws IOException {
+		final String path = conf.get(SKETCH_PATH);
+		if (shared == null || !path.equals(sharedPath)) {
+			shared = load(conf);
+			sharedPath = path;
+		}
+		return shared;
+	}
+
+	/** Loads the sketch, preferably from the local copy of the distributed cache. */
+	public static DocFreqSketch load(Configuration conf) throws IOException {
+		final File link = new File(LINK_NAME);
+		final Path path = link.exists()
+				? FileSystem.getLocal(conf).makeQualified(new Path(link.getAbsolutePath()))
+				: new Path(conf.get(SKETCH_PATH));
+
+		final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+		try {
+			final DocFreqSketch sketch = new DocFreqSketch();
+			if (!reader.next(NullWritable.get(), sketch)) {
+				throw new IOException("empty sketch file " + path);
+			}
+			return sketch;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Counts one more document containing the term. */
+	public void add(char[] term, int length) {
+		final long hash = hash(term, length);
+		int min = MIN_DOC_FREQUENCY;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, get(index(hash, row)));
+		}
+		if (min == MIN_DOC_FREQUENCY) {
+			return;
+		}
+		// conservative update
+		for (int row = 0; row < depth; row++) {
+			final int index = index(hash, row);
+			if (get(index) == min) {
+				set(index, min + 1);
+			}
+		}
+	}
+
+	/** Returns the estimated document frequency, at most the minimal document frequency. */
+	public int estimate(char[] term, int length) {
+		final long hash = hash(term, length);
+		int min = MIN_DOC_FREQUENCY;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, get(index(hash, row)));
+		}
+		return min;
+	}
+
+	/** Returns true, if the term is certainly pruned for its document frequency. */
+	public boolean isRare(char[] term, int length) {
+		return isRare(term, length, MIN_DOC_FREQUENCY);
+	}
+
+	/** Returns true, if the term is certainly pruned by given minimal document frequency. */
+	public boolean isRare(char[] term, int length, int minDocFrequency) {
+		return estimate(term, length) < Math.min(minDocFrequency, MIN_DOC_FREQUENCY);
+	}
+
+	/** Adds the counters of the other sketch of the same size. */
+	public void merge(DocFreqSketch other) {
+		if (depth != other.depth || width != other.width) {
+			throw new IllegalArgumentException("different sketch sizes");
+		}
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = saturatedAdd(counters[i], other.counters[i]);
+		}
+	}
+
+	/** Adds the 32 two-bit counters in parallel, saturating at 3. */
+	private static long saturatedAdd(long x, long y) {
+		final long x0 = x & LOW_BITS;
+		final long x1 = (x >>> 1) & LOW_BITS;
+		final long y0 = y & LOW_BITS;
+		final long y1 = (y >>> 1) & LOW_BITS;
+		final long sum0 = x0 ^ y0;
+		final long carry0 = x0 & y0;
+		final long sum1 = x1 ^ y1 ^ carry0;
+		final long carry1 = (x1 & y1) | (carry0 & (x1 ^ y1));
+		return (sum0 | carry1) | ((sum1 | carry1) << 1);
+	}
+
+	private int index(long hash, int row) {
+		// double hashing of the two halves of the hash
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32) | 1;
+		return row * width + ((h1 + row * h2) & (width - 1));
+	}
+
+	private int get(int index) {
+		return (int) (counters[index / COUNTERS_PER_LONG] >>> (2 * (index % COUNTERS_PER_LONG))) & 3;
+	}
+
+	private void set(int index, int value) {
+		final int shift = 2 * (index % COUNTERS_PER_LONG);
+		final int i = index / COUNTERS_PER_LONG;
+		counters[i] = (counters[i] & ~(3L << shift)) | ((long) value << shift);
+	}
+
+	/** FNV-1a hash of the chars, finalized by the MurmurHash3 mixer. */
+	private static long hash(char[] term, int length) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < length; i++) {
+			hash = (hash ^ term[i]) * 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(depth);
+		out.writeInt(width);
+		for (long value : counters) {
+			out.writeLong(value);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		depth = in.readInt();
+		width = in.readInt();
+		final int size = (int) ((long) depth * width / COUNTERS_PER_LONG);
+		if (counters.length != size) {
+			counters = new long[size];
+		}
+		for (int i = 0; i < size; i++) {
+			counters[i] = in.readLong();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package cz.cvut.bigdata.tfidf.sketch;
+
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyReducer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArrayMap;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Receives <b>(long, 'text')</b> pairs of a byte offsets and a texts,
+ * skipping the first line the same way as the <i>LineNumberMapper</i>.
+ * The mapper parses the documents into terms, using the same analyzer
+ * as the <i>TermFrequencyMapper</i>, and adds the terms occurring at least
+ * the minimal term frequency times in the document (i.e. kept by the
+ * <i>TermFrequencyReducer</i>) into the <i>DocFreqSketch</i>, which is
+ * emitted at the end.
+ */
+public class DocFreqSketchMapper extends Mapper<LongWritable, Text, NullWritable, DocFreqSketch> {
+
+	private TermAnalyzer analyzer;
+
+	private final CharArrayMap<int[]> termCounts = new CharArrayMap<int[]>(Version.LUCENE_47, 1024, false);
+
+	private DocFreqSketch sketch;
+	private int minTermFrequency;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		analyzer = TermAnalyzer.get(context.getConfiguration());
+		sketch = DocFreqSketch.create(context.getConfiguration());
+		minTermFrequency = context.getConfiguration().getInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY);
+	}
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		if (key.get() == 0L) {
+			// skip the first line
+			return;
+		}
+
+		TokenStream tokenStream = null;
+		try {
+			tokenStream = analyzer.tokenStream("word", value.toString());
+			tokenStream.reset();
+
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				count(termAttribute.buffer(), termAttribute.length());
+			}
+		} finally {
+			if (tokenStream != null) {
+				try {
+					tokenStream.end();
+				} finally {
+					tokenStream.close();
+				}
+			}
+		}
+
+		// add the terms of the minimal term frequency
+		final CharArrayMap<int[]>.EntryIterator entries = termCounts.entrySet().iterator();
+		while (entries.hasNext()) {
+			final char[] term = entries.nextKey();
+			if (entries.currentValue()[0] >= minTermFrequency) {
+				sketch.add(term, term.length);
+			}
+		}
+		termCounts.clear();
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.write(NullWritable.get(), sketch);
+	}
+
+	/** Counts the term occurrence in the document. */
+	private void count(char[] term, int length) {
+		final int[] count = termCounts.get(term, 0, length);
+		if (count != null) {
+			count[0]++;
+		} else {
+			termCounts.put(Arrays.copyOf(term, length), new int[] {1});
+		}
+	}
+}
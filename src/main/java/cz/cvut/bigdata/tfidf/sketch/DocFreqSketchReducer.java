@@ -0,0 +1,26 @@
+package cz.cvut.bigdata.tfidf.sketch;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(null, list[sketch,...])</b> the sketches of the mappers
+ * and emits the single <i>DocFreqSketch</i> merging all of them.
+ */
+public class DocFreqSketchReducer extends Reducer<NullWritable, DocFreqSketch, NullWritable, DocFreqSketch> {
+
+	@Override
+	protected void reduce(NullWritable key, Iterable<DocFreqSketch> values, Context context) throws IOException, InterruptedException {
+		DocFreqSketch sketch = null;
+		for (DocFreqSketch value : values) {
+			if (sketch == null) {
+				// the values are reused, thus merge them into an empty sketch
+				sketch = DocFreqSketch.create(context.getConfiguration());
+			}
+			sketch.merge(value);
+		}
+		context.write(key, sketch);
+	}
+}
@@ -0,0 +1,94 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import org.apache.lucene.analysis.CharFilter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Lucene <i>CharFilter</i> removing HTML tags and other special chars,
+ * it replaces every tag <b>&lt;...&gt;</b> (not spanning a line break)
+ * and every char from <b>.,!?:;_'"</b> by a space. It is equivalent
+ * to the following, but without the regular expressions:
+ * <pre>
+ *     text.replaceAll("&lt;(.*?)&gt;", " ").replaceAll("[.,!?:;_'\"]", " ")
+ * </pre>
+ * The offsets are not corrected, since they are not used.
+ */
+public class MarkupCharFilter extends CharFilter {
+
+	private char[] buffer = new char[1024];
+	private int length = -1;
+	private int position = 0;
+
+	public MarkupCharFilter(Reader input) {
+		super(input);
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (length < 0) {
+			fill();
+		}
+		if (position >= length) {
+			return -1;
+		}
+		final int count = Math.min(len, length - position);
+		System.arraycopy(buffer, position, cbuf, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	protected int correct(int currentOff) {
+		return currentOff;
+	}
+
+	/** Reads the whole input and filters it in place. */
+	private void fill() throws IOException {
+		int read = 0;
+		int count;
+		while ((count = input.read(buffer, read, buffer.length - read)) != -1) {
+			read += count;
+			if (read == buffer.length) {
+				final char[] newBuffer = new char[2 * buffer.length];
+				System.arraycopy(buffer, 0, newBuffer, 0, read);
+				buffer = newBuffer;
+			}
+		}
+
+		// no closing '>' (on the same line) before this position
+		int noTagEnd = 0;
+		length = 0;
+		for (int i = 0; i < read; i++) {
+			final char c = buffer[i];
+			if (c == '<' && i >= noTagEnd) {
+				// find the closing '>' of the tag
+				int end = i + 1;
+				while (end < read && buffer[end] != '>' && !isLineTerminator(buffer[end])) {
+					end++;
+				}
+				if (end < read && buffer[end] == '>') {
+					buffer[length++] = ' ';
+					i = end;
+					continue;
+				}
+				noTagEnd = end;
+			}
+			buffer[length++] = isSpecial(c) ? ' ' : c;
+		}
+	}
+
+	private static boolean isSpecial(char c) {
+		switch (c) {
+			case '.': case ',': case '!': case '?': case ':': case ';': case '_': case '\'': case '"':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+}
@@ -0,0 +1,47 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import cz.cvut.bigdata.tfidf.lines.LineOffsets;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Extension of the <i>TermFrequencyMapper</i> reading the input documents
+ * directly, i.e. it receives <b>(long, 'text')</b> pairs of a byte offsets
+ * and a texts. The documents are numbered the same way as by the
+ * <i>SplitLineNumberMapper</i>, from the line number offset of the input
+ * split. The mapper of the first split emits the special ('_', N) pair.
+ */
+public class SplitTermFrequencyMapper extends TermFrequencyMapper {
+
+	private int lineCounter;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		super.setup(context);
+
+		final LineOffsets offsets = LineOffsets.load(context.getConfiguration());
+		final FileSplit split = (FileSplit) context.getInputSplit();
+		lineCounter = offsets.getOffset(split) + 1;
+
+		if (offsets.getIndex(split) == 0) {
+			writeNumberOfDocuments(offsets.getNumberOfLines(), context);
+		}
+	}
+
+	@Override
+	public void map(Writable key, Text value, Context context) throws IOException, InterruptedException {
+		if (((LongWritable) key).get() == 0L) {
+			// skip the first line
+			return;
+		}
+
+		mapDocument(lineCounter, value.toString(), context);
+
+		// increment line counter
+		lineCounter++;
+	}
+}
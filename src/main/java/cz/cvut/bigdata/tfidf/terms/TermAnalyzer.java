@@ -0,0 +1,166 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.StopFilter;
+import org.apache.lucene.analysis.cz.CzechAnalyzer;
+import org.apache.lucene.analysis.cz.CzechStemFilter;
+import org.apache.lucene.analysis.de.GermanAnalyzer;
+import org.apache.lucene.analysis.de.GermanLightStemFilter;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.en.PorterStemFilter;
+import org.apache.lucene.analysis.standard.StandardFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.analysis.util.WordlistLoader;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lucene analyzer used for parsing of terms, it extends the chain
+ * of the Lucene Czech analyzer by the <i>MarkupCharFilter</i> and
+ * the <i>TermFilter</i>:
+ * <pre>
+ *     markup char filter > standard filter > lower case filter >
+ *     stop filter > czech stem filter > term filter
+ * </pre>
+ * The chain is configurable, i.e. the language of the stop words and
+ * of the stemmer (czech, english, german or none), the stemming, the
+ * stop words (the default ones of the language, none or a file with one
+ * word per line), the markup stripping and the minimal term length.
+ * <p/>
+ * The configured analyzers are shared by all the tasks of the JVM, see
+ * {@link #get(Configuration)}, and since the analyzer reuses the token
+ * stream components per thread, they can be shared by the threads too.
+ */
+public class TermAnalyzer extends Analyzer {
+
+	/** Language of the stop words and the stemmer. */
+	public static final String LANGUAGE = "tfidf.analyzer.language";
+	/** Enables the stemming. */
+	public static final String STEMMING = "tfidf.analyzer.stemming";
+	/** Stop words, either 'default', 'none' or a path of the stop words file. */
+	public static final String STOP_WORDS = "tfidf.analyzer.stop-words";
+	/** Enables the stripping of the markup and the special chars. */
+	public static final String MARKUP = "tfidf.analyzer.markup";
+	/** Minimal length of the terms. */
+	public static final String MIN_LENGTH = "tfidf.analyzer.min-length";
+
+	public static final String DEFAULT_LANGUAGE = "czech";
+	public static final String DEFAULT_STOP_WORDS = "default";
+	public static final int DEFAULT_MIN_LENGTH = 2;
+
+	// the analyzers of the JVM by their settings
+	private static final Map<String, TermAnalyzer> analyzers = new HashMap<String, TermAnalyzer>();
+
+	private final Version matchVersion;
+	private final String language;
+	private final boolean stemming;
+	private final CharArraySet stopWords;
+	private final boolean markup;
+	private final int minLength;
+
+	/** Creates the default analyzer. */
+	public TermAnalyzer(Version matchVersion) {
+		this(matchVersion, DEFAULT_LANGUAGE, true, CzechAnalyzer.getDefaultStopSet(), true, DEFAULT_MIN_LENGTH);
+	}
+
+	public TermAnalyzer(Version matchVersion, String language, boolean stemming, CharArraySet stopWords, boolean markup, int minLength) {
+		if (!"czech".equals(language) && !"english".equals(language) && !"german".equals(language) && !"none".equals(language)) {
+			throw new IllegalArgumentException("unsupported language " + language);
+		}
+		this.matchVersion = matchVersion;
+		this.language = language;
+		this.stemming = stemming;
+		this.stopWords = stopWords;
+		this.markup = markup;
+		this.minLength = minLength;
+	}
+
+	/** Returns the default analyzer, shared by all the tasks of the JVM. */
+	public static TermAnalyzer getDefault() {
+		try {
+			return get(new Configuration(false));
+		} catch (IOException e) {
+			// the default stop words are not loaded from a file
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Returns the configured analyzer, shared by all the tasks of the JVM. */
+	public static synchronized TermAnalyzer get(Configuration conf) throws IOException {
+		final String language = conf.get(LANGUAGE, DEFAULT_LANGUAGE);
+		final boolean stemming = conf.getBoolean(STEMMING, true);
+		final String stopWords = conf.get(STOP_WORDS, DEFAULT_STOP_WORDS);
+		final boolean markup = conf.getBoolean(MARKUP, true);
+		final int minLength = conf.getInt(MIN_LENGTH, DEFAULT_MIN_LENGTH);
+
+		final String key = language + '|' + stemming + '|' + stopWords + '|' + markup + '|' + minLength;
+		TermAnalyzer analyzer = analyzers.get(key);
+		if (analyzer == null) {
+			analyzer = new TermAnalyzer(Version.LUCENE_47, language, stemming, loadStopWords(conf, language, stopWords), markup, minLength);
+			analyzers.put(key, analyzer);
+		}
+		return analyzer;
+	}
+
+	/** Loads the stop words of the language, or from the file. */
+	private static CharArraySet loadStopWords(Configuration conf, String language, String stopWords) throws IOException {
+		if ("none".equals(stopWords)) {
+			return CharArraySet.EMPTY_SET;
+		} else if (DEFAULT_STOP_WORDS.equals(stopWords)) {
+			if ("czech".equals(language)) {
+				return CzechAnalyzer.getDefaultStopSet();
+			} else if ("english".equals(language)) {
+				return EnglishAnalyzer.getDefaultStopSet();
+			} else if ("german".equals(language)) {
+				return GermanAnalyzer.getDefaultStopSet();
+			}
+			return CharArraySet.EMPTY_SET;
+		}
+
+		final Path path = new Path(stopWords);
+		final Reader reader = new InputStreamReader(path.getFileSystem(conf).open(path), "UTF-8");
+		try {
+			return CharArraySet.unmodifiableSet(WordlistLoader.getWordSet(reader, "#", Version.LUCENE_47));
+		} finally {
+			IOUtils.closeStream(reader);
+		}
+	}
+
+	@Override
+	protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
+		final Tokenizer source = new StandardTokenizer(matchVersion, reader);
+		TokenStream result = new StandardFilter(matchVersion, source);
+		result = new LowerCaseFilter(matchVersion, result);
+		if (!stopWords.isEmpty()) {
+			result = new StopFilter(matchVersion, result, stopWords);
+		}
+		if (stemming) {
+			if ("czech".equals(language)) {
+				result = new CzechStemFilter(result);
+			} else if ("english".equals(language)) {
+				result = new PorterStemFilter(result);
+			} else if ("german".equals(language)) {
+				result = new GermanLightStemFilter(result);
+			}
+		}
+		result = new TermFilter(matchVersion, result, minLength);
+		return new TokenStreamComponents(source, result);
+	}
+
+	@Override
+	protected Reader initReader(String fieldName, Reader reader) {
+		return markup ? new MarkupCharFilter(reader) : reader;
+	}
+}
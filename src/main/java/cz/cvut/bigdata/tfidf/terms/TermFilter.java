@@ -0,0 +1,74 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.FilteringTokenFilter;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+
+/**
+ * Lucene <i>TokenFilter</i> excluding short terms (single characters by
+ * default) and terms containing digits. It works directly on the term
+ * attribute buffer. The term '_' is excluded as well, even when the markup
+ * is not stripped, since it is the special key of the number of documents,
+ * as are the keys '_' + digits of the <i>InverseDocFrequencyPartitioner</i>.
+ * The excluded terms are counted, until the filter is reset.
+ */
+public final class TermFilter extends FilteringTokenFilter {
+
+	private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+
+	private int shortTerms = 0;
+	private int digitTerms = 0;
+
+	private final int minLength;
+
+	public TermFilter(Version version, TokenStream input) {
+		this(version, input, 2);
+	}
+
+	public TermFilter(Version version, TokenStream input, int minLength) {
+		super(version, input);
+		this.minLength = minLength;
+	}
+
+	@Override
+	protected boolean accept() {
+		final int length = termAttribute.length();
+		if (length < minLength) {
+			shortTerms++;
+			return false;
+		}
+		final char[] buffer = termAttribute.buffer();
+		if (length == 1 && buffer[0] == '_') {
+			// the key of the number of documents
+			shortTerms++;
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] >= '0' && buffer[i] <= '9') {
+				digitTerms++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		shortTerms = 0;
+		digitTerms = 0;
+	}
+
+	/** Returns the number of terms excluded for being too short. */
+	public int getShortTerms() {
+		return shortTerms;
+	}
+
+	/** Returns the number of terms excluded for containing digits. */
+	public int getDigitTerms() {
+		return digitTerms;
+	}
+}
@@ -0,0 +1,30 @@
+package cz.cvut.bigdata.tfidf.terms;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(termDoc, list[1,1,...,1])</b> on the map side and
+ * emits the partial sum <b>(termDoc, tf)</b>, the termDoc is either
+ * a <i>TermDocWritable</i> or a <i>TermIdDocWritable</i>. Used when the in-mapper
+ * combining of the <i>TermFrequencyMapper</i> is disabled.
+ */
+public class TermFrequencyCombiner extends Reducer<Writable, IntWritable, Writable, IntWritable> {
+
+	private final IntWritable frequency = new IntWritable();
+
+	@Override
+	public void reduce(Writable key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
+		// sum-up term occurrences
+		int sum = 0;
+		for (IntWritable value : values) {
+			sum += value.get();
+		}
+
+		frequency.set(sum);
+		context.write(key, frequency);
+	}
+}
@@ -1,60 +1,182 @@
 package cz.cvut.bigdata.tfidf.terms;
 
 import cz.cvut.bigdata.tfidf.TermDocWritable;
+import cz.cvut.bigdata.tfidf.TermIdDocWritable;
+import cz.cvut.bigdata.tfidf.dictionary.TermDictionary;
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import cz.cvut.bigdata.tfidf.scoring.DocStats;
+import cz.cvut.bigdata.tfidf.scoring.DocStatsWritable;
+import cz.cvut.bigdata.tfidf.sketch.DocFreqSketch;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.cz.CzechAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArrayMap;
 import org.apache.lucene.util.Version;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Receives <b>(line, 'text')</b> corresponding to the line
- * number and the document content. The mapper then parses
+ * number and the document content, the line number is either
+ * an <i>IntWritable</i> or its textual form. The mapper then parses
  * the text to get terms, using <i>Apache Lucene</i> analyzer,
  * then it will emit <b>(termDoc, 1)</b> pair for each term.
  * Wen the zero key value, indicating the number of lines, is
- * received then the mapper emits the special ('_', 0) pair.
+ * received then the mapper emits the special ('_', N) pair.
+ * <p/>
+ * The terms are emitted directly from the Lucene token stream.
+ * When the in-mapper combining is enabled, the term occurrences
+ * are counted in a char array map and the mapper emits <b>(termDoc, tf)</b>
+ * pair for each distinct term of the document instead. The map is
+ * flushed at the end of each document or sooner, when its estimated
+ * size exceeds the configured buffer size. The counts of the whole
+ * document are exact, so the terms below the minimal term frequency are
+ * dropped already by the mapper, instead of the <i>TermFrequencyReducer</i>.
+ * <p/>
+ * When the <i>TermDictionary</i> is configured, the terms are emitted as
+ * <b>(termIdDoc, tf)</b> pairs instead, and the terms missing in the
+ * dictionary are dropped.
+ * <p/>
+ * When the <i>DocFreqSketch</i> is configured, the tokens of the terms
+ * certainly pruned for their low document frequency are dropped.
+ * <p/>
+ * When the <i>DocStats</i> are configured, the mapper writes the number
+ * of tokens and the maximal term frequency of each document into the
+ * 'docs' named output. The terms are then counted by the in-mapper
+ * combining, and the maximal frequency is exact unless the buffer is
+ * flushed in the middle of the document.
+ * <p/>
+ * The produced and excluded tokens and the time spent in the analyzer
+ * are reported by the {@link Tokens} counters.
+ * <p/>
+ * The mapper can be run by the <i>MultithreadedMapper</i>, as the lines
+ * are numbered by their keys. Each thread has its own mapper instance
+ * with its own writables and buffers (the configured buffer size is then
+ * divided by the number of threads), while the analyzer, the dictionary
+ * and the sketch are shared by the threads.
  */
-public class TermFrequencyMapper extends Mapper<Text, Text, TermDocWritable, IntWritable> {
+public class TermFrequencyMapper extends Mapper<Writable, Text, Writable, IntWritable> {
 
-	// Lucene Czech analyzer:
-	//  standard filter > lower case filter > stop filter > czech stem filter
-	private final CzechAnalyzer analyzer = new CzechAnalyzer(Version.LUCENE_47);
+	/** Enables the in-mapper combining of term occurrences. */
+	public static final String IN_MAPPER_COMBINING = "tfidf.terms.in-mapper";
+	/** Size of the in-mapper combining buffer (in bytes). */
+	public static final String IN_MAPPER_BUFFER_SIZE = "tfidf.terms.in-mapper.buffer";
+
+	public static final int DEFAULT_BUFFER_SIZE = 16 * 1024 * 1024;
+
+	/** Counters of the analyzed tokens. */
+	public static enum Tokens {
+		PRODUCED, FILTERED_SHORT, FILTERED_DIGITS, PRUNED_BY_SKETCH, PRUNED_BY_MIN_TF, ANALYZER_MILLIS
+	}
+
+	// rough estimate of the hash map entry size (entry, key and value objects)
+	private static final int ENTRY_OVERHEAD = 96;
+
+	// Lucene analyzer, shared by the tasks of the JVM
+	private TermAnalyzer analyzer;
 
 	private final TermDocWritable termDoc = new TermDocWritable();
+	private final TermIdDocWritable termIdDoc = new TermIdDocWritable();
 	private final IntWritable one = new IntWritable(1);
+	private final IntWritable frequency = new IntWritable();
+
+	private final CharArrayMap<int[]> termCounts = new CharArrayMap<int[]>(Version.LUCENE_47, 1024, false);
+
+	private boolean inMapperCombining = false;
+	private long bufferSize = DEFAULT_BUFFER_SIZE;
+	private long bufferUsed = 0L;
+	// true, when the counts of the current document were flushed in the middle
+	private boolean partialCounts = false;
+
+	private int minTermFrequency = TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY;
+	private int minDocFrequency = InverseDocFrequencyReducer.DEFAULT_MIN_DOC_FREQUENCY;
+
+	private TermDictionary dictionary = null;
+	private DocFreqSketch sketch = null;
+
+	// statistics of the documents
+	private MultipleOutputs<Writable, IntWritable> statsOutputs = null;
+	private final IntWritable statsDoc = new IntWritable();
+	private final DocStatsWritable stats = new DocStatsWritable();
+	private int maxFrequency = 0;
+
+	// counted locally, reported on clean-up
+	private long producedTokens = 0L;
+	private long shortTokens = 0L;
+	private long digitTokens = 0L;
+	private long prunedTokens = 0L;
+	private long rareTokens = 0L;
+	private long analyzerTime = 0L;
+
+	public TermFrequencyMapper() {
+		this(TermAnalyzer.getDefault());
+	}
+
+	/** Creates the mapper parsing the terms by given analyzer (until set up). */
+	public TermFrequencyMapper(TermAnalyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		final Configuration conf = context.getConfiguration();
+		analyzer = TermAnalyzer.get(conf);
+		inMapperCombining = conf.getBoolean(IN_MAPPER_COMBINING, false);
+		bufferSize = conf.getLong(IN_MAPPER_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+		minTermFrequency = conf.getInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, TermFrequencyReducer.DEFAULT_MIN_TERM_FREQUENCY);
+		minDocFrequency = conf.getInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY, InverseDocFrequencyReducer.DEFAULT_MIN_DOC_FREQUENCY);
+		if (TermDictionary.isConfigured(conf)) {
+			dictionary = TermDictionary.get(conf);
+		}
+		if (DocFreqSketch.isConfigured(conf)) {
+			sketch = DocFreqSketch.get(conf);
+		}
+		if (DocStats.isConfigured(conf)) {
+			statsOutputs = new MultipleOutputs<Writable, IntWritable>(context);
+			// the maximal term frequencies are given by the counts
+			inMapperCombining = true;
+		}
+	}
 
 	@Override
-	public void map(Text key, Text value, Context context) throws IOException, InterruptedException {
-		final int line = Integer.parseInt(key.toString());
+	public void map(Writable key, Text value, Context context) throws IOException, InterruptedException {
+		final int line = (key instanceof IntWritable) ? ((IntWritable) key).get() : Integer.parseInt(key.toString());
 		if (line == 0) {
-			// line zero contains the number of documents, emit ('_', 0) pair
-			termDoc.set("_", 0);
-			context.write(termDoc, new IntWritable(Integer.parseInt(value.toString())));
+			// line zero contains the number of documents
+			writeNumberOfDocuments(Integer.parseInt(value.toString()), context);
 			return;
 		}
 
-		for (String term : parseTerms(value.toString())) {
-			// emit (termDoc, 1) pair
-			termDoc.set(term, line);
-			context.write(termDoc, one);
-		}
+		mapDocument(line, value.toString(), context);
 	}
 
-	/** Parsing of terms from the document using Lucene. */
-	protected List<String> parseTerms(String text) throws IOException {
-		final List<String> result = new LinkedList<String>();
-
-		// remove HTML tags and other special chars
-		text = text.replaceAll("<(.*?)>", " ").replaceAll("[.,!?:;_'\"]", " ");
+	/**
+	 * Emits the special ('_', N) pair with the number of documents N,
+	 * the documents are numbered from 1 to N.
+	 */
+	protected void writeNumberOfDocuments(int numberOfDocuments, Context context) throws IOException, InterruptedException {
+		if (dictionary != null) {
+			termIdDoc.set(TermIdDocWritable.NUMBER_OF_DOCUMENTS, numberOfDocuments);
+			context.write(termIdDoc, new IntWritable(numberOfDocuments));
+		} else {
+			termDoc.set("_", numberOfDocuments);
+			context.write(termDoc, new IntWritable(numberOfDocuments));
+		}
+	}
 
+	/** Parses terms of the document and emits the term-document pairs. */
+	protected void mapDocument(int line, String text, Context context) throws IOException, InterruptedException {
 		TokenStream tokenStream = null;
+		final long firstToken = producedTokens;
+		long start = System.nanoTime();
 		try {
 			// instantiate and reset the token stream
 			tokenStream = analyzer.tokenStream("word", text);
@@ -64,11 +186,127 @@ public class TermFrequencyMapper extends Mapper<Text, Text, TermDocWritable, Int
 			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
 			// process all tokens
 			while (tokenStream.incrementToken()) {
-				String term = termAttribute.toString();
-				// exclude single characters and numbers
-				if (term.length() > 1 && !term.matches("^(.*?)[0-9](.*?)$")) {
-					result.add(term);
+				analyzerTime += System.nanoTime() - start;
+				producedTokens++;
+				if (inMapperCombining) {
+					// the rare terms are pruned when flushed
+					count(termAttribute.buffer(), termAttribute.length(), line, context);
+				} else if (sketch != null && sketch.isRare(termAttribute.buffer(), termAttribute.length(), minDocFrequency)) {
+					// certainly pruned by the InverseDocFrequency job
+					prunedTokens++;
+				} else {
+					// emit (termDoc, 1) pair
+					write(termAttribute.buffer(), termAttribute.length(), line, one, context);
 				}
+				start = System.nanoTime();
+			}
+			analyzerTime += System.nanoTime() - start;
+
+			if (tokenStream instanceof TermFilter) {
+				shortTokens += ((TermFilter) tokenStream).getShortTerms();
+				digitTokens += ((TermFilter) tokenStream).getDigitTerms();
+			}
+		} finally {
+			// clean-up
+			finish(tokenStream);
+		}
+
+		if (inMapperCombining) {
+			flush(line, !partialCounts, context);
+			partialCounts = false;
+		}
+		if (statsOutputs != null) {
+			statsDoc.set(line);
+			stats.set((int) (producedTokens - firstToken), maxFrequency);
+			statsOutputs.write(DocStats.STATS_OUTPUT, statsDoc, stats);
+			maxFrequency = 0;
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(Tokens.PRODUCED).increment(producedTokens);
+		context.getCounter(Tokens.FILTERED_SHORT).increment(shortTokens);
+		context.getCounter(Tokens.FILTERED_DIGITS).increment(digitTokens);
+		context.getCounter(Tokens.PRUNED_BY_SKETCH).increment(prunedTokens);
+		context.getCounter(Tokens.PRUNED_BY_MIN_TF).increment(rareTokens);
+		context.getCounter(Tokens.ANALYZER_MILLIS).increment(analyzerTime / 1000000L);
+		if (statsOutputs != null) {
+			statsOutputs.close();
+		}
+	}
+
+	/** Counts the term occurrence, flushes the counts when the buffer is full. */
+	private void count(char[] term, int length, int line, Context context) throws IOException, InterruptedException {
+		final int[] count = termCounts.get(term, 0, length);
+		if (count != null) {
+			count[0]++;
+			maxFrequency = Math.max(maxFrequency, count[0]);
+			return;
+		}
+		maxFrequency = Math.max(maxFrequency, 1);
+		termCounts.put(Arrays.copyOf(term, length), new int[] {1});
+		bufferUsed += ENTRY_OVERHEAD + 2 * length;
+		if (bufferUsed >= bufferSize) {
+			flush(line, false, context);
+			partialCounts = true;
+		}
+	}
+
+	/**
+	 * Emits <b>(termDoc, tf)</b> pairs for all the counted terms. When the
+	 * counts are complete, the terms below the minimal term frequency are dropped.
+	 */
+	private void flush(int line, boolean complete, Context context) throws IOException, InterruptedException {
+		final CharArrayMap<int[]>.EntryIterator entries = termCounts.entrySet().iterator();
+		while (entries.hasNext()) {
+			final char[] term = entries.nextKey();
+			final int count = entries.currentValue()[0];
+			if (complete && count < minTermFrequency) {
+				// certainly dropped by the TermFrequencyReducer
+				rareTokens += count;
+				continue;
+			}
+			if (sketch != null && sketch.isRare(term, term.length, minDocFrequency)) {
+				// certainly pruned by the InverseDocFrequency job
+				prunedTokens += count;
+				continue;
+			}
+			frequency.set(count);
+			write(term, term.length, line, frequency, context);
+		}
+		termCounts.clear();
+		bufferUsed = 0L;
+	}
+
+	/** Emits the term-document pair, encoded by the dictionary (if configured). */
+	private void write(char[] term, int length, int line, IntWritable frequency, Context context) throws IOException, InterruptedException {
+		if (dictionary != null) {
+			final int id = dictionary.getId(term, length);
+			if (id >= 0) {
+				termIdDoc.set(id, line);
+				context.write(termIdDoc, frequency);
+			}
+		} else {
+			termDoc.set(new String(term, 0, length), line);
+			context.write(termDoc, frequency);
+		}
+	}
+
+	/** Parsing of terms from the document using Lucene. */
+	public List<String> parseTerms(String text) throws IOException {
+		final List<String> result = new ArrayList<String>();
+
+		TokenStream tokenStream = null;
+		try {
+			// instantiate and reset the token stream
+			tokenStream = analyzer.tokenStream("word", text);
+			tokenStream.reset();
+
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			// process all tokens
+			while (tokenStream.incrementToken()) {
+				result.add(termAttribute.toString());
 			}
 		} finally {
 			// clean-up
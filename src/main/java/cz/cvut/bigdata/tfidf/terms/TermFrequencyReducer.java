@@ -1,36 +1,166 @@
 package cz.cvut.bigdata.tfidf.terms;
 
 import cz.cvut.bigdata.tfidf.TermDocWritable;
+import cz.cvut.bigdata.tfidf.TermIdDocWritable;
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import cz.cvut.bigdata.tfidf.scoring.DocStats;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import java.io.IOException;
 
 /**
  * Receives <b>(termDoc, list[1,1,...,1])</b> where the numbers
  * corresponds to the number of times the term occurred in the
- * document. The reducer simply emits the sum of those numbers,
- * i.e. the term document frequency, if it is greater than 2.
+ * document (or partial sums of them, when combined on the map
+ * side). The reducer simply emits the sum of those numbers,
+ * i.e. the term document frequency, if it is at least the minimal
+ * term frequency (3 by default). The special '_' pair with the number
+ * of documents is always emitted.
+ * <p/>
+ * The termDoc is emitted in its textual form, unless the job
+ * output key class is the <i>TermDocWritable</i> or the
+ * <i>TermIdDocWritable</i> (binary output). The dropped pairs are
+ * reported by the {@link Postings} counter.
+ * <p/>
+ * When the vocabulary of the <i>InverseDocFrequency</i> job is limited,
+ * the reducer counts the emitted documents of each term, i.e. its partial
+ * document frequency, and writes the <b>(term, df)</b> pairs into the
+ * 'dfs' named output. The pairs are sorted by the terms, so the documents
+ * of the term are received in a row and the counting is cheap.
  */
-public class TermFrequencyReducer extends Reducer<TermDocWritable, IntWritable, Text, IntWritable> {
+public class TermFrequencyReducer extends Reducer<Writable, IntWritable, Writable, IntWritable> {
+
+	/** Minimal term frequency of the emitted term-document pairs. */
+	public static final String MIN_TERM_FREQUENCY = "tfidf.terms.min-tf";
+	/** Named output of the partial document frequencies. */
+	public static final String DOC_FREQUENCIES_OUTPUT = "dfs";
+
+	public static final int DEFAULT_MIN_TERM_FREQUENCY = 3;
+
+	/** Counters of the term-document pairs. */
+	public static enum Postings {
+		DROPPED
+	}
+
+	/** Filter of the term-document pairs, skipping the named outputs of the job. */
+	public static class TermsFilter implements PathFilter {
+		@Override
+		public boolean accept(Path path) {
+			final String name = path.getName();
+			return !name.startsWith(DocStats.STATS_OUTPUT + "-") && !name.startsWith(DOC_FREQUENCIES_OUTPUT + "-");
+		}
+	}
+
+	/** Filter of the partial document frequencies, skipping the term-document pairs and the statistics. */
+	public static class DocFrequenciesFilter implements PathFilter {
+		@Override
+		public boolean accept(Path path) {
+			final String name = path.getName();
+			return !name.startsWith("part-") && !name.startsWith(DocStats.STATS_OUTPUT + "-");
+		}
+	}
 
 	private final Text termDoc = new Text();
 	private final IntWritable frequency = new IntWritable();
 
+	private boolean binaryOutput;
+	private int minTermFrequency;
+	private long dropped = 0L;
+
+	// partial document frequency of the last term
+	private MultipleOutputs<Writable, IntWritable> outputs = null;
+	private final Text term = new Text();
+	private final IntWritable termId = new IntWritable();
+	private final IntWritable docFrequency = new IntWritable();
+	private Writable lastTerm = null;
+	private String lastTermString = null;
+	private int partialDocFrequency = 0;
+
 	@Override
-	public void reduce(TermDocWritable key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
+	protected void setup(Context context) throws IOException, InterruptedException {
+		binaryOutput = !Text.class.equals(context.getOutputKeyClass());
+		minTermFrequency = context.getConfiguration().getInt(MIN_TERM_FREQUENCY, DEFAULT_MIN_TERM_FREQUENCY);
+		if (context.getConfiguration().getInt(InverseDocFrequencyReducer.MAX_VOCABULARY, 0) > 0) {
+			outputs = new MultipleOutputs<Writable, IntWritable>(context);
+		}
+	}
+
+	@Override
+	public void reduce(Writable key, Iterable<IntWritable> values, Context context) throws IOException, InterruptedException {
 		// sum-up term occurrences
 		int sum = 0;
 		for (IntWritable value : values) {
 			sum += value.get();
 		}
 
-		if (sum > 2) {
+		final boolean numberOfDocuments = isNumberOfDocuments(key);
+		if (sum >= minTermFrequency || numberOfDocuments) {
 			// emit term document frequency
-			termDoc.set(key.toString());
 			frequency.set(sum);
-			context.write(termDoc, frequency);
+			if (binaryOutput) {
+				context.write(key, frequency);
+			} else {
+				termDoc.set(key.toString());
+				context.write(termDoc, frequency);
+			}
+			if (outputs != null && !numberOfDocuments) {
+				countDocument(key);
+			}
+		} else {
+			dropped++;
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		context.getCounter(Postings.DROPPED).increment(dropped);
+		if (outputs != null) {
+			writeDocFrequency();
+			outputs.close();
+		}
+	}
+
+	/** Returns true for the special pair with the number of documents. */
+	private static boolean isNumberOfDocuments(Writable key) {
+		if (key instanceof TermIdDocWritable) {
+			return ((TermIdDocWritable) key).getTerm() == TermIdDocWritable.NUMBER_OF_DOCUMENTS;
+		}
+		return "_".equals(((TermDocWritable) key).getTerm());
+	}
+
+	/** Counts the emitted document of the term, writes the count of the previous term. */
+	private void countDocument(Writable key) throws IOException, InterruptedException {
+		if (key instanceof TermIdDocWritable) {
+			final int id = ((TermIdDocWritable) key).getTerm();
+			if (lastTerm == null || termId.get() != id) {
+				writeDocFrequency();
+				termId.set(id);
+				lastTerm = termId;
+			}
+		} else {
+			final String value = ((TermDocWritable) key).getTerm();
+			if (!value.equals(lastTermString)) {
+				writeDocFrequency();
+				term.set(value);
+				lastTerm = term;
+				lastTermString = value;
+			}
+		}
+		partialDocFrequency++;
+	}
+
+	/** Writes the partial document frequency of the last term. */
+	private void writeDocFrequency() throws IOException, InterruptedException {
+		if (partialDocFrequency > 0) {
+			docFrequency.set(partialDocFrequency);
+			outputs.write(DOC_FREQUENCIES_OUTPUT, lastTerm, docFrequency);
+			partialDocFrequency = 0;
 		}
 	}
 }
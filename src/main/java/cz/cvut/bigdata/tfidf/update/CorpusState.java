@@ -0,0 +1,243 @@
+package cz.cvut.bigdata.tfidf.update;
+
+import cz.cvut.bigdata.tfidf.TermDocWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * State of the corpus kept by the TermFrequency output, i.e. the number
+ * of documents N and the greatest document number, stored in the special
+ * <b>('_' : maxDocument, N)</b> record. The documents added by an update
+ * are numbered after the greatest document number, thus the numbers of
+ * the removed documents are never reused.
+ * <p/>
+ * The numbers of the existing documents are kept as well, in the
+ * <b>_DOCUMENTS</b> file of the output written by the update (the output
+ * of a full run numbers its documents from 1 to N). The changes of the
+ * documents are checked against them, so the number of documents stays
+ * exact, and N is the number of the existing documents.
+ */
+public class CorpusState {
+
+	/** Number of documents of the corpus. */
+	public static final String NUMBER_OF_DOCUMENTS = "tfidf.update.documents";
+	/** The greatest document number of the corpus. */
+	public static final String MAX_DOCUMENT = "tfidf.update.max-document";
+	/** Whether the TermFrequency output is binary. */
+	public static final String BINARY = "tfidf.update.binary";
+
+	/** File of the existing documents, hidden from the input formats. */
+	public static final String DOCUMENTS_FILE = "_DOCUMENTS";
+
+	private static final byte[] SEQUENCE_FILE_MAGIC = {'S', 'E', 'Q'};
+
+	private static final PathFilter PART_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			return path.getName().startsWith("part-");
+		}
+	};
+
+	private final int numberOfDocuments;
+	private final int maxDocument;
+	private final boolean binary;
+	// the existing documents, not known when loaded from the configuration
+	private BitSet documents = null;
+
+	private CorpusState(int numberOfDocuments, int maxDocument, boolean binary) {
+		this.numberOfDocuments = numberOfDocuments;
+		// the older outputs store zero, their documents are numbered from 1 to N
+		this.maxDocument = Math.max(maxDocument, numberOfDocuments);
+		this.binary = binary;
+	}
+
+	private CorpusState(BitSet documents, int maxDocument, boolean binary) {
+		this(documents.cardinality(), maxDocument, binary);
+		this.documents = documents;
+	}
+
+	public int getNumberOfDocuments() {
+		return numberOfDocuments;
+	}
+
+	public int getMaxDocument() {
+		return maxDocument;
+	}
+
+	/** Whether the TermFrequency output is stored as SequenceFiles. */
+	public boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * Returns the state after the update, which removed given documents,
+	 * added given documents (the replaced ones are both removed and added)
+	 * and reserved given number of document numbers. The removed documents
+	 * have to exist, each one removed once, otherwise the changes are
+	 * rejected, since they would corrupt the number of documents.
+	 */
+	public CorpusState update(int[] added, int[] removed, long reserved) {
+		final long max = maxDocument + reserved;
+		if (max > Integer.MAX_VALUE) {
+			throw new IllegalStateException("invalid number of documents (max " + max + ")");
+		}
+
+		final BitSet next = (BitSet) documents.clone();
+		for (int doc : removed) {
+			if (doc <= 0 || !next.get(doc)) {
+				throw new IllegalArgumentException("the removed or replaced document " + doc + " does not exist (or is changed twice)");
+			}
+			next.clear(doc);
+		}
+		for (int doc : added) {
+			if (next.get(doc)) {
+				throw new IllegalStateException("the added document " + doc + " already exists");
+			}
+			next.set(doc);
+		}
+		return new CorpusState(next, (int) max, binary);
+	}
+
+	/** Stores the state into the job configuration. */
+	public void set(Configuration conf) {
+		conf.setInt(NUMBER_OF_DOCUMENTS, numberOfDocuments);
+		conf.setInt(MAX_DOCUMENT, maxDocument);
+		conf.setBoolean(BINARY, binary);
+	}
+
+	/** Loads the state from the job configuration. */
+	public static CorpusState get(Configuration conf) {
+		return new CorpusState(conf.getInt(NUMBER_OF_DOCUMENTS, 0), conf.getInt(MAX_DOCUMENT, 0), conf.getBoolean(BINARY, false));
+	}
+
+	/**
+	 * Reads the state from the TermFrequency output directory, i.e. it
+	 * finds the special '_' record at the beginning of the sorted parts,
+	 * and the existing documents.
+	 */
+	public static CorpusState read(Configuration conf, Path terms) throws IOException {
+		final FileSystem fs = terms.getFileSystem(conf);
+		final FileStatus[] statuses = fs.listStatus(terms, PART_FILTER);
+		Arrays.sort(statuses);
+		for (FileStatus status : statuses) {
+			final CorpusState state = isSequenceFile(fs, status.getPath())
+					? readSequenceFile(conf, status.getPath())
+					: readTextFile(fs, status.getPath());
+			if (state != null) {
+				return new CorpusState(readDocuments(fs, new Path(terms, DOCUMENTS_FILE), state), state.maxDocument, state.binary);
+			}
+		}
+		throw new IOException("no number of documents in " + terms);
+	}
+
+	/** Writes the existing documents into the TermFrequency output directory, as ranges of the numbers. */
+	public void writeDocuments(Configuration conf, Path terms) throws IOException {
+		final Path path = new Path(terms, DOCUMENTS_FILE);
+		final FSDataOutputStream out = path.getFileSystem(conf).create(path, true);
+		try {
+			for (int start = documents.nextSetBit(0); start >= 0; start = documents.nextSetBit(start)) {
+				final int end = documents.nextClearBit(start);
+				out.writeInt(start);
+				out.writeInt(end);
+				start = end;
+			}
+		} finally {
+			IOUtils.closeStream(out);
+		}
+	}
+
+	/** Reads the existing documents, the documents 1 to N of a full run when the file is missing. */
+	private static BitSet readDocuments(FileSystem fs, Path path, CorpusState state) throws IOException {
+		final BitSet documents = new BitSet(state.maxDocument + 1);
+		if (!fs.exists(path)) {
+			documents.set(1, state.numberOfDocuments + 1);
+			return documents;
+		}
+
+		final FSDataInputStream in = fs.open(path);
+		try {
+			final long length = fs.getFileStatus(path).getLen();
+			for (long i = 0L; i < length; i += 8L) {
+				documents.set(in.readInt(), in.readInt());
+			}
+		} finally {
+			IOUtils.closeStream(in);
+		}
+		if (documents.cardinality() != state.numberOfDocuments) {
+			throw new IOException("the number of documents " + state.numberOfDocuments + " does not match " + path);
+		}
+		return documents;
+	}
+
+	private static boolean isSequenceFile(FileSystem fs, Path path) throws IOException {
+		final FSDataInputStream in = fs.open(path);
+		try {
+			final byte[] magic = new byte[SEQUENCE_FILE_MAGIC.length];
+			in.readFully(magic);
+			return Arrays.equals(magic, SEQUENCE_FILE_MAGIC);
+		} catch (IOException e) {
+			// shorter than the magic
+			return false;
+		} finally {
+			IOUtils.closeStream(in);
+		}
+	}
+
+	private static CorpusState readSequenceFile(Configuration conf, Path path) throws IOException {
+		final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+		try {
+			if (!TermDocWritable.class.equals(reader.getKeyClass())) {
+				throw new IOException("unsupported key " + reader.getKeyClass().getName() + " in " + path);
+			}
+			final TermDocWritable key = new TermDocWritable();
+			final Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+			while (reader.next(key, value)) {
+				final int compare = key.getTerm().compareTo("_");
+				if (compare == 0) {
+					return new CorpusState(Integer.parseInt(value.toString()), key.getDoc(), true);
+				} else if (compare > 0) {
+					break;
+				}
+			}
+			return null;
+		} finally {
+			IOUtils.closeStream(reader);
+		}
+	}
+
+	private static CorpusState readTextFile(FileSystem fs, Path path) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+		try {
+			final TermDocWritable key = new TermDocWritable();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final int tab = line.indexOf('\t');
+				key.parse(line.substring(0, tab));
+				final int compare = key.getTerm().compareTo("_");
+				if (compare == 0) {
+					return new CorpusState(Integer.parseInt(line.substring(tab + 1)), key.getDoc(), false);
+				} else if (compare > 0) {
+					break;
+				}
+			}
+			return null;
+		} finally {
+			IOUtils.closeStream(reader);
+		}
+	}
+}
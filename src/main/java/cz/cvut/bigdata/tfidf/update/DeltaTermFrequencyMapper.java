@@ -0,0 +1,161 @@
+package cz.cvut.bigdata.tfidf.update;
+
+import cz.cvut.bigdata.tfidf.lines.LineOffsets;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyMapper;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Extension of the <i>TermFrequencyMapper</i> reading the changes of the
+ * corpus, i.e. it receives <b>(long, 'change')</b> pairs of a byte offsets
+ * and the changed documents. The first line of the file is skipped, the
+ * other lines are of the following form:
+ * <pre>
+ *     +	text          adds new document
+ *     -	doc           removes the document
+ *     =	doc	text      replaces the text of the document
+ * </pre>
+ * The added documents are numbered after the greatest document number
+ * of the corpus, by their line number the same way as by the
+ * <i>SplitTermFrequencyMapper</i>. The removed and replaced documents are
+ * written into the 'removed' named output, so they can be dropped from the
+ * previous TermFrequency output. The added and replaced documents are
+ * written into the 'added' named output, so the existing documents of the
+ * <i>CorpusState</i> can be updated.
+ */
+public class DeltaTermFrequencyMapper extends TermFrequencyMapper {
+
+	/** Named output of the removed (and replaced) documents. */
+	public static final String REMOVED_OUTPUT = "removed";
+	/** Named output of the added (and replaced) documents. */
+	public static final String ADDED_OUTPUT = "added";
+
+	/** Counters of the document changes. */
+	public static enum Changes {
+		ADDED, REMOVED, REPLACED, INVALID
+	}
+
+	private final IntWritable changedDoc = new IntWritable();
+
+	private MultipleOutputs<Writable, IntWritable> outputs;
+	private int maxDocument;
+	private int lineCounter;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		super.setup(context);
+
+		final LineOffsets offsets = LineOffsets.load(context.getConfiguration());
+		lineCounter = offsets.getOffset((FileSplit) context.getInputSplit()) + 1;
+		maxDocument = CorpusState.get(context.getConfiguration()).getMaxDocument();
+		outputs = new MultipleOutputs<Writable, IntWritable>(context);
+	}
+
+	@Override
+	public void map(Writable key, Text value, Context context) throws IOException, InterruptedException {
+		if (((LongWritable) key).get() == 0L) {
+			// skip the first line
+			return;
+		}
+
+		mapChange(value.toString(), context);
+
+		// increment line counter
+		lineCounter++;
+	}
+
+	/** Parses the change of the document and processes it. */
+	private void mapChange(String line, Context context) throws IOException, InterruptedException {
+		if (line.length() < 2 || line.charAt(1) != '\t') {
+			context.getCounter(Changes.INVALID).increment(1L);
+			return;
+		}
+
+		try {
+			switch (line.charAt(0)) {
+				case '+':
+					mapDocument(maxDocument + lineCounter, line.substring(2), context);
+					write(ADDED_OUTPUT, maxDocument + lineCounter);
+					context.getCounter(Changes.ADDED).increment(1L);
+					break;
+				case '-':
+					write(REMOVED_OUTPUT, Integer.parseInt(line.substring(2).trim()));
+					context.getCounter(Changes.REMOVED).increment(1L);
+					break;
+				case '=':
+					final int tab = line.indexOf('\t', 2);
+					final int doc = Integer.parseInt((tab < 0) ? line.substring(2).trim() : line.substring(2, tab).trim());
+					write(REMOVED_OUTPUT, doc);
+					if (tab >= 0) {
+						mapDocument(doc, line.substring(tab + 1), context);
+					}
+					write(ADDED_OUTPUT, doc);
+					context.getCounter(Changes.REPLACED).increment(1L);
+					break;
+				default:
+					context.getCounter(Changes.INVALID).increment(1L);
+			}
+		} catch (NumberFormatException e) {
+			context.getCounter(Changes.INVALID).increment(1L);
+		}
+	}
+
+	/** Writes the changed document into the named output. */
+	private void write(String output, int doc) throws IOException, InterruptedException {
+		changedDoc.set(doc);
+		outputs.write(output, changedDoc, NullWritable.get());
+	}
+
+	/** Reads the sorted documents of the named output from the delta TermFrequency output. */
+	public static int[] readDocuments(Configuration conf, Path delta, final String output) throws IOException {
+		final FileSystem fs = delta.getFileSystem(conf);
+		final FileStatus[] statuses = fs.listStatus(delta, new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				return path.getName().startsWith(output + "-");
+			}
+		});
+
+		int[] docs = new int[1024];
+		int size = 0;
+		final IntWritable doc = new IntWritable();
+		for (FileStatus status : statuses) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				while (reader.next(doc, NullWritable.get())) {
+					if (size == docs.length) {
+						docs = Arrays.copyOf(docs, 2 * size);
+					}
+					docs[size++] = doc.get();
+				}
+			} finally {
+				IOUtils.closeStream(reader);
+			}
+		}
+
+		docs = Arrays.copyOf(docs, size);
+		Arrays.sort(docs);
+		return docs;
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		super.cleanup(context);
+		outputs.close();
+	}
+}
@@ -0,0 +1,68 @@
+package cz.cvut.bigdata.tfidf.update;
+
+import cz.cvut.bigdata.tfidf.TermDocWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Receives <b>(termDoc, frequency)</b> pairs of the previous TermFrequency
+ * output and of the delta TermFrequency output (either binary or textual)
+ * and merges them into the new TermFrequency output. The previous pairs
+ * of the removed (and replaced) documents are dropped and the special '_'
+ * pair is replaced by the one with the updated <i>CorpusState</i>. The
+ * pairs of the delta are emitted as they are.
+ */
+public class TermStateMapper extends Mapper<Writable, Writable, Writable, Writable> {
+
+	/** Directory with the output of the delta TermFrequency job. */
+	public static final String DELTA_PATH = "tfidf.update.delta";
+
+	private final TermDocWritable termDoc = new TermDocWritable();
+
+	private CorpusState state;
+	private boolean delta;
+	private int[] removed;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		final Configuration conf = context.getConfiguration();
+		state = CorpusState.get(conf);
+
+		final Path deltaPath = new Path(conf.get(DELTA_PATH));
+		final FileSystem fs = deltaPath.getFileSystem(conf);
+		final Path splitDir = ((FileSplit) context.getInputSplit()).getPath().getParent();
+		delta = fs.makeQualified(deltaPath).equals(fs.makeQualified(splitDir));
+		removed = delta ? new int[0] : DeltaTermFrequencyMapper.readDocuments(conf, deltaPath, DeltaTermFrequencyMapper.REMOVED_OUTPUT);
+	}
+
+	@Override
+	protected void map(Writable key, Writable value, Context context) throws IOException, InterruptedException {
+		final TermDocWritable termDoc = (key instanceof TermDocWritable) ? (TermDocWritable) key : this.termDoc.parse(key.toString());
+
+		if (termDoc.getTerm().equals("_")) {
+			// replace the number of documents
+			termDoc.setDoc(state.getMaxDocument());
+			if (key instanceof TermDocWritable) {
+				context.write(termDoc, new IntWritable(state.getNumberOfDocuments()));
+			} else {
+				context.write(new Text(termDoc.toString()), new Text(String.valueOf(state.getNumberOfDocuments())));
+			}
+			return;
+		}
+
+		if (!delta && Arrays.binarySearch(removed, termDoc.getDoc()) >= 0) {
+			// drop the removed document
+			return;
+		}
+		context.write(key, value);
+	}
+}
@@ -0,0 +1,57 @@
+package cz.cvut.bigdata.tfidf.vectors;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing the L2 norm of
+ * a document vector and its prefix, i.e. the order of the first indexed
+ * term and the number of the preceding (not indexed) terms.
+ */
+public class DocNormWritable implements Writable {
+
+	private double norm = 0.0;
+	private long cut = 0L;
+	private int prefixLength = 0;
+
+	public void set(double norm, long cut, int prefixLength) {
+		this.norm = norm;
+		this.cut = cut;
+		this.prefixLength = prefixLength;
+	}
+
+	public double getNorm() {
+		return norm;
+	}
+
+	public long getCut() {
+		return cut;
+	}
+
+	public int getPrefixLength() {
+		return prefixLength;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeDouble(norm);
+		out.writeLong(cut);
+		WritableUtils.writeVInt(out, prefixLength);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		norm = in.readDouble();
+		cut = in.readLong();
+		prefixLength = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	public String toString() {
+		return norm + " " + cut + " " + prefixLength;
+	}
+}
@@ -0,0 +1,149 @@
+package cz.cvut.bigdata.tfidf.vectors;
+
+import cz.cvut.bigdata.tfidf.DocPositions;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Norms and prefixes of the document vectors, as written by the
+ * <i>DocVectorReducer</i> into the 'norms' named output.
+ * <p/>
+ * The components of each vector are sorted by the global order of the
+ * terms, i.e. by the decreasing document frequency. The prefix of the
+ * (normalized) vector is the longest run of its first terms whose norm is
+ * below the similarity threshold, thus the prefix contributes less than
+ * the threshold to the cosine similarity with any other document. Two
+ * documents of the similarity at least the threshold therefore share a
+ * term outside the prefix of the first one, so only the terms after the
+ * prefix have to be indexed (the prefix filtering). The prefix ends at
+ * a change of the term order, so the indexed terms are given just by the
+ * order of the first one, the cut.
+ * <p/>
+ * The frequent terms come first, thus they are mostly in the prefixes and
+ * their long posting lists do not produce the candidate pairs.
+ * <p/>
+ * The norms are kept in primitive arrays by the positions of the documents,
+ * see the <i>DocPositions</i>, so they are sized by the number of the
+ * documents even for the sparse source ids.
+ */
+public class DocNorms {
+
+	/** Named output of the norms. */
+	public static final String NORMS_OUTPUT = "norms";
+	/** Directory with the norms output. */
+	public static final String NORMS_PATH = "tfidf.similarity.norms";
+	/** Minimal cosine similarity of the similar documents. */
+	public static final String THRESHOLD = "tfidf.similarity.threshold";
+
+	public static final float DEFAULT_THRESHOLD = 0.5f;
+
+	private static final PathFilter NORMS_FILTER = new PathFilter() {
+		@Override
+		public boolean accept(Path path) {
+			return path.getName().startsWith(NORMS_OUTPUT + "-");
+		}
+	};
+
+	private final DocPositions positions = new DocPositions();
+	private double[] norms;
+	private long[] cuts;
+	private int[] prefixLengths;
+
+	private DocNorms(int capacity) {
+		norms = new double[capacity];
+		cuts = new long[capacity];
+		prefixLengths = new int[capacity];
+	}
+
+	/** Returns the configured similarity threshold. */
+	public static double getThreshold(Configuration conf) {
+		final float threshold = conf.getFloat(THRESHOLD, DEFAULT_THRESHOLD);
+		if (threshold <= 0.0f || threshold > 1.0f) {
+			throw new IllegalArgumentException("invalid similarity threshold " + threshold);
+		}
+		return threshold;
+	}
+
+	/**
+	 * Returns the position of the term in the global order, i.e. the terms
+	 * are ordered by their decreasing document frequency, and by the hash
+	 * codes of the terms. The terms of the same position are not separated
+	 * by the prefixes.
+	 */
+	public static long order(int docFrequency, String term) {
+		return ((long) (Integer.MAX_VALUE - docFrequency) << 32) | (term.hashCode() & 0xFFFFFFFFL);
+	}
+
+	/** Loads the norms from the configured directory. */
+	public static DocNorms load(Configuration conf) throws IOException {
+		final Path normsPath = new Path(conf.get(NORMS_PATH));
+		final FileSystem fs = normsPath.getFileSystem(conf);
+
+		final DocNorms docNorms = new DocNorms(1024);
+		final IntWritable doc = new IntWritable();
+		final DocNormWritable norm = new DocNormWritable();
+		for (FileStatus status : fs.listStatus(normsPath, NORMS_FILTER)) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				while (reader.next(doc, norm)) {
+					docNorms.add(doc.get(), norm);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		docNorms.index();
+		return docNorms;
+	}
+
+	private void add(int doc, DocNormWritable norm) {
+		final int index = positions.add(doc);
+		if (index == norms.length) {
+			norms = Arrays.copyOf(norms, 2 * index);
+			cuts = Arrays.copyOf(cuts, 2 * index);
+			prefixLengths = Arrays.copyOf(prefixLengths, 2 * index);
+		}
+		norms[index] = norm.getNorm();
+		cuts[index] = norm.getCut();
+		prefixLengths[index] = norm.getPrefixLength();
+	}
+
+	/** Moves the norms to the positions of the indexed documents. */
+	private void index() {
+		final int[] indexes = positions.index();
+		final double[] indexedNorms = new double[positions.size()];
+		final long[] indexedCuts = new long[positions.size()];
+		final int[] indexedPrefixLengths = new int[positions.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexedNorms[indexes[i]] = norms[i];
+			indexedCuts[indexes[i]] = cuts[i];
+			indexedPrefixLengths[indexes[i]] = prefixLengths[i];
+		}
+		norms = indexedNorms;
+		cuts = indexedCuts;
+		prefixLengths = indexedPrefixLengths;
+	}
+
+	/** Returns the L2 norm of the document vector. */
+	public double getNorm(int doc) {
+		return norms[positions.getIndex(doc)];
+	}
+
+	/** Returns true, if the term of given order is indexed for the document. */
+	public boolean isIndexed(int doc, long order) {
+		return order >= cuts[positions.getIndex(doc)];
+	}
+
+	/** Returns the number of terms in the prefix of the document vector. */
+	public int getPrefixLength(int doc) {
+		return prefixLengths[positions.getIndex(doc)];
+	}
+}
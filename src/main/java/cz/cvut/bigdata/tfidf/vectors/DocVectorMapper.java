@@ -0,0 +1,45 @@
+package cz.cvut.bigdata.tfidf.vectors;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+
+/**
+ * Receives <b>(term, 'doc:tfidf doc:tfidf ...')</b>, i.e. one sparse line
+ * of the textual TF-IDF matrix, and transposes it into <b>(doc, termScore)</b>
+ * pairs. The document frequency of the term is given by the number of its
+ * postings, so the term is emitted along with its global order.
+ */
+public class DocVectorMapper extends Mapper<Text, Text, IntWritable, TermScoreWritable> {
+
+	private final IntWritable doc = new IntWritable();
+	private final TermScoreWritable termScore = new TermScoreWritable();
+
+	@Override
+	protected void map(Text key, Text value, Context context) throws IOException, InterruptedException {
+		final String term = key.toString();
+		final String postings = value.toString();
+
+		// the document frequency is the number of postings
+		int docFrequency = 1;
+		for (int i = postings.indexOf(' '); i >= 0; i = postings.indexOf(' ', i + 1)) {
+			docFrequency++;
+		}
+		final long order = DocNorms.order(docFrequency, term);
+
+		int start = 0;
+		while (start < postings.length()) {
+			int end = postings.indexOf(' ', start);
+			if (end < 0) {
+				end = postings.length();
+			}
+			final int colon = postings.indexOf(':', start);
+			doc.set(Integer.parseInt(postings.substring(start, colon)));
+			termScore.set(term, order, Double.parseDouble(postings.substring(colon + 1, end)));
+			context.write(doc, termScore);
+			start = end + 1;
+		}
+	}
+}
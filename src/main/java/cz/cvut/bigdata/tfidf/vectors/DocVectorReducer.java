@@ -0,0 +1,85 @@
+package cz.cvut.bigdata.tfidf.vectors;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Receives <b>(doc, list[termScore])</b>, i.e. the TF-IDF scores of all the
+ * terms of the document, and emits the L2-normalized document vector as
+ * a sparse line <b>(doc, 'term:weight term:weight ...')</b> with the terms
+ * sorted by their global order.
+ * <p/>
+ * The norm of the vector and its prefix for the similarity threshold are
+ * written into the 'norms' named output, see the <i>DocNorms</i>.
+ */
+public class DocVectorReducer extends Reducer<IntWritable, TermScoreWritable, IntWritable, Text> {
+
+	private final Text vector = new Text();
+	private final StringBuilder vectorLine = new StringBuilder();
+	private final DocNormWritable norm = new DocNormWritable();
+	private final List<TermScoreWritable> terms = new ArrayList<TermScoreWritable>();
+
+	private MultipleOutputs<IntWritable, Text> outputs;
+	private double threshold;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		threshold = DocNorms.getThreshold(context.getConfiguration());
+		outputs = new MultipleOutputs<IntWritable, Text>(context);
+	}
+
+	@Override
+	protected void reduce(IntWritable key, Iterable<TermScoreWritable> values, Context context) throws IOException, InterruptedException {
+		// copy and sort the terms, computing the norm
+		terms.clear();
+		double sum = 0.0;
+		for (TermScoreWritable value : values) {
+			terms.add(new TermScoreWritable(value));
+			sum += value.getScore() * value.getScore();
+		}
+		Collections.sort(terms);
+		final double length = Math.sqrt(sum);
+
+		// the longest prefix of the norm below the threshold, ending at a change of the order
+		final double maxPrefix = threshold * threshold;
+		double prefix = 0.0;
+		int prefixLength = 0;
+		while (prefixLength < terms.size()) {
+			final double weight = terms.get(prefixLength).getScore() / length;
+			if (prefix + weight * weight >= maxPrefix) {
+				break;
+			}
+			prefix += weight * weight;
+			prefixLength++;
+		}
+		while (prefixLength > 0 && prefixLength < terms.size()
+				&& terms.get(prefixLength - 1).getOrder() == terms.get(prefixLength).getOrder()) {
+			prefixLength--;
+		}
+		final long cut = (prefixLength < terms.size()) ? terms.get(prefixLength).getOrder() : Long.MAX_VALUE;
+
+		// emit the normalized vector
+		vectorLine.setLength(0);
+		for (TermScoreWritable term : terms) {
+			vectorLine.append(term.getTerm()).append(':').append(term.getScore() / length).append(' ');
+		}
+		vectorLine.setLength(vectorLine.length() - 1);
+		vector.set(vectorLine.toString());
+		context.write(key, vector);
+
+		norm.set(length, cut, prefixLength);
+		outputs.write(DocNorms.NORMS_OUTPUT, key, norm);
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		outputs.close();
+	}
+}
@@ -0,0 +1,74 @@
+package cz.cvut.bigdata.tfidf.vectors;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implementation of a custom <i>Writable</i> class storing one component
+ * <b>(term, score)</b> of a document vector, along with the position of
+ * the term in the global order of the terms, see {@link DocNorms#order}.
+ * The document itself is given by the key.
+ */
+public class TermScoreWritable implements Writable, Comparable<TermScoreWritable> {
+
+	private String term = null;
+	private long order = 0L;
+	private double score = 0.0;
+
+	public TermScoreWritable() {
+	}
+
+	public TermScoreWritable(TermScoreWritable other) {
+		set(other.term, other.order, other.score);
+	}
+
+	public void set(String term, long order, double score) {
+		this.term = term;
+		this.order = order;
+		this.score = score;
+	}
+
+	public String getTerm() {
+		return term;
+	}
+
+	public long getOrder() {
+		return order;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		Text.writeString(out, term);
+		out.writeLong(order);
+		out.writeDouble(score);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		term = Text.readString(in);
+		order = in.readLong();
+		score = in.readDouble();
+	}
+
+	/** Compares the terms by their global order. */
+	@Override
+	public int compareTo(TermScoreWritable o) {
+		if (order != o.order) {
+			return (order < o.order) ? -1 : 1;
+		}
+		return term.compareTo(o.term);
+	}
+
+	@Override
+	public String toString() {
+		return term + ":" + score;
+	}
+}
@@ -0,0 +1,33 @@
+package cz.cvut.bigdata.tfidf.wiki;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+/**
+ * Input format reading the Wikipedia XML dumps, either plain or compressed,
+ * see the <i>WikiPageRecordReader</i>. The bzip2-compressed dumps are split
+ * at the bzip2 blocks, thus they are processed in parallel without being
+ * decompressed first, the same way as the plain dumps.
+ */
+public class WikiPageInputFormat extends FileInputFormat<LongWritable, Text> {
+
+	@Override
+	public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+		return new WikiPageRecordReader();
+	}
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+		final CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+		return codec == null || codec instanceof SplittableCompressionCodec;
+	}
+}
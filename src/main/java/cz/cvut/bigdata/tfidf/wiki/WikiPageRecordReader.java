@@ -0,0 +1,233 @@
+package cz.cvut.bigdata.tfidf.wiki;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the <b>&lt;page&gt;</b> elements of a Wikipedia XML dump as the
+ * <b>(id, 'title\ttext')</b> pairs of the article id and its title and
+ * text. The text is unescaped and its line breaks and tabs are replaced
+ * by spaces, so each article makes a single line of the numbered output.
+ * The article ids are positive, thus no article is taken for the header
+ * (zero key) of the plain input.
+ * <p/>
+ * The dump is read by lines using the <i>LineRecordReader</i>, which
+ * handles the split boundaries of both the plain and the bzip2-compressed
+ * dumps (unlike its custom delimiters, which duplicate the records at the
+ * boundaries of the compressed splits). Each page belongs to the split
+ * containing its start tag, the rest of the page is read from the following
+ * part of the file. The redirects and the pages outside of the configured
+ * namespaces (the main namespace by default) are skipped.
+ */
+public class WikiPageRecordReader extends RecordReader<LongWritable, Text> {
+
+	/** Namespaces of the pages read (comma-separated). */
+	public static final String NAMESPACES = "tfidf.wiki.namespaces";
+
+	public static final String DEFAULT_NAMESPACES = "0";
+
+	/** Counters of the pages. */
+	public static enum Pages {
+		ARTICLES, REDIRECTS, OTHER_NAMESPACES, INVALID
+	}
+
+	private final LineRecordReader reader = new LineRecordReader();
+	private final LongWritable id = new LongWritable();
+	private final Text page = new Text();
+	private final StringBuilder xml = new StringBuilder();
+	private final StringBuilder builder = new StringBuilder();
+	private final Set<String> namespaces = new HashSet<String>();
+
+	private TaskAttemptContext context;
+	private FileSplit split;
+	// reader of the rest of the file, for the page crossing the end of the split
+	private LineRecordReader tailReader = null;
+
+	@Override
+	public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+		this.context = context;
+		this.split = (FileSplit) split;
+		for (String namespace : context.getConfiguration().getTrimmedStrings(NAMESPACES, DEFAULT_NAMESPACES)) {
+			namespaces.add(namespace);
+		}
+		reader.initialize(split, context);
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while (reader.nextKeyValue()) {
+			String line = reader.getCurrentValue().toString();
+			if (!line.contains("<page>")) {
+				continue;
+			}
+
+			// read the whole page, possibly beyond the end of the split
+			xml.setLength(0);
+			xml.append(line);
+			while (!line.contains("</page>") && (line = nextPageLine()) != null) {
+				xml.append('\n').append(line);
+			}
+
+			final Pages page = parse(xml.toString());
+			context.getCounter(page).increment(1L);
+			if (page == Pages.ARTICLES) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns the next line of the page, or null at the end of the file. */
+	private String nextPageLine() throws IOException, InterruptedException {
+		if (tailReader == null) {
+			if (reader.nextKeyValue()) {
+				return reader.getCurrentValue().toString();
+			}
+			// the lines after the split are read the same way as by the next split
+			final long start = split.getStart() + split.getLength();
+			final long length = split.getPath().getFileSystem(context.getConfiguration()).getFileStatus(split.getPath()).getLen();
+			if (start >= length) {
+				return null;
+			}
+			tailReader = new LineRecordReader();
+			tailReader.initialize(new FileSplit(split.getPath(), start, length - start, null), context);
+		}
+		return tailReader.nextKeyValue() ? tailReader.getCurrentValue().toString() : null;
+	}
+
+	/** Parses the page starting by its start tag. */
+	private Pages parse(String xml) {
+		final int start = xml.indexOf("<page>");
+		int revision = xml.indexOf("<revision>", start);
+		if (revision < 0) {
+			revision = xml.length();
+		}
+
+		final String namespace = element(xml, "ns", start, revision);
+		if (!namespaces.contains((namespace != null) ? namespace.trim() : "0")) {
+			return Pages.OTHER_NAMESPACES;
+		}
+		if (xml.indexOf("<redirect", start) >= 0 && xml.indexOf("<redirect", start) < revision) {
+			return Pages.REDIRECTS;
+		}
+		final String idText = element(xml, "id", start, revision);
+		final String title = element(xml, "title", start, revision);
+		if (idText == null || title == null) {
+			return Pages.INVALID;
+		}
+		try {
+			id.set(Long.parseLong(idText.trim()));
+		} catch (NumberFormatException e) {
+			return Pages.INVALID;
+		}
+		if (id.get() <= 0L) {
+			return Pages.INVALID;
+		}
+
+		// the text element may be empty, i.e. <text ... />
+		builder.setLength(0);
+		unescape(title, 0, title.length());
+		builder.append('\t');
+		final int text = xml.indexOf("<text", revision);
+		final int textStart = (text >= 0) ? xml.indexOf('>', text) : -1;
+		if (textStart >= 0 && xml.charAt(textStart - 1) != '/') {
+			int textEnd = xml.indexOf("</text>", textStart);
+			if (textEnd < 0) {
+				textEnd = xml.length();
+			}
+			unescape(xml, textStart + 1, textEnd);
+		}
+		page.set(builder.toString());
+		return Pages.ARTICLES;
+	}
+
+	/** Returns the content of the first element of given name in the range, or null. */
+	private static String element(String xml, String name, int from, int to) {
+		final int start = xml.indexOf("<" + name + ">", from);
+		if (start < 0 || start >= to) {
+			return null;
+		}
+		final int contentStart = start + name.length() + 2;
+		final int end = xml.indexOf("</" + name + ">", contentStart);
+		return (end >= 0) ? xml.substring(contentStart, end) : null;
+	}
+
+	/** Appends the unescaped XML text, replacing the line breaks and tabs by spaces. */
+	private void unescape(String xml, int from, int to) {
+		for (int i = from; i < to; i++) {
+			final char c = xml.charAt(i);
+			if (c == '&') {
+				final int end = xml.indexOf(';', i);
+				if (end > i && end < to && end - i <= 10) {
+					final String entity = xml.substring(i + 1, end);
+					final int length = builder.length();
+					appendEntity(entity);
+					if (builder.length() > length) {
+						i = end;
+						continue;
+					}
+				}
+				builder.append(c);
+			} else if (c == '\n' || c == '\r' || c == '\t') {
+				builder.append(' ');
+			} else {
+				builder.append(c);
+			}
+		}
+	}
+
+	/** Appends the character of the XML entity, nothing for an unknown one. */
+	private void appendEntity(String entity) {
+		if (entity.equals("lt")) {
+			builder.append('<');
+		} else if (entity.equals("gt")) {
+			builder.append('>');
+		} else if (entity.equals("amp")) {
+			builder.append('&');
+		} else if (entity.equals("quot")) {
+			builder.append('"');
+		} else if (entity.equals("apos")) {
+			builder.append('\'');
+		} else if (entity.startsWith("#")) {
+			try {
+				final int codePoint = entity.startsWith("#x")
+						? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+				builder.appendCodePoint(codePoint);
+			} catch (IllegalArgumentException e) {
+				// not a character reference
+			}
+		}
+	}
+
+	@Override
+	public LongWritable getCurrentKey() {
+		return id;
+	}
+
+	@Override
+	public Text getCurrentValue() {
+		return page;
+	}
+
+	@Override
+	public float getProgress() throws IOException {
+		return reader.getProgress();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+		if (tailReader != null) {
+			tailReader.close();
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package cz.cvut.bigdata.index;
+
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class IndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSearch() throws IOException {
+		final File tfidf = folder.newFolder("tf-idf");
+		write(new File(tfidf, "part-r-00000"), "jazyk\t7:1.5 2:0.5 4:2.0\nžába\t3:1.0 2:1.0\n");
+		write(new File(tfidf, "part-r-00001"), "cíl\t2:3.0 9:0.25\n");
+
+		final File index = folder.newFolder("index");
+		IndexWriter.write(new Configuration(), new Path(tfidf.toURI()), index);
+
+		final IndexReader reader = IndexReader.open(index);
+		try {
+			assertEquals(3, reader.size());
+			assertEquals(3, reader.getDocFrequency("jazyk"));
+			assertEquals(2, reader.getDocFrequency("žába"));
+			assertEquals(0, reader.getDocFrequency("vlk"));
+			assertNull(reader.getPostings("vlk"));
+
+			final Postings postings = reader.getPostings("jazyk");
+			assertEquals(Arrays.asList(2, 4, 7), Arrays.asList(postings.getDoc(0), postings.getDoc(1), postings.getDoc(2)));
+			assertEquals(2.0f, postings.getScore(1), 0f);
+
+			final List<ScoredDocument> result = reader.search(Arrays.asList("jazyk", "cíl", "žába", "vlk", "jazyk"), 3);
+			assertEquals(Arrays.asList(new ScoredDocument(2, 5.0f), new ScoredDocument(4, 4.0f), new ScoredDocument(7, 3.0f)), result);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSearchByIndexAnalyzer() throws IOException {
+		final File tfidf = folder.newFolder("tf-idf");
+		write(new File(tfidf, "part-r-00000"), "run\t1:1.0 2:0.5\ndog\t2:2.0\n");
+
+		// the index of the english documents, not stemmed by the default czech analyzer
+		final Configuration conf = new Configuration(false);
+		conf.set(TermAnalyzer.LANGUAGE, "english");
+		conf.setInt(TermAnalyzer.MIN_LENGTH, 3);
+		final File index = folder.newFolder("index");
+		IndexWriter.write(conf, new Path(tfidf.toURI()), index);
+
+		final IndexReader reader = IndexReader.open(index);
+		try {
+			final List<ScoredDocument> result = reader.search("The running dogs of NY", 10);
+			assertEquals(Arrays.asList(new ScoredDocument(2, 2.5f), new ScoredDocument(1, 1.0f)), result);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void write(File file, String text) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
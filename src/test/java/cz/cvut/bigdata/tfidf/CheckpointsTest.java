@@ -0,0 +1,108 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class CheckpointsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Configuration conf;
+	private FileSystem fs;
+	private Path input;
+	private Path side;
+	private Path output;
+
+	@Before
+	public void setUp() throws IOException {
+		conf = new Configuration(false);
+		conf.set("fs.defaultFS", "file:///");
+		fs = FileSystem.getLocal(conf);
+		final Path root = new Path(folder.getRoot().getAbsolutePath());
+		input = new Path(root, "input");
+		side = new Path(root, "dictionary");
+		output = new Path(root, "terms");
+		fs.create(input).close();
+	}
+
+	@Test
+	public void testIdenticalRerunSkipsChainedJobs() throws Exception {
+		// the first run completes both jobs
+		assertFalse(run()[0]);
+
+		// the side input is rewritten by the first run, the rerun still skips both jobs
+		final boolean[] completed = run();
+		assertTrue(completed[0]);
+		assertTrue(completed[1]);
+	}
+
+	@Test
+	public void testChangedConfigurationRecomputesDependingJobs() throws Exception {
+		run();
+		conf.set("tfidf.test", "changed");
+		final boolean[] completed = run();
+		assertFalse(completed[0]);
+		assertFalse(completed[1]);
+	}
+
+	/**
+	 * Prepares the job producing the side input and the job reading it, in
+	 * this order, and simulates their successful execution, returns whether
+	 * they were completed by the previous run.
+	 */
+	private boolean[] run() throws IOException, InterruptedException {
+		final Checkpoints checkpoints = new Checkpoints(fs, true);
+		final Job sideJob = job(input);
+		final Job job = job(input);
+		final boolean[] completed = new boolean[] {
+				checkpoints.isCompleted(sideJob, side),
+				checkpoints.isCompleted(job, output, side)
+		};
+
+		final List<ControlledJob> succeeded = new ArrayList<ControlledJob>();
+		if (!completed[0]) {
+			execute(side);
+			succeeded.add(new ControlledJob(sideJob, null));
+		}
+		if (!completed[1]) {
+			execute(output);
+			succeeded.add(new ControlledJob(job, null));
+		}
+		checkpoints.write(succeeded);
+		return completed;
+	}
+
+	private Job job(Path input) throws IOException {
+		final Job job = Job.getInstance(new Configuration(conf));
+		FileInputFormat.addInputPath(job, input);
+		return job;
+	}
+
+	/** Writes a fresh output, as the job does. */
+	private void execute(Path output) throws IOException, InterruptedException {
+		fs.delete(output, true);
+		// make sure the modification times differ from the previous output
+		Thread.sleep(1100L);
+		fs.create(new Path(output, "part-r-00000")).close();
+		fs.create(new Path(output, "_SUCCESS")).close();
+	}
+}
@@ -0,0 +1,70 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class TermDocWritableTest {
+
+	private static final String[] terms = {"", "_", "a", "ab", "abc", "b", "cíl", "cíle", "čas", "lingvistik", "zkoumán", "žába"};
+
+	private static final int[] docs = {0, 1, 127, 128, 255, 16383, 16384, 2097151, 2097152, 268435455, 268435456, Integer.MAX_VALUE};
+
+	@Test
+	public void testSerialization() throws IOException {
+		final TermDocWritable result = new TermDocWritable();
+		for (String term : terms) {
+			for (int doc : docs) {
+				final TermDocWritable termDoc = termDoc(term, doc);
+				final DataOutputBuffer out = new DataOutputBuffer();
+				termDoc.write(out);
+
+				final DataInputBuffer in = new DataInputBuffer();
+				in.reset(out.getData(), out.getLength());
+				result.readFields(in);
+				assertEquals(termDoc, result);
+			}
+		}
+	}
+
+	@Test
+	public void testRawComparator() throws IOException {
+		final WritableComparator comparator = WritableComparator.get(TermDocWritable.class);
+		assertTrue(comparator instanceof TermDocWritable.Comparator);
+
+		for (String term1 : terms) {
+			for (int doc1 : docs) {
+				final TermDocWritable termDoc1 = termDoc(term1, doc1);
+				final DataOutputBuffer out1 = new DataOutputBuffer();
+				termDoc1.write(out1);
+
+				for (String term2 : terms) {
+					for (int doc2 : docs) {
+						final TermDocWritable termDoc2 = termDoc(term2, doc2);
+						final DataOutputBuffer out2 = new DataOutputBuffer();
+						termDoc2.write(out2);
+
+						final int expected = Integer.signum(termDoc1.compareTo(termDoc2));
+						final int actual = comparator.compare(out1.getData(), 0, out1.getLength(), out2.getData(), 0, out2.getLength());
+						assertEquals(termDoc1 + " <> " + termDoc2, expected, Integer.signum(actual));
+					}
+				}
+			}
+		}
+	}
+
+	private static TermDocWritable termDoc(String term, int doc) {
+		final TermDocWritable termDoc = new TermDocWritable();
+		termDoc.set(term, doc);
+		return termDoc;
+	}
+}
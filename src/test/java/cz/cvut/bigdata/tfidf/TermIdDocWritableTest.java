@@ -0,0 +1,70 @@
+package cz.cvut.bigdata.tfidf;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class TermIdDocWritableTest {
+
+	private static final int[] terms = {TermIdDocWritable.NUMBER_OF_DOCUMENTS, 0, 1, 126, 127, 16382, 16383, 2097151, 268435455, Integer.MAX_VALUE - 1};
+
+	private static final int[] docs = {0, 1, 127, 128, 16383, 16384, 2097152, 268435456, Integer.MAX_VALUE};
+
+	@Test
+	public void testSerialization() throws IOException {
+		final TermIdDocWritable result = new TermIdDocWritable();
+		for (int term : terms) {
+			for (int doc : docs) {
+				final TermIdDocWritable termIdDoc = termIdDoc(term, doc);
+				final DataOutputBuffer out = new DataOutputBuffer();
+				termIdDoc.write(out);
+
+				final DataInputBuffer in = new DataInputBuffer();
+				in.reset(out.getData(), out.getLength());
+				result.readFields(in);
+				assertEquals(termIdDoc, result);
+			}
+		}
+	}
+
+	@Test
+	public void testRawComparator() throws IOException {
+		final WritableComparator comparator = WritableComparator.get(TermIdDocWritable.class);
+		assertTrue(comparator instanceof TermIdDocWritable.Comparator);
+
+		for (int term1 : terms) {
+			for (int doc1 : docs) {
+				final TermIdDocWritable termIdDoc1 = termIdDoc(term1, doc1);
+				final DataOutputBuffer out1 = new DataOutputBuffer();
+				termIdDoc1.write(out1);
+
+				for (int term2 : terms) {
+					for (int doc2 : docs) {
+						final TermIdDocWritable termIdDoc2 = termIdDoc(term2, doc2);
+						final DataOutputBuffer out2 = new DataOutputBuffer();
+						termIdDoc2.write(out2);
+
+						final int expected = Integer.signum(termIdDoc1.compareTo(termIdDoc2));
+						final int actual = comparator.compare(out1.getData(), 0, out1.getLength(), out2.getData(), 0, out2.getLength());
+						assertEquals(termIdDoc1 + " <> " + termIdDoc2, expected, Integer.signum(actual));
+					}
+				}
+			}
+		}
+	}
+
+	private static TermIdDocWritable termIdDoc(int term, int doc) {
+		final TermIdDocWritable termIdDoc = new TermIdDocWritable();
+		termIdDoc.set(term, doc);
+		return termIdDoc;
+	}
+}
@@ -0,0 +1,37 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class DocFreqHistogramTest {
+
+	@Test
+	public void testMinDocFrequency() {
+		// 10 terms of df 1, 5 of df 3, 2 of df 10 and 1 of df 50
+		final DocFreqHistogram histogram = new DocFreqHistogram();
+		histogram.add(1, 10L);
+		histogram.add(3, 4L);
+		histogram.add(3, 1L);
+		histogram.add(10, 2L);
+		histogram.add(50, 1L);
+		assertEquals(51, histogram.size());
+		assertEquals(5L, histogram.getCount(3));
+		assertEquals(0L, histogram.getCount(2000));
+
+		// the whole vocabulary fits
+		assertEquals(1, histogram.getMinDocFrequency(1, 100, 100));
+		assertEquals(3, histogram.getMinDocFrequency(3, 100, 8));
+		// the most frequent terms are kept
+		assertEquals(4, histogram.getMinDocFrequency(1, 100, 3));
+		assertEquals(11, histogram.getMinDocFrequency(1, 100, 1));
+		// the terms tied at the limit are pruned together
+		assertEquals(4, histogram.getMinDocFrequency(1, 100, 7));
+		// the terms above the maximal document frequency are not counted
+		assertEquals(2, histogram.getMinDocFrequency(1, 20, 7));
+		assertEquals(51, histogram.getMinDocFrequency(1, 100, 0));
+	}
+}
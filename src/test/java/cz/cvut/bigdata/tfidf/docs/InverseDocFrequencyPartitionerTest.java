@@ -0,0 +1,146 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import cz.cvut.bigdata.tfidf.DocFreqWritable;
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.Progress;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class InverseDocFrequencyPartitionerTest {
+
+	@Test
+	public void testUnderscoreTerms() throws IOException, InterruptedException {
+		// without the markup stripping, the analyzer keeps the '_' in the terms, but not the term '_'
+		final Configuration conf = new Configuration(false);
+		conf.setBoolean(TermAnalyzer.MARKUP, false);
+		conf.set(TermAnalyzer.LANGUAGE, "none");
+		final List<String> terms = analyze(TermAnalyzer.get(conf), "_init_ __fo _ slovo");
+		assertEquals(Arrays.asList("_init_", "__fo", "slovo"), terms);
+
+		// the terms are partitioned as terms, the special keys to their reducers
+		final InverseDocFrequencyPartitioner partitioner = new InverseDocFrequencyPartitioner();
+		partitioner.setConf(new Configuration(false));
+		for (String term : terms) {
+			final int partition = partitioner.getPartition(new Text(term), null, 4);
+			assertTrue(partition >= 0 && partition < 4);
+		}
+		assertEquals(3, partitioner.getPartition(new Text("_3"), null, 4));
+
+		// the terms do not reset the number of documents
+		final Configuration reducerConf = new Configuration(false);
+		reducerConf.setInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY, 1);
+		reducerConf.setFloat(InverseDocFrequencyReducer.MAX_DOC_FREQUENCY_RATIO, 1f);
+		final List<String> output = new ArrayList<String>();
+		final InverseDocFrequencyReducer reducer = new InverseDocFrequencyReducer();
+		final InverseDocFrequencyReducer.Context context = reduceContext(reducerConf, output);
+		reducer.setup(context);
+		reducer.reduce(new Text("_0"), docFreqs(0, 4), context);
+		reducer.reduce(new Text("_init_"), docFreqs(1, 1, 2, 1), context);
+		reducer.reduce(new Text("__fo"), docFreqs(3, 2), context);
+		reducer.reduce(new Text("slovo"), docFreqs(1, 1), context);
+		assertEquals(Arrays.asList(
+				"_init_\t1:" + Math.log(2.0) * Math.log(2.0) + " 2:" + Math.log(2.0) * Math.log(2.0),
+				"__fo\t3:" + Math.log(3.0) * Math.log(4.0),
+				"slovo\t1:" + Math.log(2.0) * Math.log(4.0)
+		), output);
+	}
+
+	private static List<String> analyze(TermAnalyzer analyzer, String text) throws IOException {
+		final List<String> terms = new ArrayList<String>();
+		final TokenStream tokenStream = analyzer.tokenStream("word", text);
+		try {
+			tokenStream.reset();
+			final CharTermAttribute termAttribute = tokenStream.getAttribute(CharTermAttribute.class);
+			while (tokenStream.incrementToken()) {
+				terms.add(termAttribute.toString());
+			}
+			tokenStream.end();
+		} finally {
+			tokenStream.close();
+		}
+		return terms;
+	}
+
+	/** Returns the document-frequency values of given pairs. */
+	private static List<DocFreqWritable> docFreqs(int... pairs) {
+		final List<DocFreqWritable> values = new ArrayList<DocFreqWritable>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			final DocFreqWritable docFreq = new DocFreqWritable();
+			docFreq.set(pairs[i], pairs[i + 1]);
+			values.add(docFreq);
+		}
+		return values;
+	}
+
+	/** Creates the reducer context collecting the output lines. */
+	private static InverseDocFrequencyReducer.Context reduceContext(Configuration conf, final List<String> output)
+			throws IOException, InterruptedException {
+		final RecordWriter<Text, Writable> writer = new RecordWriter<Text, Writable>() {
+			@Override
+			public void write(Text key, Writable value) {
+				output.add(key + "\t" + value);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) {
+			}
+		};
+		final ReduceContextImpl<Writable, DocFreqWritable, Text, Writable> context = new ReduceContextImpl<Writable, DocFreqWritable, Text, Writable>(
+				conf, new TaskAttemptID(), new EmptyIterator(), new GenericCounter(), new GenericCounter(), writer, null,
+				new TaskAttemptContextImpl.DummyReporter(), WritableComparator.get(Text.class), Writable.class, DocFreqWritable.class);
+		return new WrappedReducer<Writable, DocFreqWritable, Text, Writable>().getReducerContext(context);
+	}
+
+	/** Empty input of the reducer, the values are passed directly. */
+	private static class EmptyIterator implements RawKeyValueIterator {
+
+		@Override
+		public DataInputBuffer getKey() {
+			return null;
+		}
+
+		@Override
+		public DataInputBuffer getValue() {
+			return null;
+		}
+
+		@Override
+		public boolean next() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public Progress getProgress() {
+			return null;
+		}
+	}
+}
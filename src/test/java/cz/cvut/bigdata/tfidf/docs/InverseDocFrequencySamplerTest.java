@@ -0,0 +1,96 @@
+package cz.cvut.bigdata.tfidf.docs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class InverseDocFrequencySamplerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testComputeBoundaries() {
+		// 'c' has 1000 postings, the other 8 terms 10 each
+		final TreeMap<String, int[]> samples = new TreeMap<String, int[]>();
+		for (String term : new String[] {"a", "b", "c", "d", "e", "f", "g", "h", "i"}) {
+			samples.put(term, new int[] {term.equals("c") ? 1000 : 10});
+		}
+
+		// the frequent term gets a range on its own, the rest is split evenly
+		assertEquals(Arrays.asList("c", "d"), InverseDocFrequencySampler.computeBoundaries(samples, 3));
+		assertEquals(Arrays.asList("c", "d", "g"), InverseDocFrequencySampler.computeBoundaries(samples, 4));
+		assertEquals(Arrays.asList(), InverseDocFrequencySampler.computeBoundaries(samples, 1));
+		// more partitions than terms
+		assertEquals(Arrays.asList("c", "d", "e", "f", "g", "h", "i"), InverseDocFrequencySampler.computeBoundaries(samples, 20));
+	}
+
+	@Test
+	public void testWritePartitionFile() throws Exception {
+		// the sorted postings of 'a' (15000) and of 'b' to 'f' (1000 each), and an empty split,
+		// the frequent term gets a partition on its own
+		final File input = folder.newFolder("terms");
+		new File(input, "part-r-00000").createNewFile();
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(input, "part-r-00001")), "UTF-8");
+		try {
+			for (int doc = 1; doc <= 15000; doc++) {
+				writer.write("a : " + doc + "\t1\n");
+			}
+			for (String term : new String[] {"b", "c", "d", "e", "f"}) {
+				for (int doc = 1; doc <= 1000; doc++) {
+					writer.write(term + " : " + doc + "\t1\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+
+		final Configuration conf = new Configuration(false);
+		conf.set("fs.defaultFS", "file:///");
+		final Job job = Job.getInstance(conf);
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setNumReduceTasks(2);
+		FileInputFormat.addInputPath(job, new Path(input.toURI()));
+
+		final Path partitionFile = new Path(new File(folder.getRoot(), "partitions").toURI());
+		InverseDocFrequencySampler.writePartitionFile(job, partitionFile);
+		assertEquals(Arrays.asList("b"), readBoundaries(partitionFile, job.getConfiguration()));
+	}
+
+	private static List<String> readBoundaries(Path partitionFile, Configuration conf) throws IOException {
+		final List<String> boundaries = new ArrayList<String>();
+		final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(partitionFile));
+		try {
+			final Text boundary = new Text();
+			while (reader.next(boundary, NullWritable.get())) {
+				boundaries.add(boundary.toString());
+			}
+		} finally {
+			reader.close();
+		}
+		return boundaries;
+	}
+}
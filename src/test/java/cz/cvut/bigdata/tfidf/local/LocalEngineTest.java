@@ -0,0 +1,82 @@
+package cz.cvut.bigdata.tfidf.local;
+
+import cz.cvut.bigdata.tfidf.docs.InverseDocFrequencyReducer;
+import cz.cvut.bigdata.tfidf.terms.TermAnalyzer;
+import cz.cvut.bigdata.tfidf.terms.TermFrequencyReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.ToolRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class LocalEngineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTwoFiles() throws Exception {
+		// the documents 1 to 3 and 4 to 6, the first lines would keep 'lod' and 'vlak' in 3 documents
+		final File input = folder.newFolder("input");
+		write(new File(input, "a.txt"), "HEADER lod lod\nkolo kolo auto auto\nkolo kolo vlak strom strom\nauto auto auto\n");
+		write(new File(input, "b.txt"), "HEADER vlak vlak\nvlak vlak kolo kolo\nlod lod lod strom strom strom\nkolo kolo auto\n");
+		final File output = new File(folder.getRoot(), "output");
+
+		final Configuration conf = new Configuration(false);
+		conf.set("fs.defaultFS", "file:///");
+		conf.set(TermAnalyzer.LANGUAGE, "none");
+		conf.setInt(TermFrequencyReducer.MIN_TERM_FREQUENCY, 2);
+		conf.setInt(InverseDocFrequencyReducer.MIN_DOC_FREQUENCY, 2);
+		conf.setFloat(InverseDocFrequencyReducer.MAX_DOC_FREQUENCY_RATIO, 0.5f);
+		assertEquals(0, ToolRunner.run(conf, new LocalEngine(), new String[] {
+				"--input", input.getPath(), "--output", output.getPath(), "--threads", "2"
+		}));
+
+		// 'kolo' is too frequent (4 of 6 documents), 'vlak' and 'lod' too rare (1 document of tf 2 at least)
+		final double idf = Math.log(6.0 / 2);
+		assertEquals(Arrays.asList(
+				"auto\t1:" + Math.log(3.0) * idf + " 3:" + Math.log(4.0) * idf,
+				"strom\t2:" + Math.log(3.0) * idf + " 5:" + Math.log(4.0) * idf
+		), read(new File(output, "tf-idf/part-r-00000")));
+	}
+
+	private static void write(File file, String text) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static List<String> read(File file) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,74 @@
+package cz.cvut.bigdata.tfidf.postings;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class PostingsWritableTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final int[] docs = {Integer.MAX_VALUE, 128, 1, 16384, 0, 127, 2097152};
+
+	@Test
+	public void testSerialization() throws IOException {
+		final PostingsWritable postings = new PostingsWritable();
+		for (int doc : docs) {
+			postings.add(doc, doc / 3f);
+		}
+		postings.sort();
+
+		final int[] sorted = Arrays.copyOf(docs, docs.length);
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(sorted[i], postings.getDoc(i));
+			assertEquals(sorted[i] / 3f, postings.getScore(i), 0f);
+		}
+
+		final DataOutputBuffer out = new DataOutputBuffer();
+		postings.write(out);
+
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		final PostingsWritable result = new PostingsWritable();
+		result.readFields(in);
+		assertEquals(sorted.length, result.size());
+
+		final PostingsIterator iterator = new PostingsIterator(Arrays.copyOf(out.getData(), out.getLength()));
+		assertEquals(sorted.length, iterator.size());
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(sorted[i], result.getDoc(i));
+			assertEquals(sorted[i] / 3f, result.getScore(i), 0f);
+
+			assertTrue(iterator.next());
+			assertEquals(sorted[i], iterator.doc());
+			assertEquals(sorted[i] / 3f, iterator.score(), 0f);
+		}
+		assertFalse(iterator.next());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testOpenEmptyOutput() throws IOException {
+		// e.g. a textual tf-idf output
+		final File dir = folder.newFolder("tf-idf");
+		new File(dir, "part-r-00000").createNewFile();
+		PostingsReader.open(new Configuration(false), new Path(dir.toURI()));
+	}
+}
@@ -0,0 +1,114 @@
+package cz.cvut.bigdata.tfidf.scoring;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ScorerTest {
+
+	private static final int[] DOCUMENTS = {1, 2, 3};
+	private static final int[] FREQUENCIES = {3, 300, 10};
+	private static final int NUMBER_OF_DOCUMENTS = 100;
+
+	@Test
+	public void testDefaultTfIdf() {
+		final Scorer scorer = Scorer.create(new Configuration(false));
+		assertFalse(scorer.needsDocStats());
+
+		final double[] scores = score(scorer);
+		for (int i = 0; i < DOCUMENTS.length; i++) {
+			// the tabulated logarithms give the same scores as before
+			final double expected = Math.log((double) FREQUENCIES[i] + 1.0) * Math.log((double) NUMBER_OF_DOCUMENTS / DOCUMENTS.length);
+			assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(scores[i]));
+		}
+	}
+
+	@Test
+	public void testAugmentedTfIdf() {
+		final Configuration conf = new Configuration(false);
+		conf.set(TfIdfScorer.TF, "augmented");
+		conf.set(TfIdfScorer.IDF, "smooth");
+		final Scorer scorer = Scorer.create(conf);
+		assertTrue(scorer.needsDocStats());
+		scorer.setDocStats(docStats());
+
+		final double[] scores = score(scorer);
+		final double idf = Math.log(1.0 + (double) NUMBER_OF_DOCUMENTS / DOCUMENTS.length);
+		assertEquals((0.5 + 0.5 * 3 / 3) * idf, scores[0], 1e-12);
+		assertEquals((0.5 + 0.5 * 300 / 300) * idf, scores[1], 1e-12);
+		assertEquals((0.5 + 0.5 * 10 / 20) * idf, scores[2], 1e-12);
+	}
+
+	@Test
+	public void testBM25() {
+		final Configuration conf = new Configuration(false);
+		conf.set(Scorer.SCORER, "bm25");
+		final Scorer scorer = Scorer.create(conf);
+		assertTrue(scorer.needsDocStats());
+		final DocStats docStats = docStats();
+		scorer.setDocStats(docStats);
+
+		final double[] scores = score(scorer);
+		final double idf = Math.log(1.0 + (NUMBER_OF_DOCUMENTS - DOCUMENTS.length + 0.5) / (DOCUMENTS.length + 0.5));
+		final double k1 = BM25Scorer.DEFAULT_K1;
+		final double b = BM25Scorer.DEFAULT_B;
+		for (int i = 0; i < DOCUMENTS.length; i++) {
+			final double norm = k1 * (1.0 - b + b * docStats.getLength(docStats.getIndex(DOCUMENTS[i])) / docStats.getAverageLength());
+			assertEquals(idf * FREQUENCIES[i] * (k1 + 1.0) / (FREQUENCIES[i] + norm), scores[i], 1e-12);
+		}
+		// the frequency saturates
+		assertTrue(scores[1] < (k1 + 1.0) * idf);
+	}
+
+	@Test
+	public void testSparseDocuments() {
+		final Configuration conf = new Configuration(false);
+		conf.set(Scorer.SCORER, "bm25");
+		final Scorer scorer = Scorer.create(conf);
+		scorer.setDocStats(docStats());
+		final double[] expected = score(scorer);
+
+		// the source ids, the statistics are sized by the number of the documents
+		final int[] documents = {7, 5000000, 123456789};
+		final DocStats docStats = new DocStats();
+		docStats.set(documents[2], 40, 20);
+		docStats.set(documents[0], 10, 3);
+		docStats.set(documents[1], 1000, 300);
+		assertEquals(3, docStats.size());
+		assertEquals(-1, docStats.getIndex(8));
+		scorer.setDocStats(docStats);
+
+		final double[] scores = new double[documents.length];
+		scorer.score(documents, FREQUENCIES, documents.length, NUMBER_OF_DOCUMENTS, scores);
+		for (int i = 0; i < documents.length; i++) {
+			assertEquals(expected[i], scores[i], 1e-12);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownScorer() {
+		final Configuration conf = new Configuration(false);
+		conf.set(Scorer.SCORER, "unknown");
+		Scorer.create(conf);
+	}
+
+	private static DocStats docStats() {
+		final DocStats docStats = new DocStats();
+		docStats.set(1, 10, 3);
+		docStats.set(2, 1000, 300);
+		docStats.set(3, 40, 20);
+		return docStats;
+	}
+
+	private static double[] score(Scorer scorer) {
+		final double[] scores = new double[DOCUMENTS.length];
+		scorer.score(DOCUMENTS, FREQUENCIES, DOCUMENTS.length, NUMBER_OF_DOCUMENTS, scores);
+		return scores;
+	}
+}
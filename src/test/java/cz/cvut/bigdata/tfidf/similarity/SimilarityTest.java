@@ -0,0 +1,211 @@
+package cz.cvut.bigdata.tfidf.similarity;
+
+import cz.cvut.bigdata.tfidf.vectors.DocNormWritable;
+import cz.cvut.bigdata.tfidf.vectors.DocNorms;
+import cz.cvut.bigdata.tfidf.vectors.DocVectorMapper;
+import cz.cvut.bigdata.tfidf.vectors.DocVectorReducer;
+import cz.cvut.bigdata.tfidf.vectors.TermScoreWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class SimilarityTest {
+
+	private static final int DOCUMENTS = 12;
+	private static final int TERMS = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLowThreshold() throws Exception {
+		testThreshold(0.3f);
+	}
+
+	@Test
+	public void testHighThreshold() throws Exception {
+		testThreshold(0.7f);
+	}
+
+	/** Compares the verified pairs with the brute-force cosine similarity of the tf-idf vectors. */
+	private void testThreshold(float threshold) throws Exception {
+		// random sparse vectors, the document 12 is a copy of the document 1
+		final double[][] vectors = new double[DOCUMENTS + 1][TERMS];
+		final Random random = new Random(42L);
+		for (int doc = 1; doc < DOCUMENTS; doc++) {
+			for (int term = 0; term < TERMS; term++) {
+				if (random.nextInt(10) < 4) {
+					vectors[doc][term] = 1.0 + 3.0 * random.nextDouble();
+				}
+			}
+		}
+		vectors[DOCUMENTS] = vectors[1].clone();
+
+		final File tfidf = folder.newFolder("tf-idf");
+		writeTfidf(new File(tfidf, "part-r-00000"), vectors);
+		final Path vectorsPath = new Path(new File(folder.getRoot(), "vectors").toURI());
+		final Path candidatesPath = new Path(new File(folder.getRoot(), "similarity.candidates").toURI());
+		final Path pairsPath = new Path(new File(folder.getRoot(), "similarity.pairs").toURI());
+
+		final Configuration conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+		conf.set("mapreduce.framework.name", "local");
+		conf.setInt("mapreduce.client.completion.pollinterval", 100);
+		conf.setFloat(DocNorms.THRESHOLD, threshold);
+		runDocVector(conf, new Path(tfidf.toURI()), vectorsPath);
+		runSimilarityCandidates(conf, new Path(tfidf.toURI()), vectorsPath, candidatesPath);
+		runSimilarity(conf, candidatesPath, vectorsPath, pairsPath);
+
+		// the pairs are emitted in both directions
+		final Map<String, Double> expected = bruteForce(vectors, threshold);
+		final Map<String, Double> actual = readPairs(conf, pairsPath);
+		assertFalse(expected.isEmpty());
+		assertTrue(expected.containsKey("1 12"));
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, Double> entry : expected.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()), 1e-9);
+		}
+	}
+
+	/** Writes the vectors as the textual tf-idf output, one posting list per term. */
+	private static void writeTfidf(File file, double[][] vectors) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (int term = 0; term < TERMS; term++) {
+				final StringBuilder postings = new StringBuilder();
+				for (int doc = 1; doc <= DOCUMENTS; doc++) {
+					if (vectors[doc][term] > 0.0) {
+						postings.append(doc).append(':').append(vectors[doc][term]).append(' ');
+					}
+				}
+				if (postings.length() > 0) {
+					postings.setLength(postings.length() - 1);
+					writer.write("term" + (char) ('a' + term) + "\t" + postings + "\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/** Returns the cosine similarities of the pairs of at least the threshold, as 'doc1 doc2'. */
+	private static Map<String, Double> bruteForce(double[][] vectors, double threshold) {
+		final Map<String, Double> pairs = new TreeMap<String, Double>();
+		for (int doc1 = 1; doc1 <= DOCUMENTS; doc1++) {
+			for (int doc2 = 1; doc2 <= DOCUMENTS; doc2++) {
+				double dot = 0.0;
+				double norm1 = 0.0;
+				double norm2 = 0.0;
+				for (int term = 0; term < TERMS; term++) {
+					dot += vectors[doc1][term] * vectors[doc2][term];
+					norm1 += vectors[doc1][term] * vectors[doc1][term];
+					norm2 += vectors[doc2][term] * vectors[doc2][term];
+				}
+				if (doc1 != doc2 && norm1 > 0.0 && norm2 > 0.0 && dot / Math.sqrt(norm1 * norm2) >= threshold) {
+					pairs.put(doc1 + " " + doc2, dot / Math.sqrt(norm1 * norm2));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private static Map<String, Double> readPairs(Configuration conf, Path pairsPath) throws IOException {
+		final Map<String, Double> pairs = new TreeMap<String, Double>();
+		final FileSystem fs = pairsPath.getFileSystem(conf);
+		final IntWritable doc = new IntWritable();
+		final SimilarityWritable similar = new SimilarityWritable();
+		for (FileStatus status : fs.globStatus(new Path(pairsPath, "part-*"))) {
+			final SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			try {
+				while (reader.next(doc, similar)) {
+					pairs.put(doc.get() + " " + similar.getDoc(), similar.getScore());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return pairs;
+	}
+
+	// the jobs as set up by the Main
+
+	private static void runDocVector(Configuration conf, Path tfidf, Path output) throws Exception {
+		final Job job = Job.getInstance(conf, "DocVector");
+		job.setNumReduceTasks(2);
+		job.setMapperClass(DocVectorMapper.class);
+		job.setReducerClass(DocVectorReducer.class);
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(TermScoreWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
+		FileInputFormat.addInputPath(job, tfidf);
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(TextOutputFormat.class);
+		MultipleOutputs.addNamedOutput(job, DocNorms.NORMS_OUTPUT, SequenceFileOutputFormat.class,
+				IntWritable.class, DocNormWritable.class);
+		assertTrue(job.waitForCompletion(false));
+	}
+
+	private static void runSimilarityCandidates(Configuration conf, Path tfidf, Path vectors, Path output) throws Exception {
+		final Job job = Job.getInstance(conf, "SimilarityCandidates");
+		job.setNumReduceTasks(2);
+		job.getConfiguration().set(DocNorms.NORMS_PATH, vectors.toString());
+		job.getConfiguration().setBoolean(VectorMapper.PREFIX_ONLY, true);
+		MultipleInputs.addInputPath(job, tfidf, KeyValueTextInputFormat.class, CandidateMapper.class);
+		MultipleInputs.addInputPath(job, new Path(vectors, "part-*"), KeyValueTextInputFormat.class, VectorMapper.class);
+		job.setCombinerClass(CandidateCombiner.class);
+		job.setReducerClass(CandidateReducer.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(SimilarityWritable.class);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		assertTrue(job.waitForCompletion(false));
+	}
+
+	private static void runSimilarity(Configuration conf, Path candidates, Path vectors, Path output) throws Exception {
+		final Job job = Job.getInstance(conf, "Similarity");
+		job.setNumReduceTasks(2);
+		MultipleInputs.addInputPath(job, candidates, SequenceFileInputFormat.class, Mapper.class);
+		MultipleInputs.addInputPath(job, new Path(vectors, "part-*"), KeyValueTextInputFormat.class, VectorMapper.class);
+		job.setReducerClass(SimilarityReducer.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(SimilarityWritable.class);
+		FileOutputFormat.setOutputPath(job, output);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		assertTrue(job.waitForCompletion(false));
+	}
+}
@@ -0,0 +1,71 @@
+package cz.cvut.bigdata.tfidf.sketch;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DocFreqSketchTest {
+
+	private static final int TERMS = 5000;
+
+	@Test
+	public void testNoUnderestimate() throws IOException {
+		// small sketches with many collisions, merged from two parts
+		final DocFreqSketch first = new DocFreqSketch(2, 1024);
+		final DocFreqSketch second = new DocFreqSketch(2, 1024);
+		final int[] docFrequencies = new int[TERMS];
+		final Random random = new Random(42L);
+		for (int i = 0; i < TERMS; i++) {
+			docFrequencies[i] = random.nextInt(5);
+			for (int j = 0; j < docFrequencies[i]; j++) {
+				final char[] term = term(i);
+				(random.nextBoolean() ? first : second).add(term, term.length);
+			}
+		}
+		first.merge(second);
+
+		int rare = 0;
+		for (int i = 0; i < TERMS; i++) {
+			final char[] term = term(i);
+			final int estimate = first.estimate(term, term.length);
+			assertTrue("term " + i, estimate >= Math.min(docFrequencies[i], DocFreqSketch.MIN_DOC_FREQUENCY));
+			if (first.isRare(term, term.length)) {
+				rare++;
+			}
+		}
+		assertTrue(rare > 0);
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		final DocFreqSketch sketch = new DocFreqSketch(3, 64);
+		for (int i = 0; i < 100; i++) {
+			final char[] term = term(i % 40);
+			sketch.add(term, term.length);
+		}
+		final DataOutputBuffer out = new DataOutputBuffer();
+		sketch.write(out);
+
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		final DocFreqSketch result = new DocFreqSketch();
+		result.readFields(in);
+		for (int i = 0; i < 100; i++) {
+			final char[] term = term(i);
+			assertEquals(sketch.estimate(term, term.length), result.estimate(term, term.length));
+		}
+	}
+
+	private static char[] term(int i) {
+		return ("term" + i).toCharArray();
+	}
+}
@@ -0,0 +1,87 @@
+package cz.cvut.bigdata.tfidf.update;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class CorpusStateTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Configuration conf = new Configuration(false);
+	private File dir;
+	private Path terms;
+
+	@Before
+	public void setUp() throws IOException {
+		// the terms output of a full run of 5 documents
+		dir = folder.newFolder("terms");
+		terms = new Path(dir.toURI());
+		writeTerms(5, 5);
+	}
+
+	@Test
+	public void testUpdate() throws IOException {
+		final CorpusState state = CorpusState.read(conf, terms);
+		assertEquals(5, state.getNumberOfDocuments());
+		assertEquals(5, state.getMaxDocument());
+
+		// '+ text', '- 2', '= 4 text' and '+ text' on the lines 2 to 5
+		final CorpusState updated = state.update(new int[] {4, 7, 10}, new int[] {2, 4}, 5);
+		assertEquals(6, updated.getNumberOfDocuments());
+		assertEquals(10, updated.getMaxDocument());
+
+		// the next update sees the existing documents
+		writeTerms(updated);
+		final CorpusState next = CorpusState.read(conf, terms);
+		assertEquals(6, next.getNumberOfDocuments());
+		assertEquals(5, next.update(new int[0], new int[] {10}, 2).getNumberOfDocuments());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRemoveUnknownDocument() throws IOException {
+		CorpusState.read(conf, terms).update(new int[0], new int[] {6}, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRemoveDocumentTwice() throws IOException {
+		CorpusState.read(conf, terms).update(new int[0], new int[] {3, 3}, 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplaceRemovedDocument() throws IOException {
+		final CorpusState state = CorpusState.read(conf, terms).update(new int[0], new int[] {3}, 2);
+		writeTerms(state);
+		CorpusState.read(conf, terms).update(new int[] {3}, new int[] {3}, 2);
+	}
+
+	/** Writes the terms output of the updated state, as merged by the TermState job. */
+	private void writeTerms(CorpusState state) throws IOException {
+		writeTerms(state.getMaxDocument(), state.getNumberOfDocuments());
+		state.writeDocuments(conf, terms);
+	}
+
+	private void writeTerms(int maxDocument, int numberOfDocuments) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, "part-r-00000")), "UTF-8");
+		try {
+			writer.write("_ : " + maxDocument + "\t" + numberOfDocuments + "\nslovo : 2\t3\n");
+		} finally {
+			writer.close();
+		}
+	}
+}
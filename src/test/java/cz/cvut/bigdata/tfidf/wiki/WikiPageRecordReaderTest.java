@@ -0,0 +1,146 @@
+package cz.cvut.bigdata.tfidf.wiki;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class WikiPageRecordReaderTest {
+
+	private static final String dump =
+			"<mediawiki xml:lang=\"cs\">\n" +
+			"  <siteinfo>\n    <sitename>Wikipedie</sitename>\n  </siteinfo>\n" +
+			"  <page>\n    <title>Lingvistika</title>\n    <ns>0</ns>\n    <id>12</id>\n" +
+			"    <revision>\n      <id>1234</id>\n" +
+			"      <text xml:space=\"preserve\">Cílem &lt;b&gt;lingvistiky&lt;/b&gt;\nje popsat\tjazyk &amp; řeč&#33;</text>\n" +
+			"    </revision>\n  </page>\n" +
+			"  <page>\n    <title>Jazyk</title>\n    <ns>0</ns>\n    <id>15</id>\n    <redirect title=\"Lingvistika\" />\n" +
+			"    <revision>\n      <id>1235</id>\n      <text xml:space=\"preserve\">#REDIRECT [[Lingvistika]]</text>\n" +
+			"    </revision>\n  </page>\n" +
+			"  <page>\n    <title>Diskuse:Lingvistika</title>\n    <ns>1</ns>\n    <id>16</id>\n" +
+			"    <revision>\n      <id>1236</id>\n      <text xml:space=\"preserve\">diskuse</text>\n" +
+			"    </revision>\n  </page>\n" +
+			"  <page>\n    <title>Prázdná</title>\n    <ns>0</ns>\n    <id>20</id>\n" +
+			"    <revision>\n      <id>1237</id>\n      <text xml:space=\"preserve\" bytes=\"0\" />\n" +
+			"    </revision>\n  </page>\n" +
+			"</mediawiki>\n";
+
+	private static final List<String> pages = Arrays.asList(
+			"12:Lingvistika\tCílem <b>lingvistiky</b> je popsat jazyk & řeč!",
+			"20:Prázdná\t"
+		);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPlainSplits() throws Exception {
+		final File file = folder.newFile("dump.xml");
+		write(new FileOutputStream(file));
+		for (long splitSize : new long[] {10000L, 200L, 37L}) {
+			assertEquals(pages, readPages(file, splitSize));
+		}
+	}
+
+	@Test
+	public void testCompressedSplits() throws Exception {
+		final File file = folder.newFile("dump.xml.bz2");
+		final BZip2Codec codec = new BZip2Codec();
+		codec.setConf(new Configuration());
+		write(codec.createOutputStream(new FileOutputStream(file)));
+		for (long splitSize : new long[] {10000L, 50L}) {
+			assertEquals(pages, readPages(file, splitSize));
+		}
+	}
+
+	private static void write(OutputStream out) throws IOException {
+		try {
+			out.write(dump.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Reads the pages of all the splits of the file. */
+	private static List<String> readPages(File file, long splitSize) throws Exception {
+		final Job job = Job.getInstance(new Configuration());
+		FileInputFormat.addInputPath(job, new Path(file.toURI()));
+		FileInputFormat.setMaxInputSplitSize(job, splitSize);
+
+		final WikiPageInputFormat inputFormat = new WikiPageInputFormat();
+		final Counters counters = new Counters();
+		final List<String> result = new ArrayList<String>();
+		for (InputSplit split : inputFormat.getSplits(job)) {
+			final TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID(),
+					new CountersReporter(counters));
+			final RecordReader<LongWritable, Text> reader = inputFormat.createRecordReader(split, context);
+			reader.initialize(split, context);
+			while (reader.nextKeyValue()) {
+				result.add(reader.getCurrentKey() + ":" + reader.getCurrentValue());
+			}
+			reader.close();
+		}
+		assertEquals(1L, counters.findCounter(WikiPageRecordReader.Pages.REDIRECTS).getValue());
+		assertEquals(1L, counters.findCounter(WikiPageRecordReader.Pages.OTHER_NAMESPACES).getValue());
+		return result;
+	}
+
+	private static class CountersReporter extends StatusReporter {
+
+		private final Counters counters;
+
+		public CountersReporter(Counters counters) {
+			this.counters = counters;
+		}
+
+		@Override
+		public Counter getCounter(Enum<?> name) {
+			return counters.findCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(String group, String name) {
+			return counters.findCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+		}
+
+		@Override
+		public float getProgress() {
+			return 0.0f;
+		}
+
+		@Override
+		public void setStatus(String status) {
+		}
+	}
+}